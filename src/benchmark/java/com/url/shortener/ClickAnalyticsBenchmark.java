@@ -0,0 +1,70 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.ClickAnalyticsProperties;
+import com.url.shortener.infrastructure.ClickOverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of publishing a click from concurrent request threads while the consumer aggregates them. Clicks which don't
+ * fit into the buffer are handled by the overflow policy, so the score includes both paths under saturation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ClickAnalyticsBenchmark {
+
+    private static final String[] IDS = {"abc001", "abc002", "abc003", "abc004", "abc005", "abc006", "abc007",
+            "abc008"};
+
+    @Param({"DROP", "COUNT_ONLY"})
+    private ClickOverflowPolicy overflowPolicy;
+
+    private ClickAnalytics clickAnalytics;
+
+    @Setup
+    public void setUp() {
+        final ClickAnalyticsProperties properties = new ClickAnalyticsProperties();
+        properties.setEnabled(true);
+        properties.setBufferSize(65536);
+        properties.setFlushInterval(Duration.ofSeconds(5));
+        properties.setFlushThreshold(10000);
+        properties.setOverflowPolicy(overflowPolicy);
+        properties.setMaxReferrers(100);
+
+        clickAnalytics = new ClickAnalytics(new RedirectBenchmark.NoopClickStore(), properties,
+                new SimpleMeterRegistry());
+        clickAnalytics.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        clickAnalytics.stop();
+    }
+
+    @Benchmark
+    public void record() {
+        clickAnalytics.record(IDS[ThreadLocalRandom.current().nextInt(IDS.length)], "https://news.example.com/item");
+    }
+}
@@ -0,0 +1,181 @@
+package com.url.shortener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.ClickAnalyticsProperties;
+import com.url.shortener.infrastructure.ClickCounts;
+import com.url.shortener.infrastructure.ClickOverflowPolicy;
+import com.url.shortener.infrastructure.ClickStore;
+import com.url.shortener.infrastructure.DigestProperties;
+import com.url.shortener.infrastructure.InMemoryUrlRepository;
+import com.url.shortener.infrastructure.KeyspaceMonitor;
+import com.url.shortener.infrastructure.KeyspaceProperties;
+import com.url.shortener.infrastructure.LocalInvalidationBus;
+import com.url.shortener.infrastructure.LookupFilter;
+import com.url.shortener.infrastructure.LookupFilterProperties;
+import com.url.shortener.infrastructure.RandomIdGenerator;
+import com.url.shortener.infrastructure.RateLimitProperties;
+import com.url.shortener.infrastructure.RateLimiter;
+import com.url.shortener.infrastructure.RedirectPolicy;
+import com.url.shortener.infrastructure.RedirectProperties;
+import com.url.shortener.infrastructure.RedirectTable;
+import com.url.shortener.infrastructure.RedirectTableProperties;
+import com.url.shortener.infrastructure.ShortCodeGenerator;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import com.url.shortener.infrastructure.SourceUrlProperties;
+import com.url.shortener.infrastructure.SourceUrlValidator;
+import com.url.shortener.infrastructure.UrlCache;
+import com.url.shortener.infrastructure.UrlCacheProperties;
+import com.url.shortener.infrastructure.UrlExpiryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.view.RedirectView;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Per-request cost of serving a redirect for a cached url: {@link RedirectView} as the controller used to return,
+ * the controller writing the response directly as it does now, and {@link RedirectFilter} answering before Spring
+ * MVC. All variants run through MockMvc, so its own overhead is included equally. Run with -prof gc to compare
+ * allocations. Clicks are published to {@link ClickAnalytics} with a store which discards them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedirectBenchmark {
+
+    private static final String ID = "abcdef";
+
+    private MockMvc redirectView;
+    private MockMvc controller;
+    private MockMvc filter;
+    private ClickAnalytics clickAnalytics;
+
+    @Setup
+    public void setUp() {
+        final DigestProperties digestProperties = new DigestProperties();
+        digestProperties.setRandomMaxAttempts(100);
+        digestProperties.setRandomLength(6);
+        digestProperties.setPrefix("http://localhost:8080/redirect/");
+
+        final UrlCacheProperties cacheProperties = new UrlCacheProperties();
+        cacheProperties.setMaximumSize(1000);
+        cacheProperties.setExpireAfterWrite(Duration.ofMinutes(10));
+
+        final LookupFilterProperties filterProperties = new LookupFilterProperties();
+        filterProperties.setEnabled(false);
+
+        final RedirectProperties redirectProperties = new RedirectProperties();
+        redirectProperties.setStatus(302);
+        redirectProperties.setCacheMaxAge(Duration.ZERO);
+
+        final ClickAnalyticsProperties clickProperties = new ClickAnalyticsProperties();
+        clickProperties.setEnabled(true);
+        clickProperties.setBufferSize(65536);
+        clickProperties.setFlushInterval(Duration.ofSeconds(5));
+        clickProperties.setFlushThreshold(10000);
+        clickProperties.setOverflowPolicy(ClickOverflowPolicy.COUNT_ONLY);
+        clickProperties.setMaxReferrers(100);
+        clickAnalytics = new ClickAnalytics(new NoopClickStore(), clickProperties, new SimpleMeterRegistry());
+        clickAnalytics.start();
+
+        final InMemoryUrlRepository repository = new InMemoryUrlRepository();
+        repository.insert(ShortenerService.newUrl(ID, "https://www.example.com/articles/2018/10/some-article"));
+        final ShortenerMetrics metrics = new ShortenerMetrics(new SimpleMeterRegistry());
+        // monitoring is disabled, so the storage isn't counted
+        final KeyspaceMonitor keyspaceMonitor = new KeyspaceMonitor(repository, digestProperties,
+                new KeyspaceProperties(), metrics, new SimpleMeterRegistry());
+        final ShortenerService service = new ShortenerService(repository, digestProperties,
+                new UrlCache(cacheProperties, new SimpleMeterRegistry()),
+                new RedirectTable(repository, new RedirectTableProperties(), new SimpleMeterRegistry()),
+                new LookupFilter(repository, filterProperties), new RandomIdGenerator(repository, digestProperties,
+                new ShortCodeGenerator(), keyspaceMonitor), metrics, keyspaceMonitor, new LocalInvalidationBus(),
+                new SourceUrlValidator(new SourceUrlProperties()), new UrlExpiryProperties(), clickAnalytics);
+        final RedirectPolicy policy = new RedirectPolicy(redirectProperties);
+        final ShortenerController controller = new ShortenerController(service, new ObjectMapper(), policy,
+                clickAnalytics, metrics);
+
+        redirectView = MockMvcBuilders.standaloneSetup(new RedirectViewController(service)).build();
+        this.controller = MockMvcBuilders.standaloneSetup(controller).build();
+        // rate limiting is disabled, so the filter only pays for the limit lookup
+        final RateLimiter rateLimiter = new RateLimiter(new RateLimitProperties(), new SimpleMeterRegistry());
+        filter = MockMvcBuilders.standaloneSetup(controller).addFilters(new RedirectFilter(service, policy,
+                clickAnalytics, metrics, rateLimiter)).build();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        clickAnalytics.stop();
+    }
+
+    @Benchmark
+    public int redirectView() throws Exception {
+        return redirectView.perform(get("/redirect/" + ID)).andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int controller() throws Exception {
+        return controller.perform(get("/redirect/" + ID)).andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int filter() throws Exception {
+        return filter.perform(get("/redirect/" + ID)).andReturn().getResponse().getStatus();
+    }
+
+    static class NoopClickStore implements ClickStore {
+
+        @Override
+        public void increment(Collection<ClickCounts> counts) {
+        }
+
+        @Override
+        public ClickStats find(String id) {
+            return null;
+        }
+
+        @Override
+        public void delete(Collection<String> ids) {
+        }
+    }
+
+    /**
+     * Redirect handler as it was before the fast path
+     */
+    @RestController
+    public static class RedirectViewController {
+
+        private final ShortenerService service;
+
+        RedirectViewController(ShortenerService service) {
+            this.service = service;
+        }
+
+        @GetMapping("redirect/{id}")
+        public RedirectView redirect(@PathVariable String id) {
+            return new RedirectView(service.getUrlByID(id).getSourceUrl());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.url.shortener;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test of redirects against a running instance, used to compare servlet and "reactive" serving
+ * modes. Shortens a set of urls first, then keeps the given amount of redirect requests in flight for the given time
+ * and reports throughput and latency percentiles. Redirects aren't followed.
+ * <p>
+ * Run with
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.url.shortener.RedirectLoadTest
+ * -Dbenchmark.args="http://localhost:8080 512 30 1000"
+ * where arguments are base url, concurrency, duration in seconds and amount of distinct urls
+ */
+public class RedirectLoadTest {
+
+    private static final long MAX_LATENCY = TimeUnit.SECONDS.toNanos(60);
+
+    public static void main(String[] args) {
+        final String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        final int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+        final Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+        final int urls = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        final WebClient client = WebClient.create(baseUrl);
+        final List<String> ids = Flux.range(0, urls)
+                .flatMap(i -> client.post().uri("/shorten-url").bodyValue("http://example.com/load-test/" + i)
+                        .retrieve().bodyToMono(JsonNode.class), 64)
+                .map(url -> url.get("id").asText())
+                .collectList()
+                .block();
+
+        // warm up connections and server side caches
+        run(client, ids, concurrency, Duration.ofSeconds(5), new Recorder(MAX_LATENCY, 3), new AtomicLong());
+
+        final Recorder recorder = new Recorder(MAX_LATENCY, 3);
+        final AtomicLong errors = new AtomicLong();
+        final long started = System.nanoTime();
+        run(client, ids, concurrency, duration, recorder, errors);
+        final long elapsed = System.nanoTime() - started;
+
+        final Histogram histogram = recorder.getIntervalHistogram();
+        System.out.printf("concurrency=%d requests=%d errors=%d throughput=%.0f req/s%n", concurrency,
+                histogram.getTotalCount(), errors.get(),
+                histogram.getTotalCount() / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)));
+        System.out.printf("latency ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static void run(WebClient client, List<String> ids, int concurrency, Duration duration,
+                            Recorder recorder, AtomicLong errors) {
+        final long deadline = System.nanoTime() + duration.toNanos();
+
+        Flux.<String>generate(sink -> {
+            if (System.nanoTime() < deadline) {
+                sink.next(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+            } else {
+                sink.complete();
+            }
+        }).flatMap(id -> {
+            final long start = System.nanoTime();
+            return client.get().uri("/redirect/{id}", id)
+                    .exchangeToMono(response -> {
+                        recorder.recordValue(Math.min(System.nanoTime() - start, MAX_LATENCY));
+                        if (!response.statusCode().is3xxRedirection()) {
+                            errors.incrementAndGet();
+                        }
+                        return response.releaseBody();
+                    })
+                    .onErrorResume(e -> {
+                        errors.incrementAndGet();
+                        return Mono.empty();
+                    });
+        }, concurrency).blockLast();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,155 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.ClickAnalyticsProperties;
+import com.url.shortener.infrastructure.DigestProperties;
+import com.url.shortener.infrastructure.InMemoryUrlRepository;
+import com.url.shortener.infrastructure.KeyspaceMonitor;
+import com.url.shortener.infrastructure.KeyspaceProperties;
+import com.url.shortener.infrastructure.LocalInvalidationBus;
+import com.url.shortener.infrastructure.LookupFilter;
+import com.url.shortener.infrastructure.LookupFilterProperties;
+import com.url.shortener.infrastructure.RandomIdGenerator;
+import com.url.shortener.infrastructure.RedirectTable;
+import com.url.shortener.infrastructure.RedirectTableProperties;
+import com.url.shortener.infrastructure.ShortCodeGenerator;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import com.url.shortener.infrastructure.SourceUrlProperties;
+import com.url.shortener.infrastructure.SourceUrlValidator;
+import com.url.shortener.infrastructure.UrlCache;
+import com.url.shortener.infrastructure.UrlCacheProperties;
+import com.url.shortener.infrastructure.UrlExpiryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Burst of concurrent redirects served by blocking {@link ShortenerService#getUrlByID(String)} whose repository takes
+ * a fixed time per lookup, as a database round trip would. Compares a platform thread pool sized like Tomcat's
+ * default (200 threads) with a virtual thread per request. Score is the time to serve the whole burst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedirectThreadingBenchmark {
+
+    private static final int POOL_SIZE = 200;
+    private static final int STORED_URLS = 1000;
+
+    @Param({"200", "2000", "10000"})
+    private int concurrentRedirects;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"2"})
+    private long lookupLatencyMillis;
+
+    private ExecutorService executor;
+    private ShortenerService service;
+    private String[] storedIds;
+
+    @Setup
+    public void setUp() {
+        final DigestProperties digestProperties = new DigestProperties();
+        digestProperties.setRandomMaxAttempts(100);
+        digestProperties.setRandomLength(6);
+        digestProperties.setPrefix("http://localhost:8080/redirect/");
+
+        final UrlCacheProperties cacheProperties = new UrlCacheProperties();
+        cacheProperties.setMaximumSize(0);
+        cacheProperties.setExpireAfterWrite(Duration.ofMinutes(10));
+
+        final LookupFilterProperties filterProperties = new LookupFilterProperties();
+        filterProperties.setEnabled(false);
+
+        final SlowUrlRepository repository = new SlowUrlRepository();
+        final ShortenerMetrics metrics = new ShortenerMetrics(new SimpleMeterRegistry());
+        // monitoring is disabled, so the storage isn't counted
+        final KeyspaceMonitor keyspaceMonitor = new KeyspaceMonitor(repository, digestProperties,
+                new KeyspaceProperties(), metrics, new SimpleMeterRegistry());
+        service = new ShortenerService(repository, digestProperties,
+                new UrlCache(cacheProperties, new SimpleMeterRegistry()),
+                new RedirectTable(repository, new RedirectTableProperties(), new SimpleMeterRegistry()),
+                new LookupFilter(repository, filterProperties), new RandomIdGenerator(repository, digestProperties,
+                new ShortCodeGenerator(), keyspaceMonitor), metrics, keyspaceMonitor, new LocalInvalidationBus(),
+                new SourceUrlValidator(new SourceUrlProperties()), new UrlExpiryProperties(),
+                new ClickAnalytics(new RedirectBenchmark.NoopClickStore(), new ClickAnalyticsProperties(),
+                        new SimpleMeterRegistry()));
+
+        storedIds = new String[STORED_URLS];
+        for (int i = 0; i < STORED_URLS; i++) {
+            storedIds[i] = repository.insert(ShortenerService.newUrl("id" + i, "https://www.example.com/" + i))
+                    .getId();
+        }
+        repository.latencyNanos = TimeUnit.MILLISECONDS.toNanos(lookupLatencyMillis);
+
+        executor = "virtual".equals(threads) ? Executors.newVirtualThreadPerTaskExecutor() :
+                Executors.newFixedThreadPool(POOL_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int redirectBurst() throws InterruptedException, ExecutionException {
+        final List<Future<Url>> redirects = new ArrayList<>(concurrentRedirects);
+        for (int i = 0; i < concurrentRedirects; i++) {
+            final String id = storedIds[i % STORED_URLS];
+            redirects.add(executor.submit(() -> service.getUrlByID(id)));
+        }
+
+        int served = 0;
+        for (Future<Url> redirect : redirects) {
+            if (redirect.get() != null) {
+                served++;
+            }
+        }
+        return served;
+    }
+
+    /**
+     * Parks the calling thread on lookup, so virtual threads unmount while waiting like on socket reads
+     */
+    private static class SlowUrlRepository extends InMemoryUrlRepository {
+
+        /**
+         * Set once the repository is filled
+         */
+        private volatile long latencyNanos;
+
+        @Override
+        public Optional<Url> findById(String id) {
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+            return super.findById(id);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.ClickAnalyticsProperties;
+import com.url.shortener.infrastructure.DigestProperties;
+import com.url.shortener.infrastructure.InMemoryUrlRepository;
+import com.url.shortener.infrastructure.KeyspaceMonitor;
+import com.url.shortener.infrastructure.KeyspaceProperties;
+import com.url.shortener.infrastructure.LocalInvalidationBus;
+import com.url.shortener.infrastructure.LookupFilter;
+import com.url.shortener.infrastructure.LookupFilterProperties;
+import com.url.shortener.infrastructure.RandomIdGenerator;
+import com.url.shortener.infrastructure.RedirectTable;
+import com.url.shortener.infrastructure.RedirectTableProperties;
+import com.url.shortener.infrastructure.ShortCodeGenerator;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import com.url.shortener.infrastructure.SourceUrlProperties;
+import com.url.shortener.infrastructure.SourceUrlValidator;
+import com.url.shortener.infrastructure.UrlCache;
+import com.url.shortener.infrastructure.UrlCacheProperties;
+import com.url.shortener.infrastructure.UrlExpiryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hot paths of {@link ShortenerService} on top of {@link InMemoryUrlRepository}, so numbers reflect the service
+ * itself and are reproducible without database. Repository is refilled before each iteration, which keeps its size
+ * stable while shorten benchmarks keep adding urls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortenerServiceBenchmark {
+
+    private static final String SOURCE_URL_PREFIX = "https://www.example.com/articles/2018/10/";
+
+    @Param({"10000"})
+    private int storedUrls;
+
+    /**
+     * Zero disables caching, so every lookup goes to the repository
+     */
+    @Param({"0", "100000"})
+    private long cacheSize;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private InMemoryUrlRepository repository;
+    private ShortenerService service;
+    private String[] storedIds;
+    private Url enrichable;
+
+    @Setup(Level.Trial)
+    public void setUpService() {
+        final DigestProperties digestProperties = new DigestProperties();
+        digestProperties.setRandomMaxAttempts(100);
+        digestProperties.setRandomLength(6);
+        digestProperties.setPrefix("http://localhost:8080/redirect/");
+
+        final UrlCacheProperties cacheProperties = new UrlCacheProperties();
+        cacheProperties.setMaximumSize(cacheSize);
+        cacheProperties.setExpireAfterWrite(Duration.ofMinutes(10));
+
+        final LookupFilterProperties filterProperties = new LookupFilterProperties();
+        filterProperties.setEnabled(true);
+        filterProperties.setExpectedInsertions(1_000_000);
+        filterProperties.setFalsePositiveProbability(0.01);
+
+        final SourceUrlProperties sourceUrlProperties = new SourceUrlProperties();
+        sourceUrlProperties.setAllowedSchemes(Arrays.asList("http", "https", "ftp"));
+        sourceUrlProperties.setNormalize(true);
+
+        repository = new InMemoryUrlRepository();
+        final LookupFilter lookupFilter = new LookupFilter(repository, filterProperties);
+        final ShortenerMetrics metrics = new ShortenerMetrics(new SimpleMeterRegistry());
+        // monitoring is disabled, so the storage isn't counted
+        final KeyspaceMonitor keyspaceMonitor = new KeyspaceMonitor(repository, digestProperties,
+                new KeyspaceProperties(), metrics, new SimpleMeterRegistry());
+        service = new ShortenerService(repository, digestProperties,
+                new UrlCache(cacheProperties, new SimpleMeterRegistry()),
+                new RedirectTable(repository, new RedirectTableProperties(), new SimpleMeterRegistry()), lookupFilter,
+                new RandomIdGenerator(repository, digestProperties, new ShortCodeGenerator(), keyspaceMonitor),
+                metrics, keyspaceMonitor, new LocalInvalidationBus(), new SourceUrlValidator(sourceUrlProperties),
+                new UrlExpiryProperties(), new ClickAnalytics(new RedirectBenchmark.NoopClickStore(),
+                new ClickAnalyticsProperties(), new SimpleMeterRegistry()));
+
+        enrichable = new Url("abcdef", SOURCE_URL_PREFIX + "enrich");
+    }
+
+    @Setup(Level.Iteration)
+    public void fillRepository() {
+        repository.deleteAll();
+
+        storedIds = new String[storedUrls];
+        for (int i = 0; i < storedUrls; i++) {
+            storedIds[i] = service.shorten(SOURCE_URL_PREFIX + "stored-" + i, null).getId();
+        }
+    }
+
+    @Benchmark
+    public Url shortenRandomHash() {
+        return service.shorten(SOURCE_URL_PREFIX + sequence.incrementAndGet(), null);
+    }
+
+    @Benchmark
+    public Url shortenRandomHashExistingUrl() {
+        final int index = ThreadLocalRandom.current().nextInt(storedUrls);
+        return service.shorten(SOURCE_URL_PREFIX + "stored-" + index, null);
+    }
+
+    @Benchmark
+    public Url shortenCustomHash() {
+        final long next = sequence.incrementAndGet();
+        return service.shorten(SOURCE_URL_PREFIX + next, "custom-" + next);
+    }
+
+    @Benchmark
+    public Url getUrlByIdExisting() {
+        return service.getUrlByID(storedIds[ThreadLocalRandom.current().nextInt(storedUrls)]);
+    }
+
+    @Benchmark
+    public Url getUrlByIdUnknown() {
+        return service.getUrlByID("unknown-" + ThreadLocalRandom.current().nextInt(storedUrls));
+    }
+
+    @Benchmark
+    public List<Url> getUrlsPage() {
+        return service.getUrls(null, 100);
+    }
+
+    @Benchmark
+    public void forEachUrl(Blackhole blackhole) {
+        service.forEachUrl(blackhole::consume);
+    }
+
+    @Benchmark
+    public Url enrichWithShortcut() {
+        return service.enrichWithShortcut(enrichable);
+    }
+}
@@ -0,0 +1,64 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.SourceUrlProperties;
+import com.url.shortener.infrastructure.SourceUrlValidator;
+import org.apache.commons.validator.routines.UrlValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of source urls: new commons-validator instance per call, as done by
+ * {@link ShortenerService#shorten(String, String)} before {@link SourceUrlValidator}, a shared commons-validator and
+ * {@link SourceUrlValidator} with normalization
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlValidatorBenchmark {
+
+    @Param({"https://www.example.com/articles/2018/10/some-article?utm_source=feed&utm_medium=rss",
+            "HTTPS://WWW.Example.com:443/articles/2018/10/some%2farticle",
+            "h ttp://&example.com"})
+    private String sourceUrl;
+
+    private final UrlValidator shared = new UrlValidator();
+    private SourceUrlValidator sourceUrlValidator;
+
+    @Setup
+    public void setUp() {
+        final SourceUrlProperties properties = new SourceUrlProperties();
+        properties.setAllowedSchemes(Arrays.asList("http", "https", "ftp"));
+        properties.setNormalize(true);
+        sourceUrlValidator = new SourceUrlValidator(properties);
+    }
+
+    @Benchmark
+    public boolean newValidatorPerCall() {
+        return new UrlValidator().isValid(sourceUrl);
+    }
+
+    @Benchmark
+    public boolean sharedValidator() {
+        return shared.isValid(sourceUrl);
+    }
+
+    @Benchmark
+    public String sourceUrlValidator() {
+        return sourceUrlValidator.normalize(sourceUrl);
+    }
+}
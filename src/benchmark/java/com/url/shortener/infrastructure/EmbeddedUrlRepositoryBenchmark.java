@@ -0,0 +1,87 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups by id in {@link EmbeddedUrlRepository} compared to {@link InMemoryUrlRepository}, which keeps url objects
+ * on heap and doesn't copy them out of files. Repository is filled with storedUrls urls once per trial, a third of
+ * lookups is for unknown ids
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(4)
+public class EmbeddedUrlRepositoryBenchmark {
+
+    @Param({"embedded", "in-memory"})
+    private String storage;
+
+    @Param({"1000000"})
+    private int storedUrls;
+
+    private Path directory;
+    private UrlRepository repository;
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("embedded".equals(storage)) {
+            directory = Files.createTempDirectory("embedded-storage");
+
+            final EmbeddedStorageProperties properties = new EmbeddedStorageProperties();
+            properties.setDirectory(directory.toString());
+            properties.setSegmentSize(DataSize.ofMegabytes(64));
+            properties.setExpectedUrls(storedUrls);
+            repository = new EmbeddedUrlRepository(properties);
+        } else {
+            repository = new InMemoryUrlRepository();
+        }
+
+        for (int i = 0; i < storedUrls; i++) {
+            final Url url = new Url(Base62Encoder.encode(i, 6), "https://example.com/articles/" + i);
+            url.setFingerprint(UrlFingerprint.of(url.getSourceUrl()));
+            repository.save(url);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    public Optional<Url> findById() {
+        return repository.findById(Base62Encoder.encode(ThreadLocalRandom.current().nextInt(storedUrls * 3 / 2), 6));
+    }
+
+    @Benchmark
+    public boolean existsById() {
+        return repository.existsById(Base62Encoder.encode(ThreadLocalRandom.current().nextInt(storedUrls * 3 / 2), 6));
+    }
+}
@@ -0,0 +1,67 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of producing one id with each {@link IdGenerator} strategy. Random strategy checks existence against
+ * {@link InMemoryUrlRepository} filled with storedUrls ids of the same length
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+    @Param({"100000"})
+    private int storedUrls;
+
+    private RandomIdGenerator randomIdGenerator;
+    private SegmentIdGenerator segmentIdGenerator;
+
+    @Setup
+    public void setUp() {
+        final DigestProperties digestProperties = new DigestProperties();
+        digestProperties.setRandomMaxAttempts(100);
+        digestProperties.setRandomLength(6);
+        digestProperties.setSegmentSize(1000);
+
+        final ShortCodeGenerator shortCodeGenerator = new ShortCodeGenerator();
+        final InMemoryUrlRepository repository = new InMemoryUrlRepository();
+        for (int i = 0; i < storedUrls; i++) {
+            repository.save(new Url(shortCodeGenerator.generate(6), "http://example.com/" + i));
+        }
+
+        final AtomicLong counter = new AtomicLong();
+        randomIdGenerator = new RandomIdGenerator(repository, digestProperties, shortCodeGenerator,
+                new KeyspaceMonitor(repository, digestProperties, new KeyspaceProperties(),
+                        new ShortenerMetrics(new SimpleMeterRegistry()), new SimpleMeterRegistry()));
+        segmentIdGenerator = new SegmentIdGenerator(counter::getAndAdd, digestProperties);
+    }
+
+    @Benchmark
+    public String random() {
+        return randomIdGenerator.nextId();
+    }
+
+    @Benchmark
+    public String segment() {
+        return segmentIdGenerator.nextId();
+    }
+}
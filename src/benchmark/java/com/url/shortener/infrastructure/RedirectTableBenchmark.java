@@ -0,0 +1,95 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Lookups of source urls among storedUrls entries in {@link RedirectTable} compared to a {@link ConcurrentHashMap}
+ * of {@link Url} objects. Retained heap and off-heap bytes of the filled table are printed during setup, run with
+ * -prof gc to compare allocations and GC time of lookups
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class RedirectTableBenchmark {
+
+    private static final int ID_LENGTH = 6;
+
+    @Param({"off-heap", "on-heap"})
+    private String table;
+
+    @Param({"10000000"})
+    private int storedUrls;
+
+    private RedirectTable redirectTable;
+    private Map<String, Url> map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final long heapBefore = usedHeap();
+
+        if ("off-heap".equals(table)) {
+            final RedirectTableProperties properties = new RedirectTableProperties();
+            properties.setEnabled(true);
+            properties.setExpectedUrls(storedUrls);
+            properties.setChunkSize(DataSize.ofMegabytes(64));
+
+            final InMemoryUrlRepository empty = new InMemoryUrlRepository();
+            redirectTable = new RedirectTable(empty, properties, new SimpleMeterRegistry());
+            redirectTable.reload();
+            for (int i = 0; i < storedUrls; i++) {
+                redirectTable.put(url(i));
+            }
+        } else {
+            map = new ConcurrentHashMap<>(storedUrls);
+            for (int i = 0; i < storedUrls; i++) {
+                final Url url = url(i);
+                map.put(url.getId(), url);
+            }
+        }
+
+        System.out.printf("%n%s table of %d urls: %d MB retained heap, %d MB off heap%n", table, storedUrls,
+                (usedHeap() - heapBefore) >> 20, redirectTable == null ? 0 : redirectTable.bytes() >> 20);
+    }
+
+    @Benchmark
+    public String lookup() {
+        final String id = Base62Encoder.encode(ThreadLocalRandom.current().nextInt(storedUrls), ID_LENGTH);
+        final Url url = redirectTable != null ? redirectTable.get(id) : map.get(id);
+        return url.getSourceUrl();
+    }
+
+    private static Url url(int i) {
+        return new Url(Base62Encoder.encode(i, ID_LENGTH), "https://www.example.com/articles/" + i + "?ref=feed");
+    }
+
+    private static long usedHeap() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Stream.of(1, 2).forEach(i -> System.gc());
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
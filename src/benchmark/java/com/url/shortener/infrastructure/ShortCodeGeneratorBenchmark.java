@@ -0,0 +1,54 @@
+package com.url.shortener.infrastructure;
+
+import io.seruco.encoding.base62.Base62;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ShortCodeGenerator} with the former way of generating random hash: new Mersenne Twister and Base62
+ * instance per hash, 32 random bytes encoded and cut to 6 chars. Run with -prof gc to compare allocation rates
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortCodeGeneratorBenchmark {
+
+    private static final int RANDOM_SIZE = 32;
+    private static final int RANDOM_LENGTH = 6;
+
+    private final ShortCodeGenerator generator = new ShortCodeGenerator();
+
+    @Benchmark
+    public String legacyBase62() {
+        final UniformRandomProvider rnd = RandomSource.create(RandomSource.MT);
+        final Base62 base62 = Base62.createInstance();
+
+        final byte[] randomBytes = new byte[RANDOM_SIZE];
+        rnd.nextBytes(randomBytes);
+
+        final byte[] encodedBytes = base62.encode(randomBytes);
+
+        final String longHash = new String(encodedBytes);
+        return StringUtils.substring(longHash, 0, RANDOM_LENGTH);
+    }
+
+    @Benchmark
+    public String shortCodeGenerator() {
+        return generator.generate(RANDOM_LENGTH);
+    }
+}
@@ -0,0 +1,57 @@
+package com.url.shortener;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Aggregated clicks of a shortened url. Referrers are counted by host, clicks without referrer are not listed
+ */
+public class ClickStats {
+
+    private String id;
+
+    private long clicks;
+
+    private Instant lastClickAt;
+
+    private Map<String, Long> referrers;
+
+    public ClickStats(String id, long clicks, Instant lastClickAt, Map<String, Long> referrers) {
+        this.id = id;
+        this.clicks = clicks;
+        this.lastClickAt = lastClickAt;
+        this.referrers = referrers;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getClicks() {
+        return clicks;
+    }
+
+    public void setClicks(long clicks) {
+        this.clicks = clicks;
+    }
+
+    public Instant getLastClickAt() {
+        return lastClickAt;
+    }
+
+    public void setLastClickAt(Instant lastClickAt) {
+        this.lastClickAt = lastClickAt;
+    }
+
+    public Map<String, Long> getReferrers() {
+        return referrers;
+    }
+
+    public void setReferrers(Map<String, Long> referrers) {
+        this.referrers = referrers;
+    }
+}
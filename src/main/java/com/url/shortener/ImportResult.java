@@ -0,0 +1,24 @@
+package com.url.shortener;
+
+/**
+ * Outcome of an url archive import. Urls whose ids are already stored, including the ones stored by an earlier
+ * attempt of the same import, and urls which have expired are skipped
+ */
+public class ImportResult {
+
+    private final long imported;
+    private final long skipped;
+
+    public ImportResult(long imported, long skipped) {
+        this.imported = imported;
+        this.skipped = skipped;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+}
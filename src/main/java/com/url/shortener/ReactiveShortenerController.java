@@ -0,0 +1,188 @@
+package com.url.shortener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.RedirectPolicy;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import com.url.shortener.infrastructure.UrlNotFoundException;
+import com.url.shortener.infrastructure.UrlValidationException;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.url.shortener.ShortenerController.APPLICATION_NDJSON_VALUE;
+import static com.url.shortener.ShortenerController.MAX_BATCH_SIZE;
+import static com.url.shortener.ShortenerController.MAX_PAGE_SIZE;
+
+/**
+ * Endpoints of {@link ShortenerController} served by WebFlux with "reactive" profile, except /url-archive. Shortening
+ * with ttl is rejected with 400 and requests are not rate limited, see {@link ReactiveShortenerService}
+ */
+@CrossOrigin
+@RestController
+@Profile("reactive")
+public class ReactiveShortenerController {
+
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_END = {']'};
+    private static final byte[] SEPARATOR = {','};
+    private static final byte[] NEW_LINE = {'\n'};
+
+    private ReactiveShortenerService service;
+    private ObjectMapper objectMapper;
+    private RedirectPolicy redirectPolicy;
+    private ClickAnalytics clickAnalytics;
+    private ShortenerMetrics metrics;
+
+    @Autowired
+    public ReactiveShortenerController(ReactiveShortenerService service, ObjectMapper objectMapper,
+                                       RedirectPolicy redirectPolicy, ClickAnalytics clickAnalytics,
+                                       ShortenerMetrics metrics) {
+        this.service = service;
+        this.objectMapper = objectMapper;
+        this.redirectPolicy = redirectPolicy;
+        this.clickAnalytics = clickAnalytics;
+        this.metrics = metrics;
+    }
+
+    @PostMapping("/shorten-url")
+    public Mono<Url> shortenUrl(@RequestBody String source, @RequestParam(value = "custom-hash", required =
+            false) String customHash, @RequestParam(value = "ttl", required = false) String ttl) {
+        if (ttl != null) {
+            return Mono.error(new UrlValidationException("Ttl is not supported in reactive mode"));
+        }
+
+        return service.shorten(source, customHash);
+    }
+
+    @PostMapping(value = "/shorten-urls", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<List<ShortenResult>> shortenUrls(@RequestBody List<ShortenRequest> requests) {
+        if (requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
+            return Mono.error(new UrlValidationException(String.format("Batch size must be between 1 and %s",
+                    MAX_BATCH_SIZE)));
+        }
+
+        return service.shortenAll(requests);
+    }
+
+    @PostMapping(value = "/shorten-urls", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public Mono<List<ShortenResult>> shortenUrlLines(@RequestBody String sources) {
+        final List<ShortenRequest> requests = Arrays.stream(StringUtils.split(sources, "\r\n"))
+                .map(source -> new ShortenRequest(source, null))
+                .collect(Collectors.toList());
+
+        return shortenUrls(requests);
+    }
+
+    @GetMapping(value = "/url", params = "limit")
+    public Mono<List<Url>> getUrls(@RequestParam(value = "after", required = false) String after,
+                                   @RequestParam("limit") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.error(new UrlValidationException(String.format("Page limit must be between 1 and %s",
+                    MAX_PAGE_SIZE)));
+        }
+
+        return service.getUrls(after, limit).collectList();
+    }
+
+    /**
+     * Writes urls as JSON array element by element. Encoding Flux with Jackson would collect the whole array first
+     */
+    @GetMapping("/url")
+    public Mono<Void> getAllUrls(ServerHttpResponse response) {
+        final DataBufferFactory buffers = response.bufferFactory();
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        final Flux<DataBuffer> elements = service.getAllUrls()
+                .index()
+                .map(url -> toBuffer(buffers, url.getT1() == 0 ? null : SEPARATOR, url.getT2(), null));
+
+        return response.writeWith(Flux.concat(
+                Mono.fromSupplier(() -> buffers.wrap(ARRAY_START)),
+                elements,
+                Mono.fromSupplier(() -> buffers.wrap(ARRAY_END))));
+    }
+
+    @GetMapping(value = "/url", produces = APPLICATION_NDJSON_VALUE)
+    public Mono<Void> getAllUrlsAsNdjson(ServerHttpResponse response) {
+        final DataBufferFactory buffers = response.bufferFactory();
+        response.getHeaders().setContentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE));
+
+        return response.writeWith(service.getAllUrls().map(url -> toBuffer(buffers, null, url, NEW_LINE)));
+    }
+
+    @GetMapping("/url/{id}")
+    public Mono<Url> getUrl(@PathVariable String id) {
+        return service.getUrlByID(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new UrlNotFoundException(String.format("Url id=%s " +
+                        "not found", id)))));
+    }
+
+    /**
+     * Stored totals are read with a blocking call, so it's kept off the event loop
+     */
+    @GetMapping("/url/{id}/clicks")
+    public Mono<ClickStats> getClickStats(@PathVariable String id) {
+        return getUrl(id).then(Mono.fromCallable(() -> clickAnalytics.getStats(id))
+                .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    @GetMapping("redirect/{id}")
+    public Mono<ResponseEntity<Void>> redirect(@PathVariable String id, @RequestHeader(value = HttpHeaders.REFERER,
+            required = false) String referrer) {
+        return ReactiveShortenerService.timed(service.getUrlByID(id), metrics::redirected)
+                .doOnNext(url -> clickAnalytics.record(id, referrer))
+                .map(this::redirectTo)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new UrlNotFoundException(String.format("Shortened url " +
+                        "with id=%s is not found", id)))));
+    }
+
+    @DeleteMapping("url/{id}")
+    public Mono<Void> deleteUrl(@PathVariable String id) {
+        return service.deleteUrl(id).then();
+    }
+
+    private ResponseEntity<Void> redirectTo(Url url) {
+        final ResponseEntity.BodyBuilder response = ResponseEntity.status(redirectPolicy.getStatus(url))
+                .header(HttpHeaders.LOCATION, url.getSourceUrl());
+        final String cacheControl = redirectPolicy.getCacheControl(url);
+        if (cacheControl != null) {
+            response.header(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        return response.build();
+    }
+
+    private DataBuffer toBuffer(DataBufferFactory buffers, byte[] prefix, Url url, byte[] suffix) {
+        final byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(url);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final DataBuffer buffer = buffers.allocateBuffer(json.length + 1);
+        if (prefix != null) {
+            buffer.write(prefix);
+        }
+        buffer.write(json);
+        if (suffix != null) {
+            buffer.write(suffix);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,342 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.DigestProperties;
+import com.url.shortener.infrastructure.IdGenerator;
+import com.url.shortener.infrastructure.InvalidationBus;
+import com.url.shortener.infrastructure.KeyspaceMonitor;
+import com.url.shortener.infrastructure.LookupFilter;
+import com.url.shortener.infrastructure.RateLimitProperties;
+import com.url.shortener.infrastructure.RedirectTable;
+import com.url.shortener.infrastructure.ReactiveUrlRepository;
+import com.url.shortener.infrastructure.ShardingProperties;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import com.url.shortener.infrastructure.SourceUrlValidator;
+import com.url.shortener.infrastructure.UrlCache;
+import com.url.shortener.infrastructure.UrlConflictException;
+import com.url.shortener.infrastructure.UrlExpiredException;
+import com.url.shortener.infrastructure.UrlExpiryProperties;
+import com.url.shortener.infrastructure.UrlFingerprint;
+import com.url.shortener.infrastructure.UrlInvalidation;
+import com.url.shortener.infrastructure.UrlValidationException;
+import com.url.shortener.infrastructure.WriteBehindProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Non-blocking counterpart of {@link ShortenerService} used with "reactive" profile. Semantics are the same, storage
+ * is accessed through {@link ReactiveUrlRepository} so no thread waits for the database. Urls are created without
+ * expiry, expired urls created by other instances are answered with 410 and are not reused. Archives, concurrent
+ * lookup deduplication, url-expiry.default-ttl, rate limiting, sharding and write-behind are not supported; the
+ * service fails to start when one of the latter is enabled rather than silently ignoring it
+ */
+@Service
+@Profile("reactive")
+public class ReactiveShortenerService {
+
+    private ReactiveUrlRepository repository;
+    private DigestProperties digestProperties;
+    private UrlCache cache;
+    private RedirectTable redirectTable;
+    private LookupFilter lookupFilter;
+    private IdGenerator idGenerator;
+    private ShortenerMetrics metrics;
+    private KeyspaceMonitor keyspaceMonitor;
+    private InvalidationBus invalidationBus;
+    private SourceUrlValidator sourceUrlValidator;
+    private ClickAnalytics clickAnalytics;
+
+    @Autowired
+    public ReactiveShortenerService(ReactiveUrlRepository repository, DigestProperties digestProperties,
+                                    UrlCache cache, RedirectTable redirectTable, LookupFilter lookupFilter,
+                                    IdGenerator idGenerator, ShortenerMetrics metrics,
+                                    KeyspaceMonitor keyspaceMonitor, InvalidationBus invalidationBus,
+                                    SourceUrlValidator sourceUrlValidator, UrlExpiryProperties expiryProperties,
+                                    RateLimitProperties rateLimitProperties, ShardingProperties shardingProperties,
+                                    WriteBehindProperties writeBehindProperties, ClickAnalytics clickAnalytics) {
+        unsupported("url-expiry.default-ttl", expiryProperties.getDefaultTtl() != null);
+        unsupported("rate-limit.enabled", rateLimitProperties.isEnabled());
+        unsupported("sharding.enabled", shardingProperties.isEnabled());
+        unsupported("write-behind.enabled", writeBehindProperties.isEnabled());
+
+        this.repository = repository;
+        this.digestProperties = digestProperties;
+        this.cache = cache;
+        this.redirectTable = redirectTable;
+        this.lookupFilter = lookupFilter;
+        this.idGenerator = idGenerator;
+        this.metrics = metrics;
+        this.keyspaceMonitor = keyspaceMonitor;
+        this.invalidationBus = invalidationBus;
+        this.sourceUrlValidator = sourceUrlValidator;
+        this.clickAnalytics = clickAnalytics;
+    }
+
+    Mono<Url> shorten(String sourceUrl, String customHash) {
+        return timed(Mono.defer(() -> process(sourceUrl, customHash)), metrics::shortened)
+                .doOnError(UrlConflictException.class, e -> metrics.conflict());
+    }
+
+    private Mono<Url> process(String sourceUrl, String customHash) {
+        final String normalized = sourceUrlValidator.normalize(sourceUrl);
+
+        if (normalized == null) {
+            return Mono.error(new UrlValidationException(ShortenBatch.INVALID_URL_MESSAGE));
+        }
+
+        final Mono<Url> result = StringUtils.isBlank(customHash) ? generateWithRandomHash(normalized) :
+                generateUsingProvidedHash(normalized, customHash);
+
+        return result.map(this::completed);
+    }
+
+    /**
+     * Shortens urls in bulk, see {@link ShortenerService#shortenAll(List)}
+     *
+     * @param requests to be processed
+     * @return outcome of each request in the same order
+     */
+    Mono<List<ShortenResult>> shortenAll(List<ShortenRequest> requests) {
+        final ShortenBatch batch = new ShortenBatch(requests, sourceUrlValidator::normalize);
+
+        final Collection<String> sourceUrls = batch.getRandomSourceUrls();
+        final Collection<String> customHashes = batch.getCustomHashes();
+        final Mono<List<Url>> bySourceUrl = sourceUrls.isEmpty() ? Mono.just(Collections.emptyList()) :
+                repository.findByFingerprintIn(sourceUrls.stream().map(UrlFingerprint::of)
+                        .collect(Collectors.toSet())).filter(url -> url.getExpiresAt() == null).collectList();
+        final Mono<List<Url>> byId = customHashes.isEmpty() ? Mono.just(Collections.emptyList()) :
+                repository.findByIdIn(customHashes).filter(url -> !url.isExpiredAt(Instant.now())).collectList();
+
+        return Mono.zip(bySourceUrl, byId)
+                .doOnNext(existing -> batch.resolveExisting(existing.getT1(), existing.getT2()))
+                .then(nextIds(batch))
+                .map(batch::createUrls)
+                .flatMap(urls -> urls.isEmpty() ? Mono.empty() : insertBatch(batch, urls))
+                .then(Mono.fromCallable(() -> {
+                    batch.getCompletedUrls().forEach(this::completed);
+                    batch.getResults().stream().filter(result -> result.getStatus() == HttpStatus.CONFLICT.value())
+                            .forEach(result -> metrics.conflict());
+                    return batch.getResults();
+                }));
+    }
+
+    /**
+     * Returns one page of urls ordered by id, see {@link ShortenerService#getUrls(String, int)}
+     */
+    Flux<Url> getUrls(String after, int limit) {
+        return repository.findByIdGreaterThanOrderByIdAsc(StringUtils.defaultString(after), PageRequest.of(0, limit))
+                .map(this::enrichWithShortcut);
+    }
+
+    /**
+     * Emits all urls as they are read from the storage cursor. Reading follows subscriber demand, so memory
+     * consumption doesn't depend on the amount of urls
+     */
+    Flux<Url> getAllUrls() {
+        return repository.findAll().map(this::enrichWithShortcut);
+    }
+
+    Mono<Url> getUrlByID(String id) {
+        return timed(Mono.defer(() -> findUrl(id)), metrics::lookedUp)
+                .doOnSuccess(url -> {
+                    if (url == null) {
+                        metrics.notFound();
+                    }
+                })
+                .flatMap(url -> {
+                    if (url.isExpiredAt(Instant.now())) {
+                        metrics.expired();
+                        return Mono.error(new UrlExpiredException(String.format("Url id=%s has expired", id)));
+                    }
+                    return Mono.just(url);
+                });
+    }
+
+    private Mono<Url> findUrl(String id) {
+        if (id == null || !lookupFilter.mightContain(id)) {
+            return Mono.empty();
+        }
+
+        final Url resident = redirectTable.get(id);
+        final Url cached = resident != null ? resident : cache.getIfPresent(id);
+        if (cached != null) {
+            return Mono.just(enrichWithShortcut(cached));
+        }
+
+        // see UrlCache#generation(String)
+        final long generation = cache.generation(id);
+        return repository.findById(id)
+                .doOnNext(url -> {
+                    remember(url);
+                    if (cache.generation(id) != generation) {
+                        cache.invalidate(id);
+                        redirectTable.remove(id);
+                    }
+                })
+                .map(this::enrichWithShortcut);
+    }
+
+    Mono<Boolean> deleteUrl(String id) {
+        if (id == null) {
+            return Mono.error(new UrlValidationException("Url id can't be null"));
+        }
+
+        return timed(repository.deleteById(id)
+                .then(Mono.fromRunnable(() -> {
+                    cache.invalidate(id);
+                    redirectTable.remove(id);
+                    invalidationBus.publish(UrlInvalidation.deleted(id));
+                }))
+                .then(deleteClicks(id))
+                .thenReturn(true), metrics::deleted);
+    }
+
+    /**
+     * Records time from subscription until the mono terminates or is cancelled
+     */
+    static <T> Mono<T> timed(Mono<T> mono, LongConsumer recorder) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return mono.doFinally(signal -> recorder.accept(start));
+        });
+    }
+
+    private Mono<Url> generateWithRandomHash(String sourceUrl) {
+        return repository.findByFingerprint(UrlFingerprint.of(sourceUrl))
+                .filter(url -> url.getExpiresAt() == null && StringUtils.equals(url.getSourceUrl(), sourceUrl))
+                .next()
+                .switchIfEmpty(insertWithGeneratedId(sourceUrl));
+    }
+
+    private Mono<Url> generateUsingProvidedHash(String sourceUrl, String customHash) {
+        return repository.findById(customHash)
+                .filter(url -> !url.isExpiredAt(Instant.now()))
+                .flatMap(url -> StringUtils.equals(url.getSourceUrl(), sourceUrl) ? Mono.just(url) :
+                        Mono.<Url>error(new UrlConflictException(ShortenerService.conflictMessage(customHash))))
+                .switchIfEmpty(Mono.defer(() -> repository.save(ShortenerService.newUrl(customHash, sourceUrl))));
+    }
+
+    /**
+     * Persists url under generated id, generating another one when the id has been taken concurrently. Taken ids
+     * are detected by insert only, so generator isn't asked to check them upfront and inserts are reported to
+     * {@link KeyspaceMonitor} as attempts instead
+     */
+    private Mono<Url> insertWithGeneratedId(String sourceUrl) {
+        final int maxAttempts = digestProperties.getRandomMaxAttempts();
+        final AtomicInteger idLength = new AtomicInteger();
+
+        return nextId()
+                .doOnNext(id -> idLength.set(id.length()))
+                .flatMap(id -> repository.insert(ShortenerService.newUrl(id, sourceUrl)))
+                .doOnNext(url -> keyspaceMonitor.attempted(1, 0))
+                .doOnError(DuplicateKeyException.class, e -> keyspaceMonitor.attempted(1, 1))
+                .retryWhen(Retry.max(maxAttempts - 1)
+                        .filter(DuplicateKeyException.class::isInstance)
+                        .onRetryExhaustedThrow((spec, signal) -> {
+                            keyspaceMonitor.exhausted(idLength.get());
+                            return new UnsupportedOperationException(String.format("Can't persist generated hash. " +
+                                    "Attempted %s times", maxAttempts), signal.failure());
+                        }));
+    }
+
+    private Mono<Void> insertBatch(ShortenBatch batch, List<Url> urls) {
+        return repository.insert(urls)
+                .then(Mono.fromRunnable(batch::inserted))
+                .onErrorResume(DataIntegrityViolationException.class, e -> {
+                    // ids or urls have been taken concurrently, fall back to one by one processing
+                    final Mono<Void> random = Flux.fromIterable(batch.getRandomSourceUrls())
+                            .concatMap(sourceUrl -> generateWithRandomHash(sourceUrl)
+                                    .doOnNext(url -> batch.completeRandom(sourceUrl, url)))
+                            .then();
+                    final Mono<Void> custom = Flux.fromIterable(batch.getCustomHashes())
+                            .concatMap(customHash -> shortenInBatch(batch, customHash))
+                            .then();
+                    return random.then(custom);
+                }).then();
+    }
+
+    private Mono<Url> shortenInBatch(ShortenBatch batch, String customHash) {
+        return generateUsingProvidedHash(batch.getCustomSourceUrl(customHash), customHash)
+                .doOnNext(url -> batch.completeCustom(customHash, url))
+                .onErrorResume(UrlConflictException.class, e -> {
+                    batch.failCustom(customHash, HttpStatus.CONFLICT, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Click totals are removed with a blocking call, so it's kept off the event loop
+     */
+    private Mono<Void> deleteClicks(String id) {
+        return Mono.<Void>fromRunnable(() -> clickAnalytics.delete(Collections.singletonList(id)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Generators may block while reserving ids (e.g. leasing a segment), so they are kept off the event loop
+     */
+    private Mono<String> nextId() {
+        return Mono.fromCallable(idGenerator::nextUncheckedId).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<List<String>> nextIds(ShortenBatch batch) {
+        return Mono.fromCallable(() -> IntStream.range(0, batch.getRandomSourceUrls().size())
+                .mapToObj(i -> idGenerator.nextUncheckedId())
+                .collect(Collectors.toList()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Url completed(Url url) {
+        created(url.getId());
+        remember(url);
+        return enrichWithShortcut(url);
+    }
+
+    /**
+     * Adds the id to the lookup filter right away and announces it, so other instances don't reject the url until
+     * their next rebuild
+     */
+    private void created(String id) {
+        lookupFilter.put(id);
+        invalidationBus.publish(UrlInvalidation.created(id));
+    }
+
+    /**
+     * Urls held by the redirect table are not cached twice
+     */
+    private void remember(Url url) {
+        if (!redirectTable.put(url)) {
+            cache.put(url);
+        }
+    }
+
+    private Url enrichWithShortcut(Url source) {
+        source.setShortcut(digestProperties.getPrefix() + source.getId());
+        return source;
+    }
+
+    private static void unsupported(String property, boolean set) {
+        if (set) {
+            throw new IllegalStateException(String.format("%s is not supported with reactive profile", property));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.RateLimiter;
+import com.url.shortener.infrastructure.RedirectPolicy;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import com.url.shortener.infrastructure.UrlExpiredException;
+import org.springframework.http.HttpHeaders;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Fast path of redirects. Writes status and headers of GET and HEAD redirect/{id} directly, without dispatching to
+ * Spring MVC. Unknown ids are answered with 404 and expired urls with 410 through the container error page, which
+ * renders the same body as {@link ShortenerController}, clients over the redirect limit of {@link RateLimiter} with 429
+ * before the url is looked up. Served redirects are published to {@link ClickAnalytics}. Other requests pass through
+ */
+public class RedirectFilter implements Filter {
+
+    static final String PATH_PREFIX = "/redirect/";
+
+    private final ShortenerService service;
+    private final RedirectPolicy policy;
+    private final ClickAnalytics clickAnalytics;
+    private final ShortenerMetrics metrics;
+    private final RateLimiter rateLimiter;
+
+    public RedirectFilter(ShortenerService service, RedirectPolicy policy, ClickAnalytics clickAnalytics,
+                          ShortenerMetrics metrics, RateLimiter rateLimiter) {
+        this.service = service;
+        this.policy = policy;
+        this.clickAnalytics = clickAnalytics;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        final HttpServletRequest request = (HttpServletRequest) servletRequest;
+        final HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        final String id = redirectId(request);
+        if (id == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!rateLimiter.admit(ShortenerController.REDIRECT_LIMIT, request, response)) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final Url url;
+        try {
+            url = service.getUrlByID(id);
+        } catch (UrlExpiredException e) {
+            response.sendError(HttpServletResponse.SC_GONE, e.getMessage());
+            return;
+        }
+
+        if (url == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, String.format("Shortened url with id=%s is not " +
+                    "found", id));
+            return;
+        }
+
+        policy.writeTo(response, url);
+        clickAnalytics.record(id, request.getHeader(HttpHeaders.REFERER));
+        metrics.redirected(start);
+    }
+
+    /**
+     * @return id from redirect/{id} path of GET or HEAD request, null for other requests
+     */
+    static String redirectId(HttpServletRequest request) {
+        final String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return null;
+        }
+
+        final String uri = request.getRequestURI();
+        final int prefixAt = request.getContextPath().length();
+        if (!uri.startsWith(PATH_PREFIX, prefixAt)) {
+            return null;
+        }
+
+        // encoded and nested paths are left to Spring MVC
+        final int start = prefixAt + PATH_PREFIX.length();
+        for (int i = start; i < uri.length(); i++) {
+            final char c = uri.charAt(i);
+            if (c == '/' || c == '%' || c == ';') {
+                return null;
+            }
+        }
+
+        return uri.length() == start ? null : uri.substring(start);
+    }
+}
@@ -0,0 +1,33 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.RateLimiter;
+import com.url.shortener.infrastructure.RedirectPolicy;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "redirect.fast-path-enabled", havingValue = "true")
+public class RedirectFilterConfig {
+
+    /**
+     * Runs after encoding and metrics filters, which are ordered at the highest precedence
+     */
+    @Bean
+    public FilterRegistrationBean<RedirectFilter> redirectFilter(ShortenerService service, RedirectPolicy policy,
+                                                                 ClickAnalytics clickAnalytics,
+                                                                 ShortenerMetrics metrics,
+                                                                 RateLimiter rateLimiter) {
+        final FilterRegistrationBean<RedirectFilter> registration = new FilterRegistrationBean<>(
+                new RedirectFilter(service, policy, clickAnalytics, metrics, rateLimiter));
+        registration.addUrlPatterns(RedirectFilter.PATH_PREFIX + "*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -0,0 +1,208 @@
+package com.url.shortener;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bookkeeping of bulk shortening. Keeps requests deduplicated by source url (random hash) and by custom hash, so each
+ * distinct url is resolved and persisted once, and maps outcomes back to every request in original order. Storage
+ * access is left to the caller
+ */
+class ShortenBatch {
+
+    static final String INVALID_URL_MESSAGE = "Invalid source url is provided";
+
+    private final List<ShortenRequest> requests;
+    private final ShortenResult[] results;
+
+    private final Map<String, Pending> randomBySourceUrl = new LinkedHashMap<>();
+    private final Map<String, Pending> customByHash = new LinkedHashMap<>();
+
+    /**
+     * @param requests            to be processed
+     * @param sourceUrlNormalizer returns normal form of a source url, null if it isn't valid
+     */
+    ShortenBatch(List<ShortenRequest> requests, UnaryOperator<String> sourceUrlNormalizer) {
+        this.requests = requests;
+        this.results = new ShortenResult[requests.size()];
+
+        for (int i = 0; i < requests.size(); i++) {
+            final ShortenRequest request = requests.get(i);
+            final String sourceUrl = request == null ? null : sourceUrlNormalizer.apply(request.getSourceUrl());
+
+            if (sourceUrl == null) {
+                results[i] = ShortenResult.failure(request == null ? new ShortenRequest() : request,
+                        HttpStatus.BAD_REQUEST, INVALID_URL_MESSAGE);
+            } else if (StringUtils.isBlank(request.getCustomHash())) {
+                randomBySourceUrl.computeIfAbsent(sourceUrl, Pending::new).indexes.add(i);
+            } else {
+                final Pending pending = customByHash.computeIfAbsent(request.getCustomHash(),
+                        hash -> new Pending(sourceUrl));
+
+                if (StringUtils.equals(pending.sourceUrl, sourceUrl)) {
+                    pending.indexes.add(i);
+                } else {
+                    results[i] = ShortenResult.failure(request, HttpStatus.CONFLICT,
+                            ShortenerService.conflictMessage(request.getCustomHash()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return distinct source urls which should be shortened with random hash and aren't resolved yet
+     */
+    Collection<String> getRandomSourceUrls() {
+        return new ArrayList<>(randomBySourceUrl.keySet());
+    }
+
+    /**
+     * @return distinct custom hashes which aren't resolved yet
+     */
+    Collection<String> getCustomHashes() {
+        return new ArrayList<>(customByHash.keySet());
+    }
+
+    /**
+     * Completes requests which are already shortened
+     *
+     * @param bySourceUrl persistent urls found by source urls of random hash requests
+     * @param byId        persistent urls found by custom hashes
+     */
+    void resolveExisting(Collection<Url> bySourceUrl, Collection<Url> byId) {
+        for (Url url : bySourceUrl) {
+            final Pending pending = randomBySourceUrl.remove(url.getSourceUrl());
+            if (pending != null) {
+                complete(pending, url);
+            }
+        }
+
+        for (Url url : byId) {
+            final Pending pending = customByHash.remove(url.getId());
+            if (pending == null) {
+                continue;
+            }
+
+            if (StringUtils.equals(url.getSourceUrl(), pending.sourceUrl)) {
+                complete(pending, url);
+            } else {
+                fail(pending, HttpStatus.CONFLICT, ShortenerService.conflictMessage(url.getId()));
+            }
+        }
+    }
+
+    /**
+     * Creates urls which are still unresolved. Random hash urls get provided ids, custom hash ones use their hash
+     *
+     * @param ids generated ids, one for each of {@link #getRandomSourceUrls()}
+     * @return urls to be inserted
+     */
+    List<Url> createUrls(List<String> ids) {
+        final List<Url> urls = new ArrayList<>(randomBySourceUrl.size() + customByHash.size());
+
+        final Iterator<String> id = ids.iterator();
+        randomBySourceUrl.values().forEach(pending -> urls.add(pending.create(id.next())));
+        customByHash.forEach((hash, pending) -> urls.add(pending.create(hash)));
+
+        return urls;
+    }
+
+    /**
+     * Completes all unresolved requests with urls returned from the last {@link #createUrls(List)}, once they have
+     * been persisted
+     */
+    void inserted() {
+        randomBySourceUrl.values().forEach(pending -> complete(pending, pending.url));
+        customByHash.values().forEach(pending -> complete(pending, pending.url));
+        randomBySourceUrl.clear();
+        customByHash.clear();
+    }
+
+    /**
+     * Completes unresolved requests whose urls from the last {@link #createUrls(List)} have been persisted before the
+     * batch insert failed
+     *
+     * @param stored persistent urls found by ids of the created urls
+     */
+    void insertedPartially(Collection<Url> stored) {
+        final Map<String, Url> byId = new HashMap<>();
+        stored.forEach(url -> byId.put(url.getId(), url));
+        randomBySourceUrl.values().removeIf(pending -> completeIfStored(pending, byId.get(pending.url.getId())));
+        customByHash.values().removeIf(pending -> completeIfStored(pending, byId.get(pending.url.getId())));
+    }
+
+    void completeRandom(String sourceUrl, Url url) {
+        complete(randomBySourceUrl.remove(sourceUrl), url);
+    }
+
+    String getCustomSourceUrl(String customHash) {
+        return customByHash.get(customHash).sourceUrl;
+    }
+
+    void completeCustom(String customHash, Url url) {
+        complete(customByHash.remove(customHash), url);
+    }
+
+    void failCustom(String customHash, HttpStatus status, String error) {
+        fail(customByHash.remove(customHash), status, error);
+    }
+
+    /**
+     * @return distinct urls of successfully completed requests
+     */
+    Collection<Url> getCompletedUrls() {
+        final Map<String, Url> urls = new LinkedHashMap<>();
+        Arrays.stream(results).filter(result -> result != null && result.getUrl() != null)
+                .forEach(result -> urls.putIfAbsent(result.getUrl().getId(), result.getUrl()));
+        return urls.values();
+    }
+
+    List<ShortenResult> getResults() {
+        return Arrays.asList(results);
+    }
+
+    private void complete(Pending pending, Url url) {
+        pending.indexes.forEach(i -> results[i] = ShortenResult.success(requests.get(i), url));
+    }
+
+    /**
+     * @return whether the stored url is the one created for pending request, so the request has been completed
+     */
+    private boolean completeIfStored(Pending pending, Url stored) {
+        if (stored == null || !StringUtils.equals(stored.getSourceUrl(), pending.sourceUrl)) {
+            return false;
+        }
+
+        complete(pending, stored);
+        return true;
+    }
+
+    private void fail(Pending pending, HttpStatus status, String error) {
+        pending.indexes.forEach(i -> results[i] = ShortenResult.failure(requests.get(i), status, error));
+    }
+
+    private static final class Pending {
+        private final String sourceUrl;
+        private final List<Integer> indexes = new ArrayList<>(1);
+        private Url url;
+
+        private Pending(String sourceUrl) {
+            this.sourceUrl = sourceUrl;
+        }
+
+        private Url create(String id) {
+            url = ShortenerService.newUrl(id, sourceUrl);
+            return url;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.url.shortener;
+
+/**
+ * Single item of bulk shortening request
+ */
+public class ShortenRequest {
+
+    private String sourceUrl;
+    private String customHash;
+
+    public ShortenRequest() {
+    }
+
+    public ShortenRequest(String sourceUrl, String customHash) {
+        this.sourceUrl = sourceUrl;
+        this.customHash = customHash;
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public void setSourceUrl(String sourceUrl) {
+        this.sourceUrl = sourceUrl;
+    }
+
+    public String getCustomHash() {
+        return customHash;
+    }
+
+    public void setCustomHash(String customHash) {
+        this.customHash = customHash;
+    }
+}
@@ -0,0 +1,52 @@
+package com.url.shortener;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Outcome of shortening single item of bulk request. Either url or error is set, status mirrors the one which
+ * single-url endpoint would have responded with
+ */
+public class ShortenResult {
+
+    private final String sourceUrl;
+    private final String customHash;
+    private final int status;
+    private final Url url;
+    private final String error;
+
+    private ShortenResult(ShortenRequest request, HttpStatus status, Url url, String error) {
+        this.sourceUrl = request.getSourceUrl();
+        this.customHash = request.getCustomHash();
+        this.status = status.value();
+        this.url = url;
+        this.error = error;
+    }
+
+    static ShortenResult success(ShortenRequest request, Url url) {
+        return new ShortenResult(request, HttpStatus.OK, url, null);
+    }
+
+    static ShortenResult failure(ShortenRequest request, HttpStatus status, String error) {
+        return new ShortenResult(request, status, null, error);
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public String getCustomHash() {
+        return customHash;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Url getUrl() {
+        return url;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
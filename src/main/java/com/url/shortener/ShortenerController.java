@@ -1,26 +1,64 @@
 package com.url.shortener;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.RateLimited;
+import com.url.shortener.infrastructure.RedirectPolicy;
+import com.url.shortener.infrastructure.ShortenerMetrics;
 import com.url.shortener.infrastructure.UrlNotFoundException;
+import com.url.shortener.infrastructure.UrlValidationException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.view.RedirectView;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Api(value = "Operations for shortening urls")
 @CrossOrigin
 @RestController
+@Profile("!reactive")
 public class ShortenerController {
 
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 10000;
+    static final String SHORTEN_LIMIT = "shorten";
+    static final String REDIRECT_LIMIT = "redirect";
+    static final String IMPORT_LIMIT = "import";
+
     private ShortenerService service;
+    private ObjectMapper objectMapper;
+    private RedirectPolicy redirectPolicy;
+    private ClickAnalytics clickAnalytics;
+    private ShortenerMetrics metrics;
 
     @Autowired
-    public ShortenerController(ShortenerService service) {
+    public ShortenerController(ShortenerService service, ObjectMapper objectMapper, RedirectPolicy redirectPolicy,
+                               ClickAnalytics clickAnalytics, ShortenerMetrics metrics) {
         this.service = service;
+        this.objectMapper = objectMapper;
+        this.redirectPolicy = redirectPolicy;
+        this.clickAnalytics = clickAnalytics;
+        this.metrics = metrics;
     }
 
 
@@ -31,21 +69,107 @@ public class ShortenerController {
             @ApiResponse(code = 403, message = "Accessing the resource you were trying to reach is forbidden"),
             @ApiResponse(code = 404, message = "The resource you were trying to reach is not found"),
             @ApiResponse(code = 409, message = "You're trying to shorten url with custom hash, but different url " +
-                    "already uses this hash")
+                    "already uses this hash"),
+            @ApiResponse(code = 429, message = "Too many requests of the client, see Retry-After header")
     })
+    @RateLimited(SHORTEN_LIMIT)
     @PostMapping("/shorten-url")
     public Url shortenUrl(@RequestBody String source, @RequestParam(value = "custom-hash", required =
-            false) String customHash) {
-        return service.shorten(source, customHash);
+            false) String customHash, @RequestParam(value = "ttl", required = false) String ttl) {
+        return service.shorten(source, customHash, parseTtl(ttl));
+    }
+
+    @ApiOperation(value = "Shortens list of urls. Each item is processed as with /shorten-url, results are returned " +
+            "in the same order with per-item status and error", response = ShortenResult.class, responseContainer =
+            "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Batch has been processed, see status of each item"),
+            @ApiResponse(code = 400, message = "Batch is empty or too large"),
+            @ApiResponse(code = 429, message = "Too many requests of the client, see Retry-After header")
+    })
+    @RateLimited(SHORTEN_LIMIT)
+    @PostMapping(value = "/shorten-urls", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ShortenResult> shortenUrls(@RequestBody List<ShortenRequest> requests) {
+        if (requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
+            throw new UrlValidationException(String.format("Batch size must be between 1 and %s", MAX_BATCH_SIZE));
+        }
+
+        return service.shortenAll(requests);
+    }
+
+    @ApiOperation(value = "Shortens urls provided one per line using random hashes", response = ShortenResult.class,
+            responseContainer = "List")
+    @RateLimited(SHORTEN_LIMIT)
+    @PostMapping(value = "/shorten-urls", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public List<ShortenResult> shortenUrlLines(@RequestBody String sources) {
+        final List<ShortenRequest> requests = Arrays.stream(StringUtils.split(sources, "\r\n"))
+                .map(source -> new ShortenRequest(source, null))
+                .collect(Collectors.toList());
+
+        return shortenUrls(requests);
     }
 
-    @ApiOperation(value = "Gets list of all urls. ApiResponses will be described in version 2.0")
+    @ApiOperation(value = "Gets page of urls ordered by id. Id of the last url is the 'after' value for the next " +
+            "page. ApiResponses will be described in version 2.0")
+    @GetMapping(value = "/url", params = "limit")
+    public List<Url> getUrls(@RequestParam(value = "after", required = false) String after,
+                             @RequestParam("limit") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new UrlValidationException(String.format("Page limit must be between 1 and %s", MAX_PAGE_SIZE));
+        }
+
+        return service.getUrls(after, limit);
+    }
+
+    @ApiOperation(value = "Streams all urls as JSON array. ApiResponses will be described in version 2.0")
     @GetMapping("/url")
-    public List<Url> getUrls() {
-        return service.getUrls();
+    public ResponseEntity<StreamingResponseBody> getAllUrls() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(output -> {
+            final JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+            generator.writeStartArray();
+            service.forEachUrl(url -> writeUrl(generator, url));
+            generator.writeEndArray();
+            generator.flush();
+        });
+    }
+
+    @ApiOperation(value = "Streams all urls as newline delimited JSON. ApiResponses will be described in version 2.0")
+    @GetMapping(value = "/url", produces = APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody getAllUrlsAsNdjson() {
+        return output -> {
+            final JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+            generator.setRootValueSeparator(null);
+            service.forEachUrl(url -> {
+                writeUrl(generator, url);
+                writeNewLine(generator);
+            });
+            generator.flush();
+        };
+    }
+
+    @ApiOperation(value = "Streams all urls as a compact binary archive for backups and migrations, see " +
+            "UrlArchiveWriter for the format. ApiResponses will be described in version 2.0")
+    @GetMapping(value = "/url-archive", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public StreamingResponseBody exportUrls() {
+        return output -> service.exportUrls(Channels.newChannel(output));
+    }
+
+    @ApiOperation(value = "Imports urls from an archive made by GET /url-archive, streaming the request body. Urls " +
+            "with ids already taken and expired urls are skipped", response = ImportResult.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Archive has been imported"),
+            @ApiResponse(code = 400, message = "Archive is corrupted or truncated, blocks before the broken one " +
+                    "have been imported"),
+            @ApiResponse(code = 429, message = "Too many requests of the client, see Retry-After header")
+    })
+    @RateLimited(IMPORT_LIMIT)
+    @PostMapping(value = "/url-archive", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ImportResult importUrls(HttpServletRequest request) throws IOException {
+        return service.importUrls(Channels.newChannel(request.getInputStream()));
     }
 
-    @ApiOperation(value = "Gets url using its id. ApiResponses will be described in version 2.0")
+    @ApiOperation(value = "Gets url using its id. Expired urls are answered with 410. ApiResponses will be described " +
+            "in version 2.0")
     @GetMapping("/url/{id}")
     public Url getUrl(@PathVariable String id) {
         final Url url = service.getUrlByID(id);
@@ -57,17 +181,35 @@ public class ShortenerController {
         return url;
     }
 
-    @ApiOperation(value = "Attempts to find url by it's hash and if found redirects. ApiResponses will be described " +
+    @ApiOperation(value = "Gets clicks of url aggregated by referrer host. Clicks are stored in batches, so the " +
+            "latest ones may not be counted yet. ApiResponses will be described in version 2.0")
+    @GetMapping("/url/{id}/clicks")
+    public ClickStats getClickStats(@PathVariable String id) {
+        if (service.getUrlByID(id) == null) {
+            throw new UrlNotFoundException(String.format("Url id=%s not found", id));
+        }
+
+        return clickAnalytics.getStats(id);
+    }
+
+    @ApiOperation(value = "Attempts to find url by it's hash and if found redirects. Redirects are normally served " +
+            "by RedirectFilter, this handler is used when the fast path is disabled. ApiResponses will be described " +
             "in version 2.0")
+    @RateLimited(REDIRECT_LIMIT)
     @GetMapping("redirect/{id}")
-    public RedirectView redirect(@PathVariable String id) {
+    public void redirect(@PathVariable String id, @RequestHeader(value = HttpHeaders.REFERER, required = false)
+            String referrer, HttpServletResponse response) {
+        final long start = System.nanoTime();
         final Url url = service.getUrlByID(id);
 
-        if (url != null) {
-            return new RedirectView(url.getSourceUrl());
+        if (url == null) {
+            throw new UrlNotFoundException(String.format("Shortened url with id=%s is not found", id));
         }
 
-        throw new UrlNotFoundException(String.format("Shortened url with id=%s is not found", id));
+        // written directly, view resolution and message converters would only add overhead to an empty response
+        redirectPolicy.writeTo(response, url);
+        clickAnalytics.record(id, referrer);
+        metrics.redirected(start);
     }
 
     @ApiOperation(value = "Deletes url. ApiResponses will be described in version 2.0")
@@ -75,4 +217,36 @@ public class ShortenerController {
     public void deleteUrl(@PathVariable String id) {
         service.deleteUrl(id);
     }
+
+    /**
+     * @param ttl e.g. 30m or ISO-8601 PT30M, plain numbers are milliseconds
+     * @return parsed ttl, null if not provided
+     */
+    private static Duration parseTtl(String ttl) {
+        if (StringUtils.isBlank(ttl)) {
+            return null;
+        }
+
+        try {
+            return DurationStyle.detectAndParse(ttl.trim());
+        } catch (IllegalArgumentException e) {
+            throw new UrlValidationException(String.format("Invalid ttl=%s, expected e.g. 30m, 7d or PT30M", ttl));
+        }
+    }
+
+    private static void writeUrl(JsonGenerator generator, Url url) {
+        try {
+            generator.writeObject(url);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNewLine(JsonGenerator generator) {
+        try {
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
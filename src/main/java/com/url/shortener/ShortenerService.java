@@ -1,51 +1,268 @@
 package com.url.shortener;
 
+import com.url.shortener.infrastructure.ClickAnalytics;
 import com.url.shortener.infrastructure.DigestProperties;
+import com.url.shortener.infrastructure.IdGenerator;
+import com.url.shortener.infrastructure.InvalidationBus;
+import com.url.shortener.infrastructure.KeyspaceMonitor;
+import com.url.shortener.infrastructure.LookupFilter;
+import com.url.shortener.infrastructure.RedirectTable;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import com.url.shortener.infrastructure.SingleFlight;
+import com.url.shortener.infrastructure.SourceUrlValidator;
+import com.url.shortener.infrastructure.UrlArchiveReader;
+import com.url.shortener.infrastructure.UrlArchiveWriter;
+import com.url.shortener.infrastructure.UrlCache;
 import com.url.shortener.infrastructure.UrlConflictException;
+import com.url.shortener.infrastructure.UrlExpiredException;
+import com.url.shortener.infrastructure.UrlExpiryProperties;
+import com.url.shortener.infrastructure.UrlFingerprint;
+import com.url.shortener.infrastructure.UrlId;
+import com.url.shortener.infrastructure.UrlInvalidation;
 import com.url.shortener.infrastructure.UrlRepository;
 import com.url.shortener.infrastructure.UrlValidationException;
-import io.seruco.encoding.base62.Base62;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.rng.UniformRandomProvider;
-import org.apache.commons.rng.simple.RandomSource;
-import org.apache.commons.validator.routines.UrlValidator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ShortenerService {
 
     private UrlRepository repository;
     private DigestProperties digestProperties;
+    private UrlCache cache;
+    private RedirectTable redirectTable;
+    private LookupFilter lookupFilter;
+    private IdGenerator idGenerator;
+    private ShortenerMetrics metrics;
+    private KeyspaceMonitor keyspaceMonitor;
+    private InvalidationBus invalidationBus;
+    private SourceUrlValidator sourceUrlValidator;
+    private UrlExpiryProperties expiryProperties;
+    private ClickAnalytics clickAnalytics;
+
+    private final SingleFlight<String, Url> lookups = new SingleFlight<>();
+    private final SingleFlight<String, Url> randomShortens = new SingleFlight<>();
 
     @Autowired
-    public ShortenerService(UrlRepository repository, DigestProperties digestProperties) {
+    public ShortenerService(UrlRepository repository, DigestProperties digestProperties, UrlCache cache,
+                            RedirectTable redirectTable, LookupFilter lookupFilter, IdGenerator idGenerator,
+                            ShortenerMetrics metrics, KeyspaceMonitor keyspaceMonitor,
+                            InvalidationBus invalidationBus, SourceUrlValidator sourceUrlValidator,
+                            UrlExpiryProperties expiryProperties, ClickAnalytics clickAnalytics) {
         this.repository = repository;
         this.digestProperties = digestProperties;
+        this.cache = cache;
+        this.redirectTable = redirectTable;
+        this.lookupFilter = lookupFilter;
+        this.idGenerator = idGenerator;
+        this.metrics = metrics;
+        this.keyspaceMonitor = keyspaceMonitor;
+        this.invalidationBus = invalidationBus;
+        this.sourceUrlValidator = sourceUrlValidator;
+        this.expiryProperties = expiryProperties;
+        this.clickAnalytics = clickAnalytics;
     }
 
     Url shorten(String sourceUrl, String customHash) {
-        final UrlValidator validator = new UrlValidator();
+        return shorten(sourceUrl, customHash, null);
+    }
 
-        if (validator.isValid(sourceUrl)) {
-            return process(sourceUrl, customHash);
-        } else {
-            throw new UrlValidationException("Invalid source url is provided");
+    /**
+     * @param ttl time the url is served for, null for url-expiry.default-ttl
+     */
+    Url shorten(String sourceUrl, String customHash, Duration ttl) {
+        final long start = System.nanoTime();
+        final String normalized = sourceUrlValidator.normalize(sourceUrl);
+
+        try {
+            if (ttl != null && (ttl.isNegative() || ttl.isZero())) {
+                throw new UrlValidationException("Url ttl must be positive");
+            } else if (normalized != null) {
+                return process(normalized, customHash, expiresAt(ttl));
+            } else {
+                throw new UrlValidationException(ShortenBatch.INVALID_URL_MESSAGE);
+            }
+        } catch (UrlConflictException e) {
+            metrics.conflict();
+            throw e;
+        } finally {
+            metrics.shortened(start);
+        }
+    }
+
+    /**
+     * Shortens urls in bulk. Requests are deduplicated, already shortened urls are resolved with one query per hash
+     * kind and new urls are persisted with a single insert. Urls get url-expiry.default-ttl. The whole batch is
+     * timed as one shortening
+     *
+     * @param requests to be processed
+     * @return outcome of each request in the same order
+     */
+    List<ShortenResult> shortenAll(List<ShortenRequest> requests) {
+        final long start = System.nanoTime();
+        try {
+            return shortenBatch(requests);
+        } finally {
+            metrics.shortened(start);
         }
     }
 
-    List<Url> getUrls() {
-        final List<Url> urls = repository.findAll();
+    private List<ShortenResult> shortenBatch(List<ShortenRequest> requests) {
+        final ShortenBatch batch = new ShortenBatch(requests, sourceUrlValidator::normalize);
+        final Instant expiresAt = expiresAt(null);
+        final Instant now = Instant.now();
+
+        // expiring urls are never shared, so existing urls are only looked up for urls which don't expire
+        final Collection<String> sourceUrls = batch.getRandomSourceUrls();
+        final Collection<String> customHashes = batch.getCustomHashes();
+        batch.resolveExisting(
+                sourceUrls.isEmpty() || expiresAt != null ? Collections.emptyList() : repository.findByFingerprintIn(
+                        sourceUrls.stream().map(UrlFingerprint::of).collect(Collectors.toSet())).stream()
+                        .filter(url -> url.getExpiresAt() == null).collect(Collectors.toList()),
+                customHashes.isEmpty() ? Collections.emptyList() : repository.findByIdIn(customHashes).stream()
+                        .filter(url -> !url.isExpiredAt(now)).collect(Collectors.toList()));
+
+        final List<Url> urls = batch.createUrls(idGenerator.nextIds(batch.getRandomSourceUrls().size()));
+        urls.forEach(url -> url.setExpiresAt(expiresAt));
+        if (!urls.isEmpty()) {
+            try {
+                repository.insert(urls);
+                batch.inserted();
+            } catch (DataIntegrityViolationException e) {
+                // ids or urls have been taken concurrently, or custom hashes are held by expired urls, fall back to
+                // one by one processing of urls which the batch hasn't stored partially. Expiring urls aren't
+                // looked up by source url, they would be stored twice
+                batch.insertedPartially(repository.findByIdIn(urls.stream().map(Url::getId)
+                        .collect(Collectors.toList())));
+                batch.getRandomSourceUrls().forEach(sourceUrl ->
+                        batch.completeRandom(sourceUrl, generateWithRandomHash(sourceUrl, expiresAt)));
+                batch.getCustomHashes().forEach(customHash -> shortenInBatch(batch, customHash, expiresAt));
+            }
+        }
+
+        batch.getCompletedUrls().forEach(url -> {
+            created(url.getId());
+            remember(url);
+            enrichWithShortcut(url);
+        });
+
+        final List<ShortenResult> results = batch.getResults();
+        results.stream().filter(result -> result.getStatus() == HttpStatus.CONFLICT.value())
+                .forEach(result -> metrics.conflict());
+        return results;
+    }
+
+    /**
+     * Returns one page of urls ordered by id
+     *
+     * @param after id of the last url from the previous page, null for the first page
+     * @param limit maximum amount of urls to return
+     * @return urls with ids greater than after
+     */
+    List<Url> getUrls(String after, int limit) {
+        final List<Url> urls = repository.findByIdGreaterThanOrderByIdAsc(StringUtils.defaultString(after),
+                PageRequest.of(0, limit));
         urls.forEach(this::enrichWithShortcut);
         return urls;
     }
 
+    /**
+     * Passes all urls to consumer one by one as they are read from the storage cursor, so memory consumption doesn't
+     * depend on the amount of urls
+     *
+     * @param consumer of urls
+     */
+    void forEachUrl(Consumer<Url> consumer) {
+        try (Stream<Url> urls = repository.streamAllBy()) {
+            urls.map(this::enrichWithShortcut).forEach(consumer);
+        }
+    }
+
+    /**
+     * Writes all urls to the channel as an archive of {@link UrlArchiveWriter}, reading them from the storage cursor
+     *
+     * @return amount of written urls
+     */
+    long exportUrls(WritableByteChannel channel) throws IOException {
+        final UrlArchiveWriter writer = new UrlArchiveWriter(channel);
+        try (Stream<Url> urls = repository.streamAllBy()) {
+            final Iterator<Url> iterator = urls.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+        }
+
+        // not closed on failures, so an incomplete archive has no end marker
+        writer.close();
+        return writer.getWritten();
+    }
+
+    /**
+     * Stores urls of an archive written by {@link #exportUrls(WritableByteChannel)} with one insert per block. Source
+     * urls are validated and normalized as shortened ones, invalid urls are skipped. Imported urls are not cached
+     */
+    ImportResult importUrls(ReadableByteChannel channel) throws IOException {
+        final UrlArchiveReader reader = new UrlArchiveReader(channel);
+        long imported = 0;
+        long skipped = 0;
+
+        List<Url> block;
+        while ((block = reader.read()) != null) {
+            final Instant now = Instant.now();
+            final List<Url> urls = new ArrayList<>(block.size());
+            for (Url url : block) {
+                final String normalized = sourceUrlValidator.normalize(url.getSourceUrl());
+                if (normalized != null && !url.isExpiredAt(now)) {
+                    // fingerprints are computed anew, archives may come from other versions or be crafted
+                    urls.add(newUrl(url.getId(), normalized, url.getExpiresAt()));
+                }
+            }
+            final long inserted = importBlock(urls);
+            urls.forEach(url -> created(url.getId()));
+
+            imported += inserted;
+            skipped += block.size() - inserted;
+        }
+        return new ImportResult(imported, skipped);
+    }
+
+    /**
+     * @return url, null if it doesn't exist
+     * @throws UrlExpiredException if the url has expired, including urls still held by the cache
+     */
     Url getUrlByID(String id) {
-        final Optional<Url> url = repository.findById(id);
-        return enrichWithShortcut(url.orElse(null));
+        final long start = System.nanoTime();
+        final Url url = findUrl(id);
+        metrics.lookedUp(start);
+
+        if (url == null) {
+            metrics.notFound();
+        } else if (url.isExpiredAt(Instant.now())) {
+            metrics.expired();
+            throw new UrlExpiredException(String.format("Url id=%s has expired", id));
+        }
+        return enrichWithShortcut(url);
     }
 
     boolean deleteUrl(String id) {
@@ -53,47 +270,168 @@ public class ShortenerService {
             throw new UrlValidationException("Url id can't be null");
         }
 
+        final long start = System.nanoTime();
         repository.deleteById(id);
+        cache.invalidate(id);
+        redirectTable.remove(id);
+        invalidationBus.publish(UrlInvalidation.deleted(id));
+        clickAnalytics.delete(Collections.singletonList(id));
+        metrics.deleted(start);
         return true;
     }
 
-    private Url process(String sourceUrl, String customHash) {
+    /**
+     * @return amount of inserted urls, urls with ids already taken are skipped
+     */
+    private long importBlock(List<Url> urls) {
+        if (urls.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            repository.insert(urls);
+            return urls.size();
+        } catch (DataIntegrityViolationException e) {
+            // e.g. a repeated import, the batch may have been stored partially
+            final Set<String> taken = repository.findIdsByIdIn(urls.stream().map(Url::getId)
+                    .collect(Collectors.toList())).stream().map(UrlId::getId).collect(Collectors.toSet());
+            long inserted = 0;
+            for (Url url : urls) {
+                if (!taken.contains(url.getId())) {
+                    try {
+                        repository.insert(url);
+                        inserted++;
+                    } catch (DuplicateKeyException duplicate) {
+                        // stored concurrently
+                    }
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private Url findUrl(String id) {
+        if (id == null || !lookupFilter.mightContain(id)) {
+            return null;
+        }
+
+        Url url = redirectTable.get(id);
+        if (url == null) {
+            url = cache.getIfPresent(id);
+        }
+
+        // loaded outside of the cache: loading inside Caffeine runs under a map bin lock, which would pin the
+        // carrier of a virtual thread for the whole storage round trip. Concurrent misses of one id share the load
+        if (url == null) {
+            url = lookups.execute(id, () -> load(id));
+        }
+
+        return url;
+    }
+
+    private Url load(String id) {
+        final long generation = cache.generation(id);
+        final Url url = repository.findById(id).orElse(null);
+        if (url != null) {
+            remember(url);
+            forgetIfInvalidated(url, generation);
+        }
+        return url;
+    }
+
+    /**
+     * Drops the url read before a concurrent delete or invalidation, which may have run before it has been
+     * remembered. An invalidation after this check removes the url itself
+     */
+    private void forgetIfInvalidated(Url url, long generation) {
+        if (cache.generation(url.getId()) != generation) {
+            cache.invalidate(url.getId());
+            redirectTable.remove(url.getId());
+        }
+    }
+
+    /**
+     * Adds the id to the lookup filter right away and announces it, so other instances don't reject the url until
+     * their next rebuild
+     */
+    private void created(String id) {
+        lookupFilter.put(id);
+        invalidationBus.publish(UrlInvalidation.created(id));
+    }
+
+    /**
+     * Urls held by the redirect table are not cached twice
+     */
+    private void remember(Url url) {
+        if (!redirectTable.put(url)) {
+            cache.put(url);
+        }
+    }
+
+    private Url process(String sourceUrl, String customHash, Instant expiresAt) {
         Url result;
 
         if (StringUtils.isBlank(customHash)) {
-            result = generateWithRandomHash(sourceUrl);
+            result = generateWithRandomHash(sourceUrl, expiresAt);
         } else {
-            result = generateUsingProvidedHash(sourceUrl, customHash);
+            result = generateUsingProvidedHash(sourceUrl, customHash, expiresAt);
         }
 
+        created(result.getId());
+        remember(result);
         return enrichWithShortcut(result);
     }
 
     /**
-     * Attempts to find already generated shortcut first to preserve storage
+     * Attempts to find already generated shortcut first to preserve storage. Concurrent calls for one source url on
+     * this instance share the outcome, so they don't create a shortcut each. Expiring urls always get a new shortcut
      *
      * @param sourceUrl to be shortened
+     * @param expiresAt expiry of the shortcut, null if it doesn't expire
      * @return shortcut for sourceUrl
      */
-    private Url generateWithRandomHash(String sourceUrl) {
-        final Url persistent = repository.findBySourceUrl(sourceUrl);
-        if (persistent != null) {
-            return persistent;
-        } else {
-            final Url url = generateShortcut(sourceUrl);
-            return repository.save(url);
+    private Url generateWithRandomHash(String sourceUrl, Instant expiresAt) {
+        if (expiresAt != null) {
+            return insertWithGeneratedId(sourceUrl, expiresAt);
         }
+
+        return randomShortens.execute(sourceUrl, () -> {
+            final Url persistent = findBySourceUrl(sourceUrl);
+            if (persistent != null) {
+                return persistent;
+            } else {
+                return insertWithGeneratedId(sourceUrl, null);
+            }
+        });
+    }
+
+    private void shortenInBatch(ShortenBatch batch, String customHash, Instant expiresAt) {
+        final String sourceUrl = batch.getCustomSourceUrl(customHash);
+        try {
+            batch.completeCustom(customHash, generateUsingProvidedHash(sourceUrl, customHash, expiresAt));
+        } catch (UrlConflictException e) {
+            batch.failCustom(customHash, HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    private Url findBySourceUrl(String sourceUrl) {
+        return repository.findByFingerprint(UrlFingerprint.of(sourceUrl)).stream()
+                .filter(url -> url.getExpiresAt() == null && StringUtils.equals(url.getSourceUrl(), sourceUrl))
+                .findFirst().orElse(null);
     }
 
     /**
-     * Attempts to generate shortened url using client-provided hash.
+     * Attempts to generate shortened url using client-provided hash. Hash of an expired url is free to be taken, an
+     * existing url for the same source url is returned with its own expiry
      *
      * @param sourceUrl  to be shortened
      * @param customHash provided by client
+     * @param expiresAt  expiry of a new shortcut, null if it doesn't expire
      * @return shortcut for sourceUrl
      */
-    private Url generateUsingProvidedHash(String sourceUrl, String customHash) {
-        final Optional<Url> persistent = repository.findById(customHash);
+    private Url generateUsingProvidedHash(String sourceUrl, String customHash, Instant expiresAt) {
+        final Optional<Url> persistent = repository.findById(customHash)
+                .filter(url -> !url.isExpiredAt(Instant.now()));
 
         if (persistent.isPresent()) {
             final Url url = persistent.get();
@@ -101,51 +439,63 @@ public class ShortenerService {
             if (StringUtils.equals(url.getSourceUrl(), sourceUrl)) {
                 return persistent.get();
             } else {
-                throw new UrlConflictException(String.format("There already exists another url with provided short " +
-                                "code=[%s]. Existing url won't be exposed with this response to avoid possible " +
-                                "security breaches when attacker can get access to other urls brut-forcing hashes",
-                        customHash));
+                throw new UrlConflictException(conflictMessage(customHash));
             }
         } else {
-            return repository.save(new Url(customHash, sourceUrl));
+            return repository.save(newUrl(customHash, sourceUrl, expiresAt));
         }
     }
 
-    private Url generateShortcut(String sourceUrl) {
-        final UniformRandomProvider rnd = RandomSource.create(RandomSource.MT);
-        final Base62 base62 = Base62.createInstance();
-
-
-        int maxAttempts = digestProperties.getRandomMaxAttempts();
-        int iteration = 0; // fail fast is better
-        String digest;
-
-        do {
-            digest = generateRandomHash(rnd, base62);
-            ++iteration;
-        }
-        while (repository.existsById(digest) && iteration < maxAttempts);
+    /**
+     * Persists url under generated id. Generated ids are only expected to be free, so generation is retried when
+     * another url has taken the id concurrently
+     */
+    private Url insertWithGeneratedId(String sourceUrl, Instant expiresAt) {
+        final int maxAttempts = digestProperties.getRandomMaxAttempts();
 
-        if (iteration == maxAttempts) {
-            throw new UnsupportedOperationException(String.format("Can't generate random hash using reasonable " +
-                    "amount of time. Attempted %s times", iteration));
+        for (int attempt = 1; ; attempt++) {
+            final String id = idGenerator.nextId();
+            try {
+                return repository.insert(newUrl(id, sourceUrl, expiresAt));
+            } catch (DuplicateKeyException e) {
+                // checked ids collide on insert only when taken concurrently, so this doesn't measure the keyspace
+                metrics.collisions(1);
+                if (attempt >= maxAttempts) {
+                    keyspaceMonitor.exhausted(id.length());
+                    throw new UnsupportedOperationException(String.format("Can't persist generated hash. Attempted " +
+                            "%s times", attempt), e);
+                }
+            }
         }
-
-        return new Url(digest, sourceUrl);
     }
 
-    private String generateRandomHash(UniformRandomProvider rnd, Base62 base62) {
+    static Url newUrl(String id, String sourceUrl) {
+        return newUrl(id, sourceUrl, null);
+    }
 
-        final byte[] randomBytes = new byte[digestProperties.getRandomSize()];
-        rnd.nextBytes(randomBytes);
+    static Url newUrl(String id, String sourceUrl, Instant expiresAt) {
+        final Url url = new Url(id, sourceUrl);
+        url.setFingerprint(UrlFingerprint.of(sourceUrl));
+        url.setExpiresAt(expiresAt);
+        return url;
+    }
 
-        final byte[] encodedBytes = base62.encode(randomBytes);
+    /**
+     * @param ttl of the url, null for url-expiry.default-ttl
+     * @return expiry of a url created now, null if it doesn't expire
+     */
+    private Instant expiresAt(Duration ttl) {
+        final Duration effective = ttl != null ? ttl : expiryProperties.getDefaultTtl();
+        return effective == null ? null : Instant.now().plus(effective);
+    }
 
-        final String longHash = new String(encodedBytes);
-        return StringUtils.substring(longHash, 0, digestProperties.getRandomLength());
+    static String conflictMessage(String customHash) {
+        return String.format("There already exists another url with provided short code=[%s]. Existing url won't " +
+                "be exposed with this response to avoid possible security breaches when attacker can get access to " +
+                "other urls brut-forcing hashes", customHash);
     }
 
-    private Url enrichWithShortcut(Url source) {
+    Url enrichWithShortcut(Url source) {
         if (source == null) {
             return null;
         }
@@ -1,9 +1,13 @@
 package com.url.shortener;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
 
+import java.time.Instant;
+
 public class Url {
 
     @Id
@@ -11,6 +15,19 @@ public class Url {
 
     private String sourceUrl;
 
+    /**
+     * Indexed fingerprint of sourceUrl used to find already shortened urls, see
+     * {@link com.url.shortener.infrastructure.UrlFingerprint}
+     */
+    @JsonIgnore
+    private Long fingerprint;
+
+    /**
+     * Time since which the url isn't served, null if it never expires
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant expiresAt;
+
     @Transient
     private String shortcut;
 
@@ -35,6 +52,26 @@ public class Url {
         this.sourceUrl = sourceUrl;
     }
 
+    public Long getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(Long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isExpiredAt(Instant time) {
+        return expiresAt != null && !time.isBefore(expiresAt);
+    }
+
     public String getShortcut() {
         return shortcut;
     }
@@ -0,0 +1,75 @@
+package com.url.shortener.infrastructure;
+
+import java.util.Arrays;
+
+/**
+ * Fixed width Base62 encoding of numbers using the same alphabet as io.seruco Base62 (digits, upper and lower case
+ * letters)
+ */
+public final class Base62Encoder {
+
+    static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    static final int BASE = ALPHABET.length;
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int digit = 0; digit < BASE; digit++) {
+            DIGITS[ALPHABET[digit]] = (byte) digit;
+        }
+    }
+
+    private Base62Encoder() {
+    }
+
+    /**
+     * @param value  non-negative number less than {@link #capacity(int)}
+     * @param length of the result, value is left-padded with zeros
+     * @return Base62 representation of value
+     */
+    public static String encode(long value, int length) {
+        final char[] chars = new char[length];
+
+        long remainder = value;
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (remainder % BASE)];
+            remainder /= BASE;
+        }
+
+        if (remainder != 0) {
+            throw new IllegalArgumentException(String.format("Value %s doesn't fit into %s Base62 chars", value,
+                    length));
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * @param value Base62 chars, at most 10 so the result fits into long
+     * @return decoded number, -1 if value contains chars outside of the alphabet
+     */
+    public static long decode(CharSequence value) {
+        long decoded = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            final int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            decoded = decoded * BASE + digit;
+        }
+        return decoded;
+    }
+
+    /**
+     * @param length of encoded value
+     * @return amount of distinct values which can be encoded using given amount of chars
+     */
+    public static long capacity(int length) {
+        long capacity = 1;
+        for (int i = 0; i < length; i++) {
+            capacity = Math.multiplyExact(capacity, BASE);
+        }
+        return capacity;
+    }
+}
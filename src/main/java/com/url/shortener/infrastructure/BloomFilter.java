@@ -0,0 +1,113 @@
+package com.url.shortener.infrastructure;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of strings. Size of the bit set and the number of hash functions are derived from expected
+ * amount of insertions and desired false positive probability. Bits are set with CAS so concurrent inserts never
+ * block readers.
+ */
+public class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashFunctions;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1)");
+        }
+
+        final long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (LN2 * LN2));
+        final long wordCount = (bits + Long.SIZE - 1) / Long.SIZE;
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter is too large, decrease expected insertions");
+        }
+
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bitSize = wordCount * Long.SIZE;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * LN2));
+    }
+
+    public void put(String value) {
+        final long hash1 = hash(value);
+        final long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+
+        long combined = hash1;
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit((combined & Long.MAX_VALUE) % bitSize);
+            combined += hash2;
+        }
+    }
+
+    /**
+     * @param value to check
+     * @return false if value has definitely never been put, true if it might have been put
+     */
+    public boolean mightContain(String value) {
+        final long hash1 = hash(value);
+        final long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+
+        long combined = hash1;
+        for (int i = 0; i < hashFunctions; i++) {
+            if (!getBit((combined & Long.MAX_VALUE) % bitSize)) {
+                return false;
+            }
+            combined += hash2;
+        }
+
+        return true;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    private void setBit(long index) {
+        final int word = (int) (index >>> 6);
+        final long mask = 1L << index;
+
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        }
+        while (!words.compareAndSet(word, current, current | mask));
+    }
+
+    private boolean getBit(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    /**
+     * FNV-1a over chars followed by murmur3 finalizer to spread the bits
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
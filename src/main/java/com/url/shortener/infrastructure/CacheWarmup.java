@@ -0,0 +1,160 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preloads {@link UrlCache} with urls which were hot before the restart, so the first minutes after a deploy don't
+ * send every redirect to the storage. Ids of the most frequently used cached urls are written one per line to
+ * cache-warmup.file every cache-warmup.snapshot-interval and on shutdown. On startup up to cache-warmup.max-entries
+ * of them are loaded in batches until cache-warmup.max-time runs out.
+ * <p>
+ * Warm-up runs as an application runner, so readiness is only reported once it's done, and "cacheWarmup" health
+ * component is OUT_OF_SERVICE meanwhile. Warm-up is best effort: a missing snapshot or a failed load only leaves the
+ * cache cold
+ */
+@Component
+public class CacheWarmup implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheWarmup.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final UrlRepository repository;
+    private final UrlCache cache;
+    private final CacheWarmupProperties properties;
+    private final Path file;
+
+    private volatile boolean warming;
+    private volatile long loaded;
+    private volatile long elapsedMillis;
+
+    @Autowired
+    public CacheWarmup(UrlRepository repository, UrlCache cache, CacheWarmupProperties properties) {
+        this.repository = repository;
+        this.cache = cache;
+        this.properties = properties;
+        this.file = Paths.get(properties.getFile());
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (properties.isEnabled()) {
+            warmUp();
+        }
+    }
+
+    /**
+     * @return amount of urls put into the cache
+     */
+    long warmUp() {
+        warming = true;
+        final long start = System.nanoTime();
+        final long deadline = start + properties.getMaxTime().toNanos();
+
+        try {
+            final List<String> ids = readSnapshot();
+            final Instant now = Instant.now();
+            for (int from = 0; from < ids.size() && System.nanoTime() < deadline; from += BATCH_SIZE) {
+                for (Url url : repository.findByIdIn(ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())))) {
+                    if (!url.isExpiredAt(now)) {
+                        cache.put(url);
+                        loaded++;
+                    }
+                }
+            }
+
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LOGGER.info("Url cache warmed up with {} of {} snapshot urls in {} ms", loaded, ids.size(), elapsedMillis);
+        } catch (IOException | DataAccessException e) {
+            LOGGER.warn("Url cache warm-up failed, starting with {} urls", loaded, e);
+        } finally {
+            warming = false;
+        }
+        return loaded;
+    }
+
+    @Scheduled(fixedDelayString = "${cache-warmup.snapshot-interval}",
+            initialDelayString = "${cache-warmup.snapshot-interval}")
+    @PreDestroy
+    public void snapshot() {
+        if (!properties.isEnabled() || warming) {
+            return;
+        }
+
+        final List<String> ids = cache.hottestIds(properties.getMaxEntries());
+        if (ids.isEmpty()) {
+            // an idle instance keeps the previous snapshot
+            return;
+        }
+
+        final Path written = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(written, StandardCharsets.UTF_8)) {
+                for (String id : ids) {
+                    writer.write(id);
+                    writer.newLine();
+                }
+            }
+            Files.move(written, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Hot url snapshot can't be written to {}", file, e);
+        }
+    }
+
+    public boolean isWarming() {
+        return warming;
+    }
+
+    public long getLoaded() {
+        return loaded;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return up to cache-warmup.max-entries ids, hottest first, empty if there is no snapshot
+     */
+    private List<String> readSnapshot() throws IOException {
+        final List<String> ids = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return ids;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String id;
+            while (ids.size() < properties.getMaxEntries() && (id = reader.readLine()) != null) {
+                if (!id.isEmpty()) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+}
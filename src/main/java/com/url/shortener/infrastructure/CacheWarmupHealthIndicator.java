@@ -0,0 +1,28 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports progress of {@link CacheWarmup} as "cacheWarmup" health component, OUT_OF_SERVICE until the cache is
+ * warmed up
+ */
+@Component
+public class CacheWarmupHealthIndicator extends AbstractHealthIndicator {
+
+    private final CacheWarmup warmup;
+
+    @Autowired
+    public CacheWarmupHealthIndicator(CacheWarmup warmup) {
+        this.warmup = warmup;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        (warmup.isWarming() ? builder.outOfService() : builder.up())
+                .withDetail("loaded", warmup.getLoaded())
+                .withDetail("elapsedMillis", warmup.getElapsedMillis());
+    }
+}
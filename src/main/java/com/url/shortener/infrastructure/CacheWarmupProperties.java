@@ -0,0 +1,47 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties("cache-warmup")
+public class CacheWarmupProperties {
+    private boolean enabled;
+    private String file;
+    private int maxEntries;
+    private Duration maxTime;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(Duration maxTime) {
+        this.maxTime = maxTime;
+    }
+}
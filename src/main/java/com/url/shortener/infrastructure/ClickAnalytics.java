@@ -0,0 +1,222 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.ClickStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Counts clicks of shortened urls without a database write per redirect. Request threads publish clicks to a
+ * {@link MpscRingBuffer} and return immediately; a single background consumer aggregates them per url in memory and
+ * flushes the aggregates to {@link ClickStore} every click-analytics.flush-interval or as soon as
+ * click-analytics.flush-threshold urls have pending clicks.
+ * <p>
+ * When the buffer is full clicks are handled according to click-analytics.overflow-policy. Failed flushes keep their
+ * aggregates for the next attempt, so stored totals lag behind while the storage is unavailable. Dropped clicks and
+ * buffer occupancy are exported as "clicks.dropped" and "clicks.buffered" metrics
+ */
+@Component
+public class ClickAnalytics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClickAnalytics.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ClickStore store;
+    private final ClickAnalyticsProperties properties;
+    private final MpscRingBuffer<ClickEvent> buffer;
+    private final Map<String, Long> overflow = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Accessed by the consumer thread only
+     */
+    private final Map<String, ClickCounts> pending = new HashMap<>();
+
+    private volatile boolean running;
+    private Thread consumer;
+
+    @Autowired
+    public ClickAnalytics(ClickStore store, ClickAnalyticsProperties properties, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.properties = properties;
+        this.buffer = properties.isEnabled() ? new MpscRingBuffer<>(properties.getBufferSize()) : null;
+
+        if (buffer != null) {
+            FunctionCounter.builder("clicks.dropped", dropped, AtomicLong::get).register(meterRegistry);
+            Gauge.builder("clicks.buffered", buffer, MpscRingBuffer::size).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Publishes click of the url, never blocks
+     *
+     * @param id       of the url
+     * @param referrer value of Referer header, may be null
+     */
+    public void record(String id, String referrer) {
+        if (buffer == null || buffer.offer(new ClickEvent(id, referrer, System.currentTimeMillis()))) {
+            return;
+        }
+
+        if (properties.getOverflowPolicy() == ClickOverflowPolicy.COUNT_ONLY) {
+            overflow.merge(id, 1L, Long::sum);
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return stored totals of the url, clicks of the last flush interval may not be included yet
+     */
+    public ClickStats getStats(String id) {
+        final ClickStats stats = store.find(id);
+        return stats != null ? stats : new ClickStats(id, 0, null, Collections.emptyMap());
+    }
+
+    /**
+     * Removes stored totals of deleted urls. Clicks buffered before the deletion may still be flushed afterwards, a
+     * failed removal is only logged, so it doesn't fail the deletion of the urls
+     */
+    public void delete(Collection<String> ids) {
+        try {
+            store.delete(ids);
+        } catch (DataAccessException e) {
+            LOGGER.warn("Deletion of click totals for {} urls failed", ids.size(), e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (buffer == null || running) {
+            return;
+        }
+
+        running = true;
+        consumer = new Thread(this::consume, "click-analytics");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void consume() {
+        final long interval = properties.getFlushInterval().toNanos();
+        long nextFlush = System.nanoTime() + interval;
+        boolean failing = false;
+
+        while (running) {
+            final int drained = drain();
+
+            // while the storage fails, retries wait for the interval instead of spinning on the threshold
+            if (System.nanoTime() - nextFlush >= 0 || (!failing && pending.size() >= properties.getFlushThreshold())) {
+                failing = !flush();
+                nextFlush = System.nanoTime() + interval;
+            } else if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        drain();
+        flush();
+    }
+
+    /**
+     * Aggregates published clicks into pending counts, must be called from one thread at a time
+     *
+     * @return amount of clicks taken from the buffer
+     */
+    int drain() {
+        return buffer.drain(this::aggregate, buffer.capacity());
+    }
+
+    /**
+     * Writes pending counts to the store, must be called from the thread which drains
+     *
+     * @return false if the store has failed, pending counts are kept then
+     */
+    boolean flush() {
+        overflow.keySet().forEach(id -> {
+            final Long count = overflow.remove(id);
+            if (count != null) {
+                pending.computeIfAbsent(id, this::counts).add(count);
+            }
+        });
+
+        if (pending.isEmpty()) {
+            return true;
+        }
+
+        try {
+            store.increment(pending.values());
+            pending.clear();
+            return true;
+        } catch (ClickIncrementException e) {
+            // counts which have been added are not retried, they would be counted twice
+            final Set<String> failed = e.getFailed().stream().map(ClickCounts::getId).collect(Collectors.toSet());
+            pending.keySet().retainAll(failed);
+            LOGGER.warn("Flush of clicks for {} urls failed, will be retried", pending.size(), e);
+            return false;
+        } catch (DataAccessException e) {
+            LOGGER.warn("Flush of clicks for {} urls failed, will be retried", pending.size(), e);
+            return false;
+        }
+    }
+
+    private ClickCounts counts(String id) {
+        return new ClickCounts(id, properties.getMaxReferrers());
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    private void aggregate(ClickEvent event) {
+        pending.computeIfAbsent(event.id, this::counts).add(referrerHost(event.referrer), event.timestamp);
+    }
+
+    /**
+     * Parsed by the consumer, so request threads don't pay for it
+     */
+    static String referrerHost(String referrer) {
+        if (referrer == null || referrer.isEmpty()) {
+            return null;
+        }
+
+        try {
+            final String host = URI.create(referrer).getHost();
+            return host == null ? null : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
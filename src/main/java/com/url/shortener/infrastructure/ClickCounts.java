@@ -0,0 +1,59 @@
+package com.url.shortener.infrastructure;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Clicks of one url accumulated since the last flush. Referrer hosts beyond click-analytics.max-referrers are counted
+ * as {@link #OTHER_REFERRERS}, so random Referer headers can't grow the counts without a bound
+ */
+public class ClickCounts {
+
+    public static final String OTHER_REFERRERS = "other";
+
+    private final String id;
+    private final int maxReferrers;
+    private long clicks;
+    private long lastClickAt;
+    private final Map<String, Long> referrers = new HashMap<>();
+
+    public ClickCounts(String id, int maxReferrers) {
+        this.id = id;
+        this.maxReferrers = maxReferrers;
+    }
+
+    void add(String referrer, long timestamp) {
+        clicks++;
+        lastClickAt = Math.max(lastClickAt, timestamp);
+        if (referrer != null) {
+            referrers.merge(referrers.size() < maxReferrers || referrers.containsKey(referrer) ? referrer :
+                    OTHER_REFERRERS, 1L, Long::sum);
+        }
+    }
+
+    void add(long count) {
+        clicks += count;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getClicks() {
+        return clicks;
+    }
+
+    /**
+     * @return epoch millis of the latest click, 0 if only counts without time have been added
+     */
+    public long getLastClickAt() {
+        return lastClickAt;
+    }
+
+    /**
+     * @return clicks by referrer host, at most click-analytics.max-referrers hosts and {@link #OTHER_REFERRERS}
+     */
+    public Map<String, Long> getReferrers() {
+        return referrers;
+    }
+}
@@ -0,0 +1,17 @@
+package com.url.shortener.infrastructure;
+
+/**
+ * Single redirect as published by request threads
+ */
+final class ClickEvent {
+
+    final String id;
+    final String referrer;
+    final long timestamp;
+
+    ClickEvent(String id, String referrer, long timestamp) {
+        this.id = id;
+        this.referrer = referrer;
+        this.timestamp = timestamp;
+    }
+}
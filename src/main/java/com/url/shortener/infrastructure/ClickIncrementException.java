@@ -0,0 +1,25 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.dao.DataAccessException;
+
+import java.util.Collection;
+
+/**
+ * Thrown by {@link ClickStore} when only some of the counts have been added, the rest must not be added again
+ */
+public class ClickIncrementException extends DataAccessException {
+
+    private final transient Collection<ClickCounts> failed;
+
+    public ClickIncrementException(String message, Collection<ClickCounts> failed, Throwable cause) {
+        super(message, cause);
+        this.failed = failed;
+    }
+
+    /**
+     * @return counts which have not been added
+     */
+    public Collection<ClickCounts> getFailed() {
+        return failed;
+    }
+}
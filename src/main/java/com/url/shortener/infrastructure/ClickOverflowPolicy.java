@@ -0,0 +1,16 @@
+package com.url.shortener.infrastructure;
+
+/**
+ * What happens to a click when the event buffer is full
+ */
+public enum ClickOverflowPolicy {
+    /**
+     * Click is dropped and counted in clicks.dropped metric only
+     */
+    DROP,
+    /**
+     * Click is added to a per url counter which is flushed with the next batch. Click count stays exact, referrer
+     * and time of such clicks are lost
+     */
+    COUNT_ONLY
+}
@@ -0,0 +1,29 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.ClickStats;
+
+import java.util.Collection;
+
+/**
+ * Persistent click totals of urls
+ */
+public interface ClickStore {
+
+    /**
+     * Adds counts to the stored totals, creating totals of urls which have no clicks yet. Referrer hosts beyond
+     * click-analytics.max-referrers stored for a url are added to {@link ClickCounts#OTHER_REFERRERS}
+     *
+     * @throws ClickIncrementException if only some of the counts have been added
+     */
+    void increment(Collection<ClickCounts> counts);
+
+    /**
+     * @return stored totals, null if url has no clicks
+     */
+    ClickStats find(String id);
+
+    /**
+     * Removes stored totals of the urls, so ids generated again start without clicks
+     */
+    void delete(Collection<String> ids);
+}
@@ -7,9 +7,10 @@ import org.springframework.context.annotation.Configuration;
 @ConfigurationProperties("digest")
 public class DigestProperties {
     private int randomMaxAttempts;
-    private int randomSize;
     private int randomLength;
     private String prefix;
+    private String strategy;
+    private int segmentSize;
 
     public int getRandomMaxAttempts() {
         return randomMaxAttempts;
@@ -19,14 +20,6 @@ public class DigestProperties {
         this.randomMaxAttempts = randomMaxAttempts;
     }
 
-    public int getRandomSize() {
-        return randomSize;
-    }
-
-    public void setRandomSize(int randomSize) {
-        this.randomSize = randomSize;
-    }
-
     public int getRandomLength() {
         return randomLength;
     }
@@ -42,4 +35,20 @@ public class DigestProperties {
     public void setPrefix(String prefix) {
         this.prefix = prefix;
     }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
 }
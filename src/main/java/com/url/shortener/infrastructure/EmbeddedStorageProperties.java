@@ -0,0 +1,55 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+@ConfigurationProperties("embedded-storage")
+public class EmbeddedStorageProperties {
+    private String directory;
+    private DataSize segmentSize;
+    private boolean forceWrites;
+    private int expectedUrls;
+    private double compactionDeadRatio;
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public DataSize getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public boolean isForceWrites() {
+        return forceWrites;
+    }
+
+    public void setForceWrites(boolean forceWrites) {
+        this.forceWrites = forceWrites;
+    }
+
+    public int getExpectedUrls() {
+        return expectedUrls;
+    }
+
+    public void setExpectedUrls(int expectedUrls) {
+        this.expectedUrls = expectedUrls;
+    }
+
+    public double getCompactionDeadRatio() {
+        return compactionDeadRatio;
+    }
+
+    public void setCompactionDeadRatio(double compactionDeadRatio) {
+        this.compactionDeadRatio = compactionDeadRatio;
+    }
+}
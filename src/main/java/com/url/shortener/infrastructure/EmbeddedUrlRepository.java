@@ -0,0 +1,572 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link UrlRepository} which keeps urls in local files instead of MongoDB, enabled by "embedded" profile. Urls are
+ * appended to memory-mapped {@link UrlLogSegment}s of embedded-storage.segment-size, saves and deletes add records
+ * and never modify existing ones. Two {@link OffHeapHashIndex}es point into the segments: hash of id to the latest
+ * record of the url, and fingerprint to records of urls with that fingerprint. Lookups read the index and the
+ * mapped record without locks or syscalls; writes are serialized.
+ * <p>
+ * On startup segments are replayed to rebuild indexes. Replay of a segment stops at the first record which is
+ * incomplete or fails its checksum, which is where a crash has interrupted writing. Records are only flushed to disk
+ * by the OS unless embedded-storage.force-writes is set, so a power loss may lose the latest writes; a killed
+ * process loses nothing.
+ * <p>
+ * Replaced and deleted urls leave dead records behind. Once they take embedded-storage.compaction-dead-ratio of all
+ * records, live records are copied into segments of a new generation, which becomes current by atomic replacement
+ * of MANIFEST file. Files of other generations are leftovers of a compaction and are deleted
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedUrlRepository implements UrlRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedUrlRepository.class);
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("urls-(\\d+)-(\\d+)\\.log");
+
+    private final EmbeddedStorageProperties properties;
+    private final Path directory;
+    private final int segmentSize;
+    /**
+     * Not synchronized, which would pin virtual threads waiting for forced writes
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile Generation generation;
+
+    @Autowired
+    public EmbeddedUrlRepository(EmbeddedStorageProperties properties) {
+        this.properties = properties;
+        this.directory = Paths.get(properties.getDirectory());
+        this.segmentSize = Math.toIntExact(properties.getSegmentSize().toBytes());
+        this.generation = open();
+    }
+
+    @Override
+    public Optional<Url> findById(String id) {
+        final Generation current = generation;
+        final long location = locate(current, bytes(id));
+        return location < 0 ? Optional.empty() : Optional.of(current.url(location));
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return locate(generation, bytes(id)) >= 0;
+    }
+
+    @Override
+    public List<Url> findByFingerprint(Long fingerprint) {
+        final Generation current = generation;
+        return Arrays.stream(current.fingerprints.get(fingerprint)).mapToObj(current::url)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Url> findByFingerprintIn(Collection<Long> fingerprints) {
+        return fingerprints.stream().flatMap(fingerprint -> findByFingerprint(fingerprint).stream())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Url> findByIdIn(Collection<String> ids) {
+        return ids.stream().map(this::findById).filter(Optional::isPresent).map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UrlId> findIdsByIdIn(Collection<String> ids) {
+        return ids.stream().filter(this::existsById).map(id -> (UrlId) () -> id).collect(Collectors.toList());
+    }
+
+    /**
+     * Scans records until the page is filled
+     */
+    @Override
+    public List<UrlId> findIdsByExpiresAtBefore(Instant time, Pageable pageable) {
+        final Generation current = generation;
+        final long millis = time.toEpochMilli();
+        return liveLocations(current).filter(location -> {
+            final Long expiresAt = current.expiresAt(location);
+            return expiresAt != null && expiresAt < millis;
+        }).limit(pageable.getPageSize()).mapToObj(location -> {
+            final String id = current.id(location);
+            return (UrlId) () -> id;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Scans all records keeping the smallest ids in a bounded heap, so pages cost a full scan each
+     */
+    @Override
+    public List<Url> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable) {
+        final Generation current = generation;
+        final int size = pageable.getPageSize();
+        final PriorityQueue<String> largestFirst = new PriorityQueue<>(size + 1, Comparator.reverseOrder());
+        final TreeMap<String, Long> page = new TreeMap<>();
+
+        liveLocations(current).forEach(location -> {
+            final String candidate = current.id(location);
+            if (candidate.compareTo(id) > 0 && (largestFirst.size() < size ||
+                    candidate.compareTo(largestFirst.peek()) < 0)) {
+                largestFirst.add(candidate);
+                page.put(candidate, location);
+                if (largestFirst.size() > size) {
+                    page.remove(largestFirst.poll());
+                }
+            }
+        });
+
+        return page.values().stream().map(current::url).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<Url> streamAllBy() {
+        final Generation current = generation;
+        return liveLocations(current).mapToObj(current::url);
+    }
+
+    @Override
+    public Stream<UrlId> findIdsBy() {
+        final Generation current = generation;
+        return liveLocations(current).mapToObj(location -> {
+            final String id = current.id(location);
+            return () -> id;
+        });
+    }
+
+    @Override
+    public <S extends Url> S save(S url) {
+        writeLock.lock();
+        try {
+            put(generation, url);
+            return url;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public <S extends Url> S insert(S url) {
+        writeLock.lock();
+        try {
+            if (locate(generation, bytes(url.getId())) >= 0) {
+                throw duplicate(url.getId());
+            }
+
+            put(generation, url);
+            return url;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Inserts nothing if some of urls already exist
+     */
+    @Override
+    public <S extends Url> List<S> insert(Iterable<S> urls) {
+        final List<S> inserted = new ArrayList<>();
+        urls.forEach(inserted::add);
+
+        writeLock.lock();
+        try {
+            final Set<String> ids = new HashSet<>();
+            for (S url : inserted) {
+                if (!ids.add(url.getId()) || locate(generation, bytes(url.getId())) >= 0) {
+                    throw duplicate(url.getId());
+                }
+            }
+
+            inserted.forEach(url -> put(generation, url));
+            return inserted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        writeLock.lock();
+        try {
+            final Generation current = generation;
+            final byte[] idBytes = bytes(id);
+            if (locate(current, idBytes) >= 0) {
+                unindex(current, idBytes, append(current, UrlLogSegment.delete(id)));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long deleteByIdInAndExpiresAtBefore(Collection<String> ids, Instant time) {
+        writeLock.lock();
+        try {
+            final Generation current = generation;
+            long deleted = 0;
+            for (String id : ids) {
+                final byte[] idBytes = bytes(id);
+                final long location = locate(current, idBytes);
+                final Long expiresAt = location < 0 ? null : current.expiresAt(location);
+                if (expiresAt != null && expiresAt < time.toEpochMilli()) {
+                    unindex(current, idBytes, append(current, UrlLogSegment.delete(id)));
+                    deleted++;
+                }
+            }
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long estimatedCount() {
+        return generation.ids.size();
+    }
+
+    @Scheduled(fixedDelayString = "${embedded-storage.compaction-interval}")
+    public void compactIfNeeded() {
+        writeLock.lock();
+        try {
+            if (generation.deadBytes > 0 && getDeadRatio() >= properties.getCompactionDeadRatio()) {
+                compact();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Copies live records into a new generation and deletes files of the current one. Writes wait for it, reads
+     * continue from the current generation, whose mappings stay valid after its files are deleted
+     */
+    public void compact() {
+        writeLock.lock();
+        try {
+            final Generation current = generation;
+            final Generation next = new Generation(current.number + 1,
+                    Math.max(properties.getExpectedUrls(), current.ids.size()));
+            next.segments = new UrlLogSegment[]{segment(next.number, 0, segmentSize)};
+
+            try {
+                liveLocations(current).forEach(location ->
+                        index(next, bytes(current.id(location)), append(next, current.body(location))));
+                Arrays.stream(next.segments).forEach(UrlLogSegment::force);
+                writeManifest(next.number);
+            } catch (RuntimeException e) {
+                Arrays.stream(next.segments).forEach(UrlLogSegment::delete);
+                throw e;
+            }
+
+            generation = next;
+            Arrays.stream(current.segments).forEach(UrlLogSegment::delete);
+            LOGGER.info("Embedded storage compacted to generation {}: {} urls, {} dead bytes dropped", next.number,
+                    next.ids.size(), current.deadBytes);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return share of dead records in all stored bytes
+     */
+    public double getDeadRatio() {
+        final Generation current = generation;
+        final long total = current.liveBytes + current.deadBytes;
+        return total == 0 ? 0 : (double) current.deadBytes / total;
+    }
+
+    /**
+     * Flushes mapped segments to disk, so unforced writes survive the shutdown of the machine as well
+     */
+    @PreDestroy
+    public void close() {
+        writeLock.lock();
+        try {
+            Arrays.stream(generation.segments).forEach(UrlLogSegment::force);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Generation open() {
+        try {
+            Files.createDirectories(directory);
+            final int number = readManifest();
+
+            final TreeMap<Integer, Path> files = new TreeMap<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "urls-*.log")) {
+                for (Path file : stream) {
+                    final Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches() && Integer.parseInt(matcher.group(1)) == number) {
+                        files.put(Integer.parseInt(matcher.group(2)), file);
+                    } else if (matcher.matches()) {
+                        Files.delete(file);
+                    }
+                }
+            }
+
+            final Generation recovered = new Generation(number, properties.getExpectedUrls());
+            recovered.segments = new UrlLogSegment[0];
+            for (int segmentNumber = 0; segmentNumber < Math.max(files.size(), 1); segmentNumber++) {
+                if (!files.isEmpty() && !files.containsKey(segmentNumber)) {
+                    throw new IllegalStateException(String.format("Segment %d of generation %d is missing in %s",
+                            segmentNumber, number, directory));
+                }
+
+                final UrlLogSegment segment = segment(number, segmentNumber, segmentSize);
+                recovered.segments = append(recovered.segments, segment);
+                segment.recover((recoveredSegment, offset, length) -> replay(recovered, recoveredSegment, offset));
+            }
+
+            LOGGER.info("Embedded storage opened in {}: {} urls in {} segments, dead ratio {}", directory,
+                    recovered.ids.size(), recovered.segments.length,
+                    String.format("%.2f", (double) recovered.deadBytes /
+                            Math.max(1, recovered.liveBytes + recovered.deadBytes)));
+            return recovered;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open embedded storage in " + directory, e);
+        }
+    }
+
+    private void replay(Generation recovered, UrlLogSegment segment, int offset) {
+        final long location = location(segment.getNumber(), offset);
+        final byte[] id = bytes(segment.id(offset));
+        if (segment.type(offset) == UrlLogSegment.PUT) {
+            index(recovered, id, location);
+        } else {
+            unindex(recovered, id, location);
+        }
+    }
+
+    private void put(Generation current, Url url) {
+        index(current, bytes(url.getId()), append(current, UrlLogSegment.put(url)));
+    }
+
+    /**
+     * Points indexes to the record, replacing the previous record of the same url
+     */
+    private static void index(Generation current, byte[] id, long location) {
+        final long previous = locate(current, id);
+        if (previous >= 0) {
+            current.ids.replace(hash(id), previous, location);
+            release(current, previous);
+        } else {
+            current.ids.put(hash(id), location);
+        }
+
+        final Long fingerprint = current.fingerprint(location);
+        if (fingerprint != null) {
+            current.fingerprints.put(fingerprint, location);
+        }
+        current.liveBytes += current.length(location);
+    }
+
+    /**
+     * Removes the url deleted by the record from indexes
+     */
+    private static void unindex(Generation current, byte[] id, long location) {
+        final long previous = locate(current, id);
+        if (previous >= 0) {
+            current.ids.remove(hash(id), previous);
+            release(current, previous);
+        }
+        current.deadBytes += current.length(location);
+    }
+
+    private static void release(Generation current, long location) {
+        final Long fingerprint = current.fingerprint(location);
+        if (fingerprint != null) {
+            current.fingerprints.remove(fingerprint, location);
+        }
+
+        final int length = current.length(location);
+        current.liveBytes -= length;
+        current.deadBytes += length;
+    }
+
+    private long append(Generation current, byte[] body) {
+        final UrlLogSegment[] segments = current.segments;
+        final UrlLogSegment last = segments[segments.length - 1];
+
+        int offset = last.append(body, properties.isForceWrites());
+        if (offset >= 0) {
+            return location(last.getNumber(), offset);
+        }
+
+        final UrlLogSegment next = segment(current.number, segments.length,
+                Math.max(segmentSize, UrlLogSegment.HEADER_BYTES + body.length));
+        current.segments = append(segments, next);
+        offset = next.append(body, properties.isForceWrites());
+        return location(next.getNumber(), offset);
+    }
+
+    /**
+     * @return location of the latest record of the url, -1 if url doesn't exist
+     */
+    private static long locate(Generation current, byte[] id) {
+        for (long location : current.ids.get(hash(id))) {
+            if (current.segment(location).hasId(offset(location), id)) {
+                return location;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return locations of records of existing urls, in order of writing
+     */
+    private static LongStream liveLocations(Generation current) {
+        return Arrays.stream(current.segments).flatMapToLong(segment -> segment.offsets()
+                        .filter(offset -> segment.type(offset) == UrlLogSegment.PUT)
+                        .mapToLong(offset -> location(segment.getNumber(), offset)))
+                .filter(location -> locate(current, bytes(current.id(location))) == location);
+    }
+
+    private UrlLogSegment segment(int generationNumber, int segmentNumber, int size) {
+        return UrlLogSegment.open(directory.resolve(String.format("urls-%d-%d.log", generationNumber, segmentNumber)),
+                segmentNumber, size);
+    }
+
+    private int readManifest() throws IOException {
+        final Path manifest = directory.resolve(MANIFEST);
+        return Files.exists(manifest) ?
+                Integer.parseInt(new String(Files.readAllBytes(manifest), StandardCharsets.UTF_8).trim()) : 0;
+    }
+
+    private void writeManifest(int generationNumber) {
+        final Path manifest = directory.resolve(MANIFEST);
+        final Path written = directory.resolve(MANIFEST + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(written, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(Integer.toString(generationNumber).getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+            Files.move(written, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write " + manifest, e);
+        }
+    }
+
+    private static UrlLogSegment[] append(UrlLogSegment[] segments, UrlLogSegment segment) {
+        final UrlLogSegment[] appended = Arrays.copyOf(segments, segments.length + 1);
+        appended[segments.length] = segment;
+        return appended;
+    }
+
+    private static DuplicateKeyException duplicate(String id) {
+        return new DuplicateKeyException(String.format("Url with id=%s already exists", id));
+    }
+
+    private static byte[] bytes(String id) {
+        return id.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 64-bit FNV-1a, ids are compared on lookup, so collisions only cost a record read
+     */
+    private static long hash(byte[] id) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : id) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long location(int segmentNumber, int offset) {
+        return (long) segmentNumber << 32 | offset;
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Segments and indexes of files referenced by MANIFEST. Byte counters are guarded by the write lock
+     */
+    private static final class Generation {
+        final int number;
+        final OffHeapHashIndex ids;
+        final OffHeapHashIndex fingerprints;
+        volatile UrlLogSegment[] segments;
+        long liveBytes;
+        long deadBytes;
+
+        Generation(int number, int expectedUrls) {
+            this.number = number;
+            this.ids = new OffHeapHashIndex(expectedUrls);
+            this.fingerprints = new OffHeapHashIndex(expectedUrls);
+        }
+
+        UrlLogSegment segment(long location) {
+            return segments[(int) (location >>> 32)];
+        }
+
+        Url url(long location) {
+            return segment(location).url(offset(location));
+        }
+
+        String id(long location) {
+            return segment(location).id(offset(location));
+        }
+
+        Long fingerprint(long location) {
+            return segment(location).fingerprint(offset(location));
+        }
+
+        Long expiresAt(long location) {
+            return segment(location).expiresAt(offset(location));
+        }
+
+        int length(long location) {
+            return segment(location).length(offset(location));
+        }
+
+        byte[] body(long location) {
+            return segment(location).body(offset(location));
+        }
+    }
+}
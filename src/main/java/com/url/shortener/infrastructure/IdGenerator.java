@@ -0,0 +1,37 @@
+package com.url.shortener.infrastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Strategy of generating ids for urls shortened without custom hash. Implementation is selected using digest.strategy
+ * property
+ */
+public interface IdGenerator {
+
+    /**
+     * @return id which is expected to be free. Persisting it may still fail with duplicate key if another url has
+     * taken it concurrently
+     */
+    String nextId();
+
+    /**
+     * @return id for callers which detect taken ids on insert themselves, so implementations may skip checking it
+     * against the storage. Defaults to {@link #nextId()}
+     */
+    default String nextUncheckedId() {
+        return nextId();
+    }
+
+    /**
+     * @param count of ids
+     * @return distinct ids which are expected to be free
+     */
+    default List<String> nextIds(int count) {
+        final List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(nextId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,15 @@
+package com.url.shortener.infrastructure;
+
+/**
+ * Shared counter which hands out non-overlapping blocks of numeric ids to application instances
+ */
+public interface IdSegmentStore {
+
+    /**
+     * Atomically reserves next block of ids
+     *
+     * @param size of the block
+     * @return first id of the block, block spans [result, result + size)
+     */
+    long lease(int size);
+}
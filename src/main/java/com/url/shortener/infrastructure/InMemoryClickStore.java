@@ -0,0 +1,61 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.ClickStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps click totals in memory when running without MongoDB, so they are lost on restart
+ */
+@Component
+@Profile("embedded")
+public class InMemoryClickStore implements ClickStore {
+
+    private final Map<String, ClickStats> totals = new ConcurrentHashMap<>();
+    private final ClickAnalyticsProperties properties;
+
+    @Autowired
+    public InMemoryClickStore(ClickAnalyticsProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void increment(Collection<ClickCounts> counts) {
+        counts.forEach(count -> totals.merge(count.getId(), stats(count), this::sum));
+    }
+
+    @Override
+    public ClickStats find(String id) {
+        return totals.get(id);
+    }
+
+    @Override
+    public void delete(Collection<String> ids) {
+        totals.keySet().removeAll(ids);
+    }
+
+    private static ClickStats stats(ClickCounts count) {
+        return new ClickStats(count.getId(), count.getClicks(),
+                count.getLastClickAt() > 0 ? Instant.ofEpochMilli(count.getLastClickAt()) : null,
+                new HashMap<>(count.getReferrers()));
+    }
+
+    private ClickStats sum(ClickStats stored, ClickStats added) {
+        final Map<String, Long> referrers = new HashMap<>(stored.getReferrers());
+        added.getReferrers().forEach((host, clicks) -> referrers.merge(referrers.containsKey(host) ||
+                referrers.size() < properties.getMaxReferrers() ? host : ClickCounts.OTHER_REFERRERS, clicks,
+                Long::sum));
+
+        final Instant lastClickAt = stored.getLastClickAt() == null || (added.getLastClickAt() != null &&
+                added.getLastClickAt().isAfter(stored.getLastClickAt())) ? added.getLastClickAt() :
+                stored.getLastClickAt();
+        return new ClickStats(stored.getId(), stored.getClicks() + added.getClicks(), lastClickAt, referrers);
+    }
+}
@@ -0,0 +1,21 @@
+package com.url.shortener.infrastructure;
+
+import java.util.function.Consumer;
+
+/**
+ * Delivers url changes to all application instances, so they drop their copies of changed urls. Implementation is
+ * selected using invalidation.mode property
+ */
+public interface InvalidationBus {
+
+    /**
+     * Announces change made by this instance. Implementations which observe the storage itself may ignore it
+     */
+    void publish(UrlInvalidation invalidation);
+
+    /**
+     * Registers listener of changes made by any instance, including this one. Listeners are called from a single
+     * thread at a time and must not block
+     */
+    void subscribe(Consumer<UrlInvalidation> listener);
+}
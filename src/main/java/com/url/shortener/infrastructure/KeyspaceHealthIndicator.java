@@ -0,0 +1,31 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports state of the random id keyspace as "keyspace" health component. Saturation doesn't affect existing urls,
+ * so it is reported in details rather than as DOWN
+ */
+@Component
+public class KeyspaceHealthIndicator extends AbstractHealthIndicator {
+
+    private final KeyspaceMonitor monitor;
+
+    @Autowired
+    public KeyspaceHealthIndicator(KeyspaceMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        builder.up()
+                .withDetail("length", monitor.getLength())
+                .withDetail("storedUrls", monitor.getStoredUrls())
+                .withDetail("occupancy", monitor.getOccupancy())
+                .withDetail("collisionRate", monitor.getCollisionRate())
+                .withDetail("saturated", monitor.isSaturated());
+    }
+}
@@ -0,0 +1,184 @@
+package com.url.shortener.infrastructure;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks saturation of the random id keyspace and decides the length of newly generated ids. Length starts at
+ * digest.random-length and grows by one char when
+ * <ul>
+ * <li>stored urls take more than keyspace.max-occupancy of all ids of the current length, or</li>
+ * <li>more than keyspace.max-collision-rate of generated ids turned out to be taken, measured over at least
+ * keyspace.min-attempts generations, or</li>
+ * <li>a generation has failed after digest.random-max-attempts collisions</li>
+ * </ul>
+ * Length never shrinks and is capped by keyspace.max-length (at most 10), digest.random-length over 10 fails the
+ * startup. Existing ids keep their length, only new ids are affected. Stored urls are counted with the estimated
+ * count of the repository every keyspace.refresh-interval, counting all urls regardless of their length, so occupancy
+ * is overestimated after growth, which only errs on the safe side. The length isn't persisted: after restart it is
+ * derived from occupancy again, or regrows on collisions.
+ * <p>
+ * State is exported as "shortener.keyspace.*" gauges and by {@link KeyspaceHealthIndicator}
+ */
+@Component
+public class KeyspaceMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyspaceMonitor.class);
+
+    /**
+     * 62^10 is the largest capacity which fits into long
+     */
+    private static final int LENGTH_LIMIT = 10;
+
+    private final UrlRepository repository;
+    private final KeyspaceProperties properties;
+    private final ShortenerMetrics metrics;
+    private final int maxLength;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    private volatile int length;
+    private volatile long storedUrls;
+    private volatile double collisionRate;
+
+    @Autowired
+    public KeyspaceMonitor(UrlRepository repository, DigestProperties digestProperties,
+                           KeyspaceProperties properties, ShortenerMetrics metrics, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.length = digestProperties.getRandomLength();
+        if (length < 1 || length > LENGTH_LIMIT) {
+            throw new IllegalStateException(String.format("digest.random-length must be between 1 and %s, got %s",
+                    LENGTH_LIMIT, length));
+        }
+        this.maxLength = Math.max(length, Math.min(properties.getMaxLength(), LENGTH_LIMIT));
+
+        Gauge.builder("shortener.keyspace.length", this, KeyspaceMonitor::getLength)
+                .description("Length of newly generated random ids").register(meterRegistry);
+        Gauge.builder("shortener.keyspace.occupancy", this, KeyspaceMonitor::getOccupancy)
+                .description("Share of ids of the current length taken by stored urls").register(meterRegistry);
+        Gauge.builder("shortener.keyspace.collision.rate", this, KeyspaceMonitor::getCollisionRate)
+                .description("Share of generated ids found taken in the last measurement window")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return length of newly generated random ids
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Registers outcome of checked id generation
+     *
+     * @param attempts   ids generated
+     * @param collisions ids out of attempts found taken
+     */
+    public void attempted(int attempts, int collisions) {
+        metrics.collisions(collisions);
+        if (properties.isEnabled()) {
+            this.attempts.add(attempts);
+            this.collisions.add(collisions);
+        }
+    }
+
+    /**
+     * Registers generation which has failed because all attempts collided. Length grows at once, unless another
+     * thread has already grown it
+     *
+     * @param failedLength length of ids which collided
+     */
+    public void exhausted(int failedLength) {
+        metrics.exhausted();
+        if (properties.isEnabled()) {
+            grow(failedLength, failedLength + 1, "id generation exhausted all attempts");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${keyspace.refresh-interval}")
+    public void refresh() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        try {
+            storedUrls = repository.estimatedCount();
+        } catch (DataAccessException e) {
+            LOGGER.warn("Counting urls failed, keyspace occupancy is not updated", e);
+        }
+
+        evaluate();
+    }
+
+    /**
+     * Grows the length if the current one is saturated
+     */
+    void evaluate() {
+        final int current = length;
+
+        final long windowAttempts = attempts.sum();
+        if (windowAttempts >= properties.getMinAttempts() && windowAttempts > 0) {
+            final long windowCollisions = collisions.sum();
+            attempts.add(-windowAttempts);
+            collisions.add(-windowCollisions);
+            collisionRate = (double) windowCollisions / windowAttempts;
+        }
+
+        int next = collisionRate > properties.getMaxCollisionRate() ? current + 1 : current;
+        while (next < maxLength && occupancy(next) > properties.getMaxOccupancy()) {
+            next++;
+        }
+
+        grow(current, next, String.format("occupancy %.4f, collision rate %.4f", occupancy(current), collisionRate));
+    }
+
+    public long getStoredUrls() {
+        return storedUrls;
+    }
+
+    public double getOccupancy() {
+        return occupancy(length);
+    }
+
+    public double getCollisionRate() {
+        return collisionRate;
+    }
+
+    /**
+     * @return true if the length can't grow anymore while the keyspace is still over thresholds
+     */
+    public boolean isSaturated() {
+        return length == maxLength && (getOccupancy() > properties.getMaxOccupancy() ||
+                collisionRate > properties.getMaxCollisionRate());
+    }
+
+    private synchronized void grow(int from, int to, String reason) {
+        final int next = Math.min(to, maxLength);
+        if (length != from || next <= from) {
+            return;
+        }
+
+        length = next;
+        // the rate has been measured for the previous length
+        collisionRate = 0;
+        attempts.reset();
+        collisions.reset();
+
+        LOGGER.warn("Random id length grown from {} to {}: {}", from, next, reason);
+    }
+
+    private double occupancy(int idLength) {
+        return (double) storedUrls / Base62Encoder.capacity(idLength);
+    }
+}
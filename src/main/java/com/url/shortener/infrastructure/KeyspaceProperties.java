@@ -0,0 +1,54 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties("keyspace")
+public class KeyspaceProperties {
+    private boolean enabled;
+    private double maxOccupancy;
+    private double maxCollisionRate;
+    private long minAttempts;
+    private int maxLength;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getMaxOccupancy() {
+        return maxOccupancy;
+    }
+
+    public void setMaxOccupancy(double maxOccupancy) {
+        this.maxOccupancy = maxOccupancy;
+    }
+
+    public double getMaxCollisionRate() {
+        return maxCollisionRate;
+    }
+
+    public void setMaxCollisionRate(double maxCollisionRate) {
+        this.maxCollisionRate = maxCollisionRate;
+    }
+
+    public long getMinAttempts() {
+        return minAttempts;
+    }
+
+    public void setMinAttempts(long minAttempts) {
+        this.minAttempts = minAttempts;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(int maxLength) {
+        this.maxLength = maxLength;
+    }
+}
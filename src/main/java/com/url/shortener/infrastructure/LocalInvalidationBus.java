@@ -0,0 +1,29 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers changes to listeners of this instance only, synchronously. Enough for a single instance and as a stand-in
+ * for tests
+ */
+@Component
+@ConditionalOnProperty(name = "invalidation.mode", havingValue = "local", matchIfMissing = true)
+public class LocalInvalidationBus implements InvalidationBus {
+
+    private final List<Consumer<UrlInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public synchronized void publish(UrlInvalidation invalidation) {
+        listeners.forEach(listener -> listener.accept(invalidation));
+    }
+
+    @Override
+    public void subscribe(Consumer<UrlInvalidation> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,101 @@
+package com.url.shortener.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Negative lookup filter for url ids. Answers "definitely not stored" for ids which were never shortened, so probes
+ * with random ids don't reach the database.
+ * <p>
+ * Filter is built from the url collection on startup and then rebuilt every lookup-filter.rebuild-interval, which
+ * both drops ids removed by deleteUrl (Bloom filter can't forget single entries) and picks up urls shortened by other
+ * instances. Until the first build succeeds, or when the filter is disabled, every id is reported as possibly stored.
+ */
+@Component
+public class LookupFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LookupFilter.class);
+
+    private final UrlRepository repository;
+    private final LookupFilterProperties properties;
+    /**
+     * Serializes scheduled rebuilds and the ones requested by {@link UrlInvalidator}
+     */
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+
+    @Autowired
+    public LookupFilter(UrlRepository repository, LookupFilterProperties properties) {
+        this.repository = repository;
+        this.properties = properties;
+    }
+
+    /**
+     * @param id of url
+     * @return false if url with given id is definitely not stored
+     */
+    public boolean mightContain(String id) {
+        final BloomFilter current = filter;
+        return current == null || current.mightContain(id);
+    }
+
+    /**
+     * Registers id of the url which has just been persisted
+     *
+     * @param id of persisted url
+     */
+    public void put(String id) {
+        final BloomFilter current = filter;
+        if (current != null) {
+            current.put(id);
+        }
+
+        final BloomFilter next = building;
+        if (next != null) {
+            next.put(id);
+        }
+
+        // a rebuild may have swapped in its filter after the reads above, after clearing building too
+        final BloomFilter swapped = filter;
+        if (swapped != current && swapped != next) {
+            swapped.put(id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lookup-filter.rebuild-interval}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            if (!properties.isEnabled()) {
+                return;
+            }
+
+            final BloomFilter next = new BloomFilter(properties.getExpectedInsertions(),
+                    properties.getFalsePositiveProbability());
+            building = next;
+
+            try (Stream<UrlId> ids = repository.findIdsBy()) {
+                ids.forEach(id -> next.put(id.getId()));
+                filter = next;
+
+                LOGGER.info("Lookup filter rebuilt: {} bytes, {} hash functions", next.getBitSize() / Byte.SIZE,
+                        next.getHashFunctions());
+            } catch (DataAccessException e) {
+                LOGGER.warn("Lookup filter rebuild failed, previous filter is kept", e);
+            } finally {
+                building = null;
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.url.shortener.infrastructure;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.url.shortener.Url;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tails the change stream of the url collection, or of all url shards when sharding is enabled, so every instance
+ * sees changes made by any instance, or directly in the database, shortly after they are committed. Requires a
+ * replica set or a sharded cluster.
+ * <p>
+ * Changes are delivered by a single background thread. After a failure the stream is reopened every
+ * invalidation.retry-delay, resuming after the last delivered change, so no change is missed while the outage is
+ * shorter than the oplog window. When the stream can't be resumed, listeners get {@link UrlInvalidation.Kind#ALL}.
+ * Change time comes from the cluster time of the operation, which has a resolution of one second
+ */
+@Component
+@ConditionalOnProperty(name = "invalidation.mode", havingValue = "change-stream")
+public class MongoChangeStreamInvalidationBus implements InvalidationBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoChangeStreamInvalidationBus.class);
+
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final long MAX_AWAIT_MILLIS = 1000;
+
+    private final MongoOperations mongoOperations;
+    private final InvalidationProperties properties;
+    private final ShardingProperties shardingProperties;
+    private final List<Consumer<UrlInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread consumer;
+
+    @Autowired
+    public MongoChangeStreamInvalidationBus(MongoOperations mongoOperations, InvalidationProperties properties,
+                                            ShardingProperties shardingProperties) {
+        this.mongoOperations = mongoOperations;
+        this.properties = properties;
+        this.shardingProperties = shardingProperties;
+    }
+
+    /**
+     * Changes are observed in the storage, so there is nothing to send
+     */
+    @Override
+    public void publish(UrlInvalidation invalidation) {
+        // no-op
+    }
+
+    @Override
+    public void subscribe(Consumer<UrlInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        consumer = new Thread(this::consume, "url-change-stream");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        consumer.join(2 * MAX_AWAIT_MILLIS);
+    }
+
+    private void consume() {
+        BsonDocument resumeToken = null;
+        boolean failed = false;
+
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open(resumeToken)) {
+                if (failed && resumeToken == null) {
+                    // changes made before the stream has been reopened are unknown
+                    deliver(new UrlInvalidation(UrlInvalidation.Kind.ALL, null, System.currentTimeMillis()));
+                }
+                failed = false;
+
+                while (running) {
+                    final ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        deliver(change);
+                    }
+                    resumeToken = cursor.getResumeToken();
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    resumeToken = null;
+                }
+                failed = true;
+                retryLater(e);
+            } catch (MongoException e) {
+                failed = true;
+                retryLater(e);
+            }
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(BsonDocument resumeToken) {
+        final ChangeStreamIterable<Document> stream = (shardingProperties.isEnabled() ?
+                mongoOperations.execute(db -> db.watch(Collections.singletonList(Aggregates.match(
+                        Filters.in("ns.coll", shardingProperties.getCollections()))))) :
+                mongoOperations.getCollection(mongoOperations.getCollectionName(Url.class)).watch())
+                .maxAwaitTime(MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+        return (resumeToken == null ? stream : stream.resumeAfter(resumeToken)).cursor();
+    }
+
+    private void deliver(ChangeStreamDocument<Document> change) {
+        final long timestamp = change.getClusterTime() == null ? 0 :
+                TimeUnit.SECONDS.toMillis(change.getClusterTime().getTime());
+        final BsonValue key = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+        final String id = key != null && key.isString() ? key.asString().getValue() : null;
+
+        if (id == null) {
+            // collection has been dropped or renamed
+            deliver(new UrlInvalidation(UrlInvalidation.Kind.ALL, null, timestamp));
+        } else if (change.getOperationType() == OperationType.INSERT) {
+            deliver(new UrlInvalidation(UrlInvalidation.Kind.CREATED, id, timestamp));
+        } else if (change.getOperationType() == OperationType.DELETE) {
+            deliver(new UrlInvalidation(UrlInvalidation.Kind.DELETED, id, timestamp));
+        } else {
+            deliver(new UrlInvalidation(UrlInvalidation.Kind.CHANGED, id, timestamp));
+        }
+    }
+
+    private void deliver(UrlInvalidation invalidation) {
+        for (Consumer<UrlInvalidation> listener : listeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (RuntimeException e) {
+                LOGGER.error("Invalidation listener failed on {} of {}", invalidation.getKind(), invalidation.getId(),
+                        e);
+            }
+        }
+    }
+
+    private void retryLater(MongoException e) {
+        LOGGER.warn("Url change stream failed, reopening in {}", properties.getRetryDelay(), e);
+        try {
+            Thread.sleep(properties.getRetryDelay().toMillis());
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.ClickStats;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps click totals in url_clicks collection, one document per url id. Counts of a flush are applied with a single
+ * unordered bulk of upserts with $inc, so concurrent instances add to the same totals without reading them. Only the
+ * referrer hosts already stored for the flushed urls are read, to keep documents at click-analytics.max-referrers
+ * hosts; concurrent flushes of several instances may exceed it by the hosts of a single flush each
+ */
+@Component
+@Profile("!embedded")
+public class MongoClickStore implements ClickStore {
+
+    static final String COLLECTION = "url_clicks";
+    static final String ID_FIELD = "_id";
+    static final String CLICKS_FIELD = "clicks";
+    static final String LAST_CLICK_AT_FIELD = "lastClickAt";
+    static final String REFERRERS_FIELD = "referrers";
+
+    /**
+     * Dots would turn referrer hosts into nested paths, so they are stored as full width full stops
+     */
+    private static final char DOT = '.';
+    private static final char ESCAPED_DOT = '\uFF0E';
+
+    private final MongoOperations mongoOperations;
+    private final ClickAnalyticsProperties properties;
+
+    @Autowired
+    public MongoClickStore(MongoOperations mongoOperations, ClickAnalyticsProperties properties) {
+        this.mongoOperations = mongoOperations;
+        this.properties = properties;
+    }
+
+    @Override
+    public void increment(Collection<ClickCounts> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        final List<ClickCounts> batch = new ArrayList<>(counts);
+        final Map<String, Set<String>> storedReferrers = storedReferrers(batch);
+        final BulkOperations operations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+        batch.forEach(count -> operations.upsert(Query.query(Criteria.where(ID_FIELD).is(count.getId())),
+                update(count, storedReferrers.getOrDefault(count.getId(), Collections.emptySet()))));
+
+        try {
+            operations.execute();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().isEmpty()) {
+                throw e;
+            }
+            throw new ClickIncrementException(String.format("%s of %s click counts failed", e.getErrors().size(),
+                    batch.size()), e.getErrors().stream().map(error -> batch.get(error.getIndex()))
+                    .collect(Collectors.toList()), e);
+        }
+    }
+
+    @Override
+    public ClickStats find(String id) {
+        final Document document = mongoOperations.findById(id, Document.class, COLLECTION);
+        if (document == null) {
+            return null;
+        }
+
+        final Map<String, Long> referrers = new LinkedHashMap<>();
+        final Document stored = document.get(REFERRERS_FIELD, Document.class);
+        if (stored != null) {
+            stored.forEach((host, clicks) -> referrers.put(host.replace(ESCAPED_DOT, DOT),
+                    ((Number) clicks).longValue()));
+        }
+
+        final Date lastClickAt = document.getDate(LAST_CLICK_AT_FIELD);
+        return new ClickStats(id, ((Number) document.get(CLICKS_FIELD)).longValue(),
+                lastClickAt == null ? null : lastClickAt.toInstant(), referrers);
+    }
+
+    @Override
+    public void delete(Collection<String> ids) {
+        if (!ids.isEmpty()) {
+            mongoOperations.remove(Query.query(Criteria.where(ID_FIELD).in(ids)), COLLECTION);
+        }
+    }
+
+    /**
+     * @return escaped referrer hosts stored for urls of the counts which have referrers
+     */
+    private Map<String, Set<String>> storedReferrers(List<ClickCounts> counts) {
+        final List<String> ids = counts.stream().filter(count -> !count.getReferrers().isEmpty())
+                .map(ClickCounts::getId).collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Query query = Query.query(Criteria.where(ID_FIELD).in(ids));
+        query.fields().include(REFERRERS_FIELD);
+        final Map<String, Set<String>> referrers = new HashMap<>();
+        mongoOperations.find(query, Document.class, COLLECTION).forEach(document -> {
+            final Document stored = document.get(REFERRERS_FIELD, Document.class);
+            referrers.put(document.getString(ID_FIELD), stored == null ? Collections.emptySet() : stored.keySet());
+        });
+        return referrers;
+    }
+
+    private Update update(ClickCounts count, Set<String> storedReferrers) {
+        final Update update = new Update().inc(CLICKS_FIELD, count.getClicks());
+        if (count.getLastClickAt() > 0) {
+            update.max(LAST_CLICK_AT_FIELD, new Date(count.getLastClickAt()));
+        }
+
+        int hosts = storedReferrers.size();
+        long other = 0;
+        for (Map.Entry<String, Long> referrer : count.getReferrers().entrySet()) {
+            final String host = referrer.getKey().replace(DOT, ESCAPED_DOT);
+            if (!ClickCounts.OTHER_REFERRERS.equals(host) && (storedReferrers.contains(host)
+                    || hosts < properties.getMaxReferrers())) {
+                update.inc(REFERRERS_FIELD + DOT + host, referrer.getValue());
+                hosts += storedReferrers.contains(host) ? 0 : 1;
+            } else {
+                other += referrer.getValue();
+            }
+        }
+        if (other > 0) {
+            update.inc(REFERRERS_FIELD + DOT + ClickCounts.OTHER_REFERRERS, other);
+        }
+        return update;
+    }
+}
@@ -0,0 +1,122 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * {@link UrlRepository} over a url collection with the given name, which is what Spring Data repositories can't be
+ * pointed at. Used for shards of {@link ShardedUrlRepository}; documents have the same layout as in the default url
+ * collection
+ */
+public class MongoCollectionUrlRepository implements UrlRepository {
+
+    private static final String ID_FIELD = "_id";
+
+    private final MongoOperations mongoOperations;
+    private final String collection;
+
+    public MongoCollectionUrlRepository(MongoOperations mongoOperations, String collection) {
+        this.mongoOperations = mongoOperations;
+        this.collection = collection;
+    }
+
+    @Override
+    public Optional<Url> findById(String id) {
+        return Optional.ofNullable(mongoOperations.findById(id, Url.class, collection));
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return mongoOperations.exists(Query.query(Criteria.where(ID_FIELD).is(id)), Url.class, collection);
+    }
+
+    @Override
+    public List<Url> findByFingerprint(Long fingerprint) {
+        return mongoOperations.find(Query.query(Criteria.where(UrlIndexInitializer.FINGERPRINT_FIELD).is(fingerprint)),
+                Url.class, collection);
+    }
+
+    @Override
+    public List<Url> findByFingerprintIn(Collection<Long> fingerprints) {
+        return mongoOperations.find(Query.query(Criteria.where(UrlIndexInitializer.FINGERPRINT_FIELD)
+                .in(fingerprints)), Url.class, collection);
+    }
+
+    @Override
+    public List<Url> findByIdIn(Collection<String> ids) {
+        return mongoOperations.find(Query.query(Criteria.where(ID_FIELD).in(ids)), Url.class, collection);
+    }
+
+    @Override
+    public List<UrlId> findIdsByIdIn(Collection<String> ids) {
+        return mongoOperations.query(Url.class).inCollection(collection).as(UrlId.class)
+                .matching(Query.query(Criteria.where(ID_FIELD).in(ids))).all();
+    }
+
+    @Override
+    public List<UrlId> findIdsByExpiresAtBefore(Instant time, Pageable pageable) {
+        return mongoOperations.query(Url.class).inCollection(collection).as(UrlId.class)
+                .matching(Query.query(Criteria.where(UrlIndexInitializer.EXPIRES_AT_FIELD).lt(time))
+                        .limit(pageable.getPageSize())).all();
+    }
+
+    @Override
+    public List<Url> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable) {
+        return mongoOperations.find(Query.query(Criteria.where(ID_FIELD).gt(id))
+                .with(Sort.by(Sort.Direction.ASC, ID_FIELD)).limit(pageable.getPageSize()), Url.class, collection);
+    }
+
+    @Override
+    public Stream<Url> streamAllBy() {
+        return mongoOperations.query(Url.class).inCollection(collection).stream();
+    }
+
+    @Override
+    public Stream<UrlId> findIdsBy() {
+        return mongoOperations.query(Url.class).inCollection(collection).as(UrlId.class).stream();
+    }
+
+    @Override
+    public <S extends Url> S save(S url) {
+        return mongoOperations.save(url, collection);
+    }
+
+    @Override
+    public <S extends Url> S insert(S url) {
+        return mongoOperations.insert(url, collection);
+    }
+
+    @Override
+    public <S extends Url> List<S> insert(Iterable<S> urls) {
+        final List<S> batch = new ArrayList<>();
+        urls.forEach(batch::add);
+        return new ArrayList<>(mongoOperations.insert(batch, collection));
+    }
+
+    @Override
+    public void deleteById(String id) {
+        mongoOperations.remove(Query.query(Criteria.where(ID_FIELD).is(id)), Url.class, collection);
+    }
+
+    @Override
+    public long deleteByIdInAndExpiresAtBefore(Collection<String> ids, Instant time) {
+        return mongoOperations.remove(Query.query(Criteria.where(ID_FIELD).in(ids)
+                .and(UrlIndexInitializer.EXPIRES_AT_FIELD).lt(time)), Url.class, collection).getDeletedCount();
+    }
+
+    @Override
+    public long estimatedCount() {
+        return mongoOperations.estimatedCount(collection);
+    }
+}
@@ -0,0 +1,41 @@
+package com.url.shortener.infrastructure;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps segment counter in a single document of id_segments collection and leases blocks with atomic findAndModify
+ */
+@Component
+@ConditionalOnProperty(name = "digest.strategy", havingValue = "segment")
+public class MongoIdSegmentStore implements IdSegmentStore {
+
+    static final String COLLECTION = "id_segments";
+    static final String COUNTER_ID = "url";
+    static final String NEXT_FIELD = "next";
+
+    private final MongoOperations mongoOperations;
+
+    @Autowired
+    public MongoIdSegmentStore(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public long lease(int size) {
+        final Document counter = mongoOperations.findAndModify(
+                Query.query(Criteria.where("_id").is(COUNTER_ID)),
+                new Update().inc(NEXT_FIELD, (long) size),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class, COLLECTION);
+
+        return counter.getLong(NEXT_FIELD) - size;
+    }
+}
@@ -0,0 +1,8 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface MongoUrlRepository extends MongoRepository<Url, String>, MongoUrlRepositoryCustom,
+        UrlRepository {
+}
@@ -0,0 +1,10 @@
+package com.url.shortener.infrastructure;
+
+/**
+ * Methods of {@link MongoUrlRepository} which Spring Data can't derive, implemented by
+ * {@link MongoUrlRepositoryCustomImpl}
+ */
+public interface MongoUrlRepositoryCustom {
+
+    long estimatedCount();
+}
@@ -0,0 +1,23 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+public class MongoUrlRepositoryCustomImpl implements MongoUrlRepositoryCustom {
+
+    private final MongoOperations mongoOperations;
+
+    @Autowired
+    public MongoUrlRepositoryCustomImpl(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    /**
+     * Reads collection metadata instead of counting documents
+     */
+    @Override
+    public long estimatedCount() {
+        return mongoOperations.estimatedCount(Url.class);
+    }
+}
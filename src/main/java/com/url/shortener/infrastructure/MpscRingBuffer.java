@@ -0,0 +1,103 @@
+package com.url.shortener.infrastructure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Each slot carries a sequence number telling
+ * whether it may be written or read, so producers only compete for the tail counter and never wait for each other
+ * or for the consumer. A full buffer rejects offers instead of blocking.
+ * <p>
+ * poll and drain must be called by one thread at a time
+ */
+public class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    /**
+     * @param capacity power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+        }
+
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        while (true) {
+            final long position = tail.get();
+            final int index = (int) (position & mask);
+            final long available = sequences.get(index) - position;
+
+            if (available < 0) {
+                return false;
+            }
+            if (available == 0 && tail.compareAndSet(position, position + 1)) {
+                elements.lazySet(index, element);
+                // publishes the element to the consumer
+                sequences.lazySet(index, position + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return next element, null if the buffer is empty
+     */
+    public E poll() {
+        final int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        final E element = elements.get(index);
+        elements.lazySet(index, null);
+        // hands the slot back to producers for the next lap
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return element;
+    }
+
+    /**
+     * Passes available elements to the consumer
+     *
+     * @param limit max amount of elements to take
+     * @return amount of elements taken
+     */
+    public int drain(Consumer<E> consumer, int limit) {
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return approximate amount of elements in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,231 @@
+package com.url.shortener.infrastructure;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open addressing hash multimap of long keys to long values kept in a direct buffer, so millions of entries cost
+ * 16 bytes each outside of the heap and nothing for the garbage collector to trace. The same key may be mapped to
+ * several values, callers resolve hash collisions of their real keys themselves.
+ * <p>
+ * Lookups are optimistic reads which are validated and retried under a read lock only when they overlap with a
+ * modification. Modifications are expected from one thread at a time
+ */
+public class OffHeapHashIndex {
+
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+    private static final double MAX_LOAD = 0.7;
+    private static final long[] NO_VALUES = new long[0];
+    /**
+     * Largest table addressable by a single buffer
+     */
+    private static final int MAX_SLOTS = Integer.highestOneBit(Integer.MAX_VALUE / SLOT_BYTES);
+
+    private final StampedLock lock = new StampedLock();
+
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+    private int used;
+
+    /**
+     * @param expectedSize amount of entries the index is sized for, it grows when needed
+     */
+    public OffHeapHashIndex(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * @return values mapped to the key, empty array if there are none
+     */
+    public long[] get(long key) {
+        final long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                final long[] values = find(key);
+                if (lock.validate(stamp)) {
+                    return values;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // table has been replaced while reading, retried below
+            }
+        }
+
+        final long readStamp = lock.readLock();
+        try {
+            return find(key);
+        } finally {
+            lock.unlockRead(readStamp);
+        }
+    }
+
+    /**
+     * @param value non-negative
+     */
+    public void put(long key, long value) {
+        final long stamp = lock.writeLock();
+        try {
+            if (used + 1 > (mask + 1) * MAX_LOAD) {
+                // removed entries are dropped by rehashing, the table only grows if live entries need it
+                final boolean grow = size + 1 > (mask + 1) * MAX_LOAD / 2;
+                if (grow && mask + 1 == MAX_SLOTS) {
+                    throw new IllegalStateException("Index is full");
+                }
+                rehash(grow ? (mask + 1) * 2 : mask + 1);
+            }
+
+            final long slotKey = slotKey(key);
+            int slot = index(slotKey);
+            while (slots.getLong(offset(slot)) != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots.putLong(offset(slot) + Long.BYTES, value);
+            slots.putLong(offset(slot), slotKey);
+            size++;
+            used++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return false if the value wasn't mapped to the key
+     */
+    public boolean remove(long key, long value) {
+        final long stamp = lock.writeLock();
+        try {
+            final long slotKey = slotKey(key);
+            for (int slot = index(slotKey); ; slot = (slot + 1) & mask) {
+                final long current = slots.getLong(offset(slot));
+                if (current == EMPTY) {
+                    return false;
+                }
+                if (current == slotKey && slots.getLong(offset(slot) + Long.BYTES) == value) {
+                    // slot stays occupied, so probing for other keys passes through it
+                    slots.putLong(offset(slot) + Long.BYTES, REMOVED);
+                    size--;
+                    return true;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces value mapped to the key, maps it if there was no such value
+     */
+    public void replace(long key, long oldValue, long newValue) {
+        final long stamp = lock.writeLock();
+        try {
+            final long slotKey = slotKey(key);
+            for (int slot = index(slotKey); ; slot = (slot + 1) & mask) {
+                final long current = slots.getLong(offset(slot));
+                if (current == EMPTY) {
+                    break;
+                }
+                if (current == slotKey && slots.getLong(offset(slot) + Long.BYTES) == oldValue) {
+                    slots.putLong(offset(slot) + Long.BYTES, newValue);
+                    return;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        put(key, newValue);
+    }
+
+    public int size() {
+        final long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return bytes of the direct buffer
+     */
+    public long capacityBytes() {
+        return (long) (mask + 1) * SLOT_BYTES;
+    }
+
+    private long[] find(long key) {
+        final long slotKey = slotKey(key);
+        long[] values = NO_VALUES;
+        int found = 0;
+
+        for (int slot = index(slotKey), probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            final long current = slots.getLong(offset(slot));
+            if (current == EMPTY) {
+                break;
+            }
+            if (current == slotKey) {
+                final long value = slots.getLong(offset(slot) + Long.BYTES);
+                if (value != REMOVED) {
+                    if (found == values.length) {
+                        values = Arrays.copyOf(values, Math.max(1, found * 2));
+                    }
+                    values[found++] = value;
+                }
+            }
+        }
+
+        return found == values.length ? values : Arrays.copyOf(values, found);
+    }
+
+    private void rehash(int tableSize) {
+        final ByteBuffer previous = slots;
+        final int previousSlots = mask + 1;
+        allocate(tableSize);
+
+        for (int slot = 0; slot < previousSlots; slot++) {
+            final long slotKey = previous.getLong(slot * SLOT_BYTES);
+            final long value = previous.getLong(slot * SLOT_BYTES + Long.BYTES);
+            if (slotKey != EMPTY && value != REMOVED) {
+                int target = index(slotKey);
+                while (slots.getLong(offset(target)) != EMPTY) {
+                    target = (target + 1) & mask;
+                }
+                slots.putLong(offset(target) + Long.BYTES, value);
+                slots.putLong(offset(target), slotKey);
+                size++;
+                used++;
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        slots = ByteBuffer.allocateDirect(Math.multiplyExact(tableSize, SLOT_BYTES));
+        mask = tableSize - 1;
+        size = 0;
+        used = 0;
+    }
+
+    private int index(long slotKey) {
+        return (int) (slotKey ^ (slotKey >>> 32)) & mask;
+    }
+
+    private static int offset(int slot) {
+        return slot * SLOT_BYTES;
+    }
+
+    /**
+     * Scrambles the key, so sequential keys don't form long probe chains. Zero is reserved for empty slots
+     */
+    private static long slotKey(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        return h == EMPTY ? 1 : h;
+    }
+
+    private static int tableSize(int expectedSize) {
+        final int slots = (int) Math.min(MAX_SLOTS, (long) Math.ceil(Math.max(expectedSize, 16) / MAX_LOAD));
+        return Integer.highestOneBit(slots - 1) << 1;
+    }
+}
@@ -0,0 +1,99 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates random Base62 ids and checks them against the repository until free one is found. Length of ids and
+ * outcome of checks are shared with {@link KeyspaceMonitor}, which grows the length as the keyspace fills up
+ */
+@Component
+@ConditionalOnProperty(name = "digest.strategy", havingValue = "random", matchIfMissing = true)
+public class RandomIdGenerator implements IdGenerator {
+
+    private final UrlRepository repository;
+    private final DigestProperties digestProperties;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final KeyspaceMonitor keyspaceMonitor;
+
+    @Autowired
+    public RandomIdGenerator(UrlRepository repository, DigestProperties digestProperties,
+                             ShortCodeGenerator shortCodeGenerator, KeyspaceMonitor keyspaceMonitor) {
+        this.repository = repository;
+        this.digestProperties = digestProperties;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.keyspaceMonitor = keyspaceMonitor;
+    }
+
+    @Override
+    public String nextId() {
+        int maxAttempts = digestProperties.getRandomMaxAttempts();
+        int iteration = 0; // fail fast is better
+        final int length = keyspaceMonitor.getLength();
+        String digest;
+
+        do {
+            digest = shortCodeGenerator.generate(length);
+            ++iteration;
+        }
+        while (repository.existsById(digest) && iteration < maxAttempts);
+
+        if (iteration == maxAttempts) {
+            keyspaceMonitor.attempted(iteration, iteration);
+            keyspaceMonitor.exhausted(length);
+            throw new UnsupportedOperationException(String.format("Can't generate random hash using reasonable " +
+                    "amount of time. Attempted %s times", iteration));
+        }
+
+        keyspaceMonitor.attempted(iteration, iteration - 1);
+        return digest;
+    }
+
+    @Override
+    public String nextUncheckedId() {
+        return shortCodeGenerator.generate(keyspaceMonitor.getLength());
+    }
+
+    /**
+     * Generates all ids at once and checks them with a single query, regenerating only the taken ones
+     */
+    @Override
+    public List<String> nextIds(int count) {
+        final int maxAttempts = digestProperties.getRandomMaxAttempts();
+        final int length = keyspaceMonitor.getLength();
+        final Set<String> ids = new LinkedHashSet<>(count);
+
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            final Set<String> candidates = new LinkedHashSet<>();
+            while (ids.size() + candidates.size() < count) {
+                final String candidate = shortCodeGenerator.generate(length);
+                if (!ids.contains(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+
+            if (candidates.isEmpty()) {
+                return new ArrayList<>(ids);
+            }
+
+            final int generated = candidates.size();
+            repository.findIdsByIdIn(candidates).forEach(taken -> candidates.remove(taken.getId()));
+            keyspaceMonitor.attempted(generated, generated - candidates.size());
+            ids.addAll(candidates);
+        }
+
+        if (ids.size() < count) {
+            keyspaceMonitor.exhausted(length);
+            throw new UnsupportedOperationException(String.format("Can't generate %s random hashes using " +
+                    "reasonable amount of time. Attempted %s times", count, maxAttempts));
+        }
+
+        return new ArrayList<>(ids);
+    }
+}
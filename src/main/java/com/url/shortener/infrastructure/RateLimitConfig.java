@@ -0,0 +1,30 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Enforces {@link RateLimited} limits of controller methods when rate-limit.enabled is set. Redirects served by
+ * the fast path are limited by {@link com.url.shortener.RedirectFilter} itself
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "rate-limit.enabled", havingValue = "true")
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    private final RateLimiter rateLimiter;
+
+    @Autowired
+    public RateLimitConfig(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter));
+    }
+}
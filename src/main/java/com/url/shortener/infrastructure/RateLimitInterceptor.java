@@ -0,0 +1,31 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Applies {@link RateLimiter} to handler methods annotated with {@link RateLimited}, before request bodies are read
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+
+        final RateLimited limited = ((HandlerMethod) handler).getMethodAnnotation(RateLimited.class);
+        return limited == null || rateLimiter.admit(limited.value(), request, response);
+    }
+}
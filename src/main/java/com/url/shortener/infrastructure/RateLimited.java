@@ -0,0 +1,19 @@
+package com.url.shortener.infrastructure;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler method whose requests are limited per client by {@link RateLimiter}
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    /**
+     * @return name of the limit, rate-limit.rates.{name} and rate-limit.bursts.{name} configure it
+     */
+    String value();
+}
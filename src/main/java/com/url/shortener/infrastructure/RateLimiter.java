@@ -0,0 +1,134 @@
+package com.url.shortener.infrastructure;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits requests of every client to rate-limit.rates.{limit} per second, with bursts of up to
+ * rate-limit.bursts.{limit} requests, when rate-limit.enabled is set. Limits without a rate are not enforced.
+ * Clients are told apart by rate-limit.api-key-header when it's set and sent, by remote address otherwise; the
+ * header is only safe to use when a gateway in front of the service verifies it.
+ * <p>
+ * Each client has a token bucket kept as a single theoretical arrival time (GCRA), which is advanced by a CAS, so
+ * requests are admitted without locks. Buckets of clients idle for rate-limit.idle-timeout are evicted, as well as
+ * the least recently used ones beyond rate-limit.max-clients per limit. Decisions are counted by
+ * "shortener.rate.limit" metric with limit and result tags, tracked clients by "shortener.rate.limit.clients"
+ */
+@Component
+public class RateLimiter {
+
+    private static final String API_KEY_PREFIX = "key:";
+
+    private final RateLimitProperties properties;
+    private final Map<String, Limit> limits = new HashMap<>();
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+
+        if (properties.isEnabled()) {
+            properties.getRates().forEach((name, rate) -> limits.put(name, new Limit(name, rate,
+                    properties.getBursts().getOrDefault(name, 1), properties, meterRegistry)));
+        }
+    }
+
+    /**
+     * Answers the request with 429 and Retry-After header if the client has exceeded the limit
+     *
+     * @return true if the request may proceed
+     */
+    public boolean admit(String limit, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final long waitNanos = tryAcquire(limit, clientOf(request));
+        if (waitNanos == 0) {
+            return true;
+        }
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1,
+                TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1))));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests, retry later");
+        return false;
+    }
+
+    /**
+     * @return 0 if the request is admitted, otherwise nanos until the client may send the next one
+     */
+    long tryAcquire(String limit, String client) {
+        final Limit bucket = limits.get(limit);
+        return bucket == null ? 0 : bucket.tryAcquire(client);
+    }
+
+    String clientOf(HttpServletRequest request) {
+        if (StringUtils.isNotEmpty(properties.getApiKeyHeader())) {
+            final String apiKey = request.getHeader(properties.getApiKeyHeader());
+            if (StringUtils.isNotEmpty(apiKey)) {
+                return API_KEY_PREFIX + apiKey;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static final class Limit {
+
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        /**
+         * Theoretical arrival time of the next request of each client, in {@link System#nanoTime()}
+         */
+        private final Cache<String, AtomicLong> clients;
+        private final Counter allowed;
+        private final Counter rejected;
+
+        Limit(String name, double rate, int burst, RateLimitProperties properties, MeterRegistry meterRegistry) {
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+            this.toleranceNanos = intervalNanos * Math.max(1, burst);
+            this.clients = Caffeine.newBuilder()
+                    .maximumSize(properties.getMaxClients())
+                    .expireAfterAccess(properties.getIdleTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                    .build();
+
+            this.allowed = Counter.builder("shortener.rate.limit").tag("limit", name).tag("result", "allowed")
+                    .description("Requests checked against the per client limit").register(meterRegistry);
+            this.rejected = Counter.builder("shortener.rate.limit").tag("limit", name).tag("result", "rejected")
+                    .description("Requests checked against the per client limit").register(meterRegistry);
+            Gauge.builder("shortener.rate.limit.clients", clients, Cache::estimatedSize).tag("limit", name)
+                    .description("Clients with a tracked bucket").register(meterRegistry);
+        }
+
+        long tryAcquire(String client) {
+            final AtomicLong arrival = clients.get(client, key -> new AtomicLong(System.nanoTime()));
+
+            while (true) {
+                final long now = System.nanoTime();
+                final long current = arrival.get();
+                // an idle client has a full bucket, its arrival time is in the past
+                final long next = (current - now > 0 ? current : now) + intervalNanos;
+                final long waitNanos = next - toleranceNanos - now;
+
+                if (waitNanos > 0) {
+                    rejected.increment();
+                    return waitNanos;
+                }
+                if (arrival.compareAndSet(current, next)) {
+                    allowed.increment();
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReactiveMongoUrlRepository extends ReactiveMongoRepository<Url, String>, ReactiveUrlRepository {
+}
@@ -0,0 +1,58 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Non-blocking storage of urls used by the reactive serving mode. Mirrors {@link UrlRepository}, so
+ * {@link ReactiveMongoUrlRepository} gets the methods implemented by the framework
+ */
+public interface ReactiveUrlRepository {
+
+    Mono<Url> findById(String id);
+
+    /**
+     * @param fingerprint of source url, see {@link UrlFingerprint}
+     * @return urls with given fingerprint, their source urls may differ
+     */
+    Flux<Url> findByFingerprint(Long fingerprint);
+
+    Flux<Url> findByFingerprintIn(Collection<Long> fingerprints);
+
+    Flux<Url> findByIdIn(Collection<String> ids);
+
+    /**
+     * Keyset pagination over urls ordered by id, see {@link UrlRepository#findByIdGreaterThanOrderByIdAsc}
+     */
+    Flux<Url> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    /**
+     * Emits all urls from database cursor as they are requested by subscriber
+     *
+     * @return all stored urls in no particular order
+     */
+    Flux<Url> findAll();
+
+    /**
+     * Inserts or replaces url
+     */
+    <S extends Url> Mono<S> save(S url);
+
+    /**
+     * Inserts new url. Fails with {@link org.springframework.dao.DuplicateKeyException} if url with the same id
+     * already exists
+     */
+    <S extends Url> Mono<S> insert(S url);
+
+    /**
+     * Inserts new urls with a single batch. Fails with
+     * {@link org.springframework.dao.DataIntegrityViolationException} if some of urls already exist
+     */
+    <S extends Url> Flux<S> insert(Iterable<S> urls);
+
+    Mono<Void> deleteById(String id);
+}
@@ -0,0 +1,75 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Status and Cache-Control header of redirect responses, resolved once from {@link RedirectProperties}.
+ * <p>
+ * 301 lets browsers remember the redirect, 302 and 307 make them ask every time unless Cache-Control allows caching.
+ * Public Cache-Control lets shared caches (CDNs) serve repeat clicks too, which also means a deleted url may keep
+ * redirecting until max-age passes. Urls with expiresAt are always redirected with 302 and at most private caching
+ * until they expire, so no cache keeps redirecting them afterwards
+ */
+@Component
+public class RedirectPolicy {
+
+    private static final Set<HttpStatus> SUPPORTED_STATUSES = EnumSet.of(HttpStatus.MOVED_PERMANENTLY,
+            HttpStatus.FOUND, HttpStatus.TEMPORARY_REDIRECT);
+
+    private final HttpStatus status;
+    private final String cacheControl;
+    private final long maxAgeSeconds;
+
+    @Autowired
+    public RedirectPolicy(RedirectProperties properties) {
+        this.status = HttpStatus.resolve(properties.getStatus());
+        if (!SUPPORTED_STATUSES.contains(status)) {
+            throw new IllegalStateException(String.format("Unsupported redirect status %s, expected one of 301, " +
+                    "302, 307", properties.getStatus()));
+        }
+
+        final Duration maxAge = properties.getCacheMaxAge();
+        this.maxAgeSeconds = maxAge == null || maxAge.isNegative() ? 0 : maxAge.getSeconds();
+        this.cacheControl = maxAgeSeconds == 0 ? null :
+                (properties.isCachePublic() ? "public" : "private") + ", max-age=" + maxAgeSeconds;
+    }
+
+    /**
+     * Writes redirect status and headers of the url, response body is left empty
+     */
+    public void writeTo(HttpServletResponse response, Url url) {
+        response.setStatus(getStatus(url).value());
+        response.setHeader(HttpHeaders.LOCATION, url.getSourceUrl());
+        final String urlCacheControl = getCacheControl(url);
+        if (urlCacheControl != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, urlCacheControl);
+        }
+    }
+
+    public HttpStatus getStatus(Url url) {
+        return url.getExpiresAt() == null ? status : HttpStatus.FOUND;
+    }
+
+    /**
+     * @return value of Cache-Control header, null when redirect of the url shouldn't carry one
+     */
+    public String getCacheControl(Url url) {
+        if (url.getExpiresAt() == null) {
+            return cacheControl;
+        }
+
+        final long ttlSeconds = Duration.between(Instant.now(), url.getExpiresAt()).getSeconds();
+        final long urlMaxAge = Math.min(maxAgeSeconds, ttlSeconds);
+        return urlMaxAge <= 0 ? null : "private, max-age=" + urlMaxAge;
+    }
+}
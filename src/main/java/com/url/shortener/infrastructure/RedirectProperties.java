@@ -0,0 +1,47 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties("redirect")
+public class RedirectProperties {
+    private boolean fastPathEnabled;
+    private int status;
+    private Duration cacheMaxAge;
+    private boolean cachePublic;
+
+    public boolean isFastPathEnabled() {
+        return fastPathEnabled;
+    }
+
+    public void setFastPathEnabled(boolean fastPathEnabled) {
+        this.fastPathEnabled = fastPathEnabled;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Duration getCacheMaxAge() {
+        return cacheMaxAge;
+    }
+
+    public void setCacheMaxAge(Duration cacheMaxAge) {
+        this.cacheMaxAge = cacheMaxAge;
+    }
+
+    public boolean isCachePublic() {
+        return cachePublic;
+    }
+
+    public void setCachePublic(boolean cachePublic) {
+        this.cachePublic = cachePublic;
+    }
+}
@@ -0,0 +1,295 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Memory-resident table of all urls for redirects, enabled by redirect-table.enabled. Ids of up to 10 Base62 chars
+ * are packed into longs and mapped by {@link OffHeapHashIndex} to source urls stored as UTF-8 in direct buffer
+ * chunks of redirect-table.chunk-size, so an entry costs about 50 bytes plus its url outside of the heap and the
+ * table holds no objects per url. Urls with other ids and urls which expire are left to {@link UrlCache}.
+ * <p>
+ * Table is loaded from the storage on startup and reloaded every redirect-table.reload-interval, which picks up
+ * changes of other instances and frees space of replaced urls; both tables are held in memory while reloading. A
+ * miss doesn't mean that the url doesn't exist, it may have been shortened by another instance since the last load.
+ * Size is exported as "redirect.table.urls" and "redirect.table.bytes" metrics
+ */
+@Component
+public class RedirectTable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedirectTable.class);
+
+    private static final int MAX_ID_LENGTH = 10;
+    /**
+     * 62^10 < 2^60, so the id length fits above the value
+     */
+    private static final int LENGTH_SHIFT = 60;
+
+    private final UrlRepository repository;
+    private final RedirectTableProperties properties;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * Serializes scheduled reloads and the ones requested by {@link UrlInvalidator}, which share the loading state
+     */
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private final Set<String> removedWhileLoading = ConcurrentHashMap.newKeySet();
+
+    private volatile Table table;
+    private volatile Table loading;
+
+    @Autowired
+    public RedirectTable(UrlRepository repository, RedirectTableProperties properties, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.properties = properties;
+
+        if (properties.isEnabled()) {
+            Gauge.builder("redirect.table.urls", this, RedirectTable::size).register(meterRegistry);
+            Gauge.builder("redirect.table.bytes", this, RedirectTable::bytes).baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * @return url with the source url only, null if the table doesn't contain the id
+     */
+    public Url get(String id) {
+        final Table current = table;
+        final long key = pack(id);
+        if (current == null || key == 0) {
+            return null;
+        }
+
+        final String sourceUrl = current.get(key);
+        return sourceUrl == null ? null : new Url(id, sourceUrl);
+    }
+
+    /**
+     * Adds or replaces the url
+     *
+     * @return false if the url isn't kept by the table, because it's disabled, not loaded yet, the id can't be
+     * packed or the url expires
+     */
+    public boolean put(Url url) {
+        final long key = pack(url.getId());
+        if (!properties.isEnabled() || key == 0 || url.getExpiresAt() != null) {
+            return false;
+        }
+
+        writeLock.lock();
+        try {
+            final Table current = table;
+            final Table next = loading;
+            if (current != null) {
+                current.put(key, url.getSourceUrl());
+            }
+            if (next != null) {
+                next.put(key, url.getSourceUrl());
+                removedWhileLoading.remove(url.getId());
+            }
+            return current != null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(String id) {
+        final long key = pack(id);
+        if (!properties.isEnabled() || key == 0) {
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            final Table current = table;
+            final Table next = loading;
+            if (current != null) {
+                current.remove(key);
+            }
+            if (next != null) {
+                // may not be loaded yet, removed again once loading is done
+                next.remove(key);
+                removedWhileLoading.add(id);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${redirect-table.reload-interval}")
+    public void reload() {
+        reloadLock.lock();
+        try {
+            if (!properties.isEnabled()) {
+                return;
+            }
+
+            final Table next = new Table(properties.getExpectedUrls(),
+                    Math.toIntExact(properties.getChunkSize().toBytes()));
+            loading = next;
+
+            try (Stream<Url> urls = repository.streamAllBy()) {
+                urls.forEach(url -> {
+                    final long key = pack(url.getId());
+                    if (key != 0 && url.getExpiresAt() == null) {
+                        writeLock.lock();
+                        try {
+                            next.put(key, url.getSourceUrl());
+                        } finally {
+                            writeLock.unlock();
+                        }
+                    }
+                });
+
+                writeLock.lock();
+                try {
+                    removedWhileLoading.forEach(id -> next.remove(pack(id)));
+                    table = next;
+                } finally {
+                    writeLock.unlock();
+                }
+
+                LOGGER.info("Redirect table loaded: {} urls, {} bytes off heap", next.size(), next.bytes());
+            } catch (DataAccessException e) {
+                LOGGER.warn("Redirect table load failed, previous table is kept", e);
+            } finally {
+                loading = null;
+                removedWhileLoading.clear();
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    public int size() {
+        final Table current = table;
+        return current == null ? 0 : current.size();
+    }
+
+    /**
+     * @return off-heap bytes of the current table
+     */
+    public long bytes() {
+        final Table current = table;
+        return current == null ? 0 : current.bytes();
+    }
+
+    /**
+     * @return id length in the upper bits and Base62 value in the lower ones, 0 if the id can't be packed
+     */
+    static long pack(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_ID_LENGTH) {
+            return 0;
+        }
+
+        final long value = Base62Encoder.decode(id);
+        return value < 0 ? 0 : (long) id.length() << LENGTH_SHIFT | value;
+    }
+
+    /**
+     * Index of packed ids to entries of [long packed id, int length, UTF-8 source url] appended to direct buffer
+     * chunks. Replaced and removed entries stay in chunks until the table is reloaded. Writes are serialized by the
+     * caller, reads need no locks
+     */
+    static final class Table {
+
+        private static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+
+        private final OffHeapHashIndex index;
+        private final int chunkSize;
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+        private int position;
+
+        Table(int expectedUrls, int chunkSize) {
+            this.index = new OffHeapHashIndex(expectedUrls);
+            this.chunkSize = chunkSize;
+        }
+
+        String get(long key) {
+            final long location = locate(key);
+            if (location < 0) {
+                return null;
+            }
+
+            final ByteBuffer chunk = chunks[(int) (location >>> 32)];
+            final int offset = (int) location;
+            final byte[] sourceUrl = new byte[chunk.getInt(offset + Long.BYTES)];
+            chunk.get(offset + HEADER_BYTES, sourceUrl);
+            return new String(sourceUrl, StandardCharsets.UTF_8);
+        }
+
+        void put(long key, String sourceUrl) {
+            final long previous = locate(key);
+            final long location = append(key, sourceUrl.getBytes(StandardCharsets.UTF_8));
+            if (previous >= 0) {
+                index.replace(key, previous, location);
+            } else {
+                index.put(key, location);
+            }
+        }
+
+        void remove(long key) {
+            final long location = locate(key);
+            if (location >= 0) {
+                index.remove(key, location);
+            }
+        }
+
+        int size() {
+            return index.size();
+        }
+
+        long bytes() {
+            return index.capacityBytes() + Arrays.stream(chunks).mapToLong(ByteBuffer::capacity).sum();
+        }
+
+        /**
+         * Packed ids are compared, as different ids may share a slot of the index
+         */
+        private long locate(long key) {
+            final long[] locations = index.get(key);
+            // read after the index, so chunks of found locations are already published
+            final ByteBuffer[] current = chunks;
+            for (long location : locations) {
+                if (current[(int) (location >>> 32)].getLong((int) location) == key) {
+                    return location;
+                }
+            }
+            return -1;
+        }
+
+        private long append(long key, byte[] sourceUrl) {
+            final int length = HEADER_BYTES + sourceUrl.length;
+            ByteBuffer[] current = chunks;
+            if (current.length == 0 || length > current[current.length - 1].capacity() - position) {
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = ByteBuffer.allocateDirect(Math.max(chunkSize, length));
+                chunks = current;
+                position = 0;
+            }
+
+            final ByteBuffer chunk = current[current.length - 1];
+            chunk.putLong(position, key);
+            chunk.putInt(position + Long.BYTES, sourceUrl.length);
+            chunk.put(position + HEADER_BYTES, sourceUrl);
+
+            final long location = (long) (current.length - 1) << 32 | position;
+            position += length;
+            return location;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+@ConfigurationProperties("redirect-table")
+public class RedirectTableProperties {
+    private boolean enabled;
+    private int expectedUrls;
+    private DataSize chunkSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getExpectedUrls() {
+        return expectedUrls;
+    }
+
+    public void setExpectedUrls(int expectedUrls) {
+        this.expectedUrls = expectedUrls;
+    }
+
+    public DataSize getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(DataSize chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+}
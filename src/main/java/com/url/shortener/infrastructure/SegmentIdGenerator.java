@@ -0,0 +1,96 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates ids from blocks of sequence numbers leased from {@link IdSegmentStore}. Each number is unique across all
+ * instances, so no existence checks are needed. Numbers are scattered over the keyspace with an affine bijection
+ * (value * multiplier + offset) mod 62^length before encoding, so consecutive ids don't look sequential. This is
+ * obfuscation, not protection against guessing.
+ * <p>
+ * Leasing is guarded by a lock rather than synchronized, so a virtual thread waiting for the store doesn't pin its
+ * carrier thread
+ */
+@Component
+@ConditionalOnProperty(name = "digest.strategy", havingValue = "segment")
+public class SegmentIdGenerator implements IdGenerator {
+
+    /**
+     * Prime coprime with 62, which makes multiplication modulo 62^n a bijection. Kept below 2^26, so up to 6 chars
+     * (62^6 < 2^36) the product fits into long, longer ids fall back to {@link #mulMod}
+     */
+    private static final long MULTIPLIER = 67_108_859L;
+    private static final long OFFSET = 3_141_592_653L;
+
+    private final IdSegmentStore store;
+    private final int segmentSize;
+    private final int length;
+    private final long capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long next;
+    private long end;
+
+    @Autowired
+    public SegmentIdGenerator(IdSegmentStore store, DigestProperties digestProperties) {
+        this.store = store;
+        this.segmentSize = digestProperties.getSegmentSize();
+        this.length = digestProperties.getRandomLength();
+        this.capacity = Base62Encoder.capacity(length);
+    }
+
+    @Override
+    public String nextId() {
+        final long sequence;
+
+        lock.lock();
+        try {
+            if (next == end) {
+                next = store.lease(segmentSize);
+                end = next + segmentSize;
+            }
+            sequence = next++;
+        } finally {
+            lock.unlock();
+        }
+
+        if (sequence >= capacity) {
+            throw new UnsupportedOperationException(String.format("Id segments are exhausted for length %s",
+                    length));
+        }
+
+        return Base62Encoder.encode(scatter(sequence), length);
+    }
+
+    private long scatter(long sequence) {
+        return (mulMod(sequence, MULTIPLIER % capacity, capacity) + OFFSET % capacity) % capacity;
+    }
+
+    /**
+     * Overflow-safe (a * b) mod m for a, b less than m
+     */
+    private static long mulMod(long a, long b, long m) {
+        if (b == 0 || a <= Long.MAX_VALUE / b) {
+            return a * b % m;
+        }
+
+        long result = 0;
+        long addend = a;
+        long multiplier = b;
+
+        while (multiplier > 0) {
+            if ((multiplier & 1) == 1) {
+                result = (result + addend) % m;
+            }
+            addend = (addend << 1) % m;
+            multiplier >>= 1;
+        }
+
+        return result;
+    }
+}
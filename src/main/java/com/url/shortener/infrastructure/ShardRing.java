@@ -0,0 +1,73 @@
+package com.url.shortener.infrastructure;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing of keys to shards. Each shard is placed on a ring of 64-bit hashes at virtual-nodes points
+ * derived from its name, a key belongs to the shard of the first point at or after the hash of the key. Placement
+ * depends on shard names only, so adding a shard moves about 1/N of the keys, all of them to the new shard, and
+ * removing one moves only its own keys
+ */
+final class ShardRing {
+
+    private final long[] points;
+    private final int[] shards;
+
+    /**
+     * @param names        distinct shard names, shards are identified by their index in this list
+     * @param virtualNodes amount of points per shard, more points spread keys more evenly
+     */
+    ShardRing(List<String> names, int virtualNodes) {
+        if (names.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("At least one shard with one virtual node is required");
+        }
+
+        final TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int shard = 0; shard < names.size(); shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash(names.get(shard) + "#" + node), shard);
+            }
+        }
+
+        points = new long[ring.size()];
+        shards = new int[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> point : ring.entrySet()) {
+            points[i] = point.getKey();
+            shards[i++] = point.getValue();
+        }
+    }
+
+    /**
+     * @return index of the shard which owns the key
+     */
+    int shardOf(String key) {
+        int point = Arrays.binarySearch(points, hash(key));
+        if (point < 0) {
+            point = -point - 1;
+        }
+        return shards[point == points.length ? 0 : point];
+    }
+
+    /**
+     * FNV-1a over chars followed by the MurmurHash3 finalizer, so short keys which differ in the last char are spread
+     * over the whole ring
+     */
+    static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
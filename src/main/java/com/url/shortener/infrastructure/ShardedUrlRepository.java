@@ -0,0 +1,298 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+
+import javax.annotation.Priority;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link UrlRepository} which spreads urls over several backing repositories by {@link ShardRing} of their ids, so
+ * writes of each url go to a single shard. Lookups by id are routed the same way. Lookups by fingerprint can't be
+ * routed, as urls are placed by id, so they are sent to all shards at once on virtual threads and cost one round
+ * trip of the slowest shard. Ordered pages are merged from pages of every shard.
+ * <p>
+ * Changing the shard list moves ownership of some ids, see {@link #rebalance()}. Until it's done, urls which
+ * aren't found on their owner are looked up on all shards, and inserts check that the id isn't taken on any shard.
+ * Every instance sharing the shards must run with relocating set until the move is done, an instance without it
+ * misses moved urls and may insert ids taken on other shards.
+ * <p>
+ * Injected in place of other url repositories by its priority, which leaves @Primary to decorators such as
+ * {@link WriteBehindUrlRepository}
+ */
+@Priority(0)
+public class ShardedUrlRepository implements UrlRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedUrlRepository.class);
+
+    private final List<String> names;
+    private final List<UrlRepository> shards;
+    private final ShardRing ring;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile boolean relocating;
+
+    /**
+     * @param shards       backing repositories by shard name, names place shards on the ring
+     * @param virtualNodes points per shard on the ring
+     * @param relocating   whether urls may be stored on shards other than their owners, e.g. after a shard has been
+     *                     added. Must be set on every instance sharing the shards until they are rebalanced
+     */
+    public ShardedUrlRepository(Map<String, ? extends UrlRepository> shards, int virtualNodes, boolean relocating) {
+        this.names = new ArrayList<>(shards.keySet());
+        this.shards = new ArrayList<>(shards.values());
+        this.ring = new ShardRing(names, virtualNodes);
+        this.relocating = relocating;
+    }
+
+    @Override
+    public Optional<Url> findById(String id) {
+        final Optional<Url> url = owner(id).findById(id);
+        if (url.isPresent() || !relocating) {
+            return url;
+        }
+
+        return shards.stream().map(shard -> shard.findById(id)).filter(Optional::isPresent).map(Optional::get)
+                .findFirst();
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return owner(id).existsById(id) || relocating && shards.stream().anyMatch(shard -> shard.existsById(id));
+    }
+
+    @Override
+    public List<Url> findByFingerprint(Long fingerprint) {
+        return fanOut(shards, shard -> shard.findByFingerprint(fingerprint));
+    }
+
+    @Override
+    public List<Url> findByFingerprintIn(Collection<Long> fingerprints) {
+        return fanOut(shards, shard -> shard.findByFingerprintIn(fingerprints));
+    }
+
+    @Override
+    public List<Url> findByIdIn(Collection<String> ids) {
+        if (relocating) {
+            return fanOut(shards, shard -> shard.findByIdIn(ids));
+        }
+
+        final Map<UrlRepository, List<String>> byOwner = groupByOwner(ids, Function.identity());
+        return fanOut(byOwner.keySet(), shard -> shard.findByIdIn(byOwner.get(shard)));
+    }
+
+    @Override
+    public List<UrlId> findIdsByIdIn(Collection<String> ids) {
+        if (relocating) {
+            return fanOut(shards, shard -> shard.findIdsByIdIn(ids));
+        }
+
+        final Map<UrlRepository, List<String>> byOwner = groupByOwner(ids, Function.identity());
+        return fanOut(byOwner.keySet(), shard -> shard.findIdsByIdIn(byOwner.get(shard)));
+    }
+
+    @Override
+    public List<UrlId> findIdsByExpiresAtBefore(Instant time, Pageable pageable) {
+        return fanOut(shards, shard -> shard.findIdsByExpiresAtBefore(time, pageable)).stream()
+                .limit(pageable.getPageSize()).collect(Collectors.toList());
+    }
+
+    /**
+     * Every shard returns up to a page of its urls, the page is the lowest ids of all of them
+     */
+    @Override
+    public List<Url> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable) {
+        return fanOut(shards, shard -> shard.findByIdGreaterThanOrderByIdAsc(id, pageable)).stream()
+                .sorted(Comparator.comparing(Url::getId)).limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Shards are read one after another
+     */
+    @Override
+    public Stream<Url> streamAllBy() {
+        return shards.stream().flatMap(UrlRepository::streamAllBy);
+    }
+
+    @Override
+    public Stream<UrlId> findIdsBy() {
+        return shards.stream().flatMap(UrlRepository::findIdsBy);
+    }
+
+    @Override
+    public <S extends Url> S save(S url) {
+        return owner(url.getId()).save(url);
+    }
+
+    /**
+     * While relocating, the id is also checked on other shards than its owner, which don't enforce its uniqueness
+     */
+    @Override
+    public <S extends Url> S insert(S url) {
+        final UrlRepository owner = owner(url.getId());
+        if (relocating && shards.stream().anyMatch(shard -> shard != owner && shard.existsById(url.getId()))) {
+            throw duplicate(url.getId());
+        }
+        return owner.insert(url);
+    }
+
+    /**
+     * Urls are inserted with one batch per shard. While relocating, nothing is inserted if some of the ids are
+     * stored on other shards than their owners
+     */
+    @Override
+    public <S extends Url> List<S> insert(Iterable<S> urls) {
+        final List<S> batch = new ArrayList<>();
+        urls.forEach(batch::add);
+
+        if (relocating) {
+            final List<String> ids = batch.stream().map(Url::getId).collect(Collectors.toList());
+            final Optional<UrlId> misplaced = fanOut(shards, shard -> shard.findIdsByIdIn(ids).stream()
+                    .filter(id -> owner(id.getId()) != shard).collect(Collectors.toList())).stream().findFirst();
+            if (misplaced.isPresent()) {
+                throw duplicate(misplaced.get().getId());
+            }
+        }
+
+        final Map<UrlRepository, List<S>> byOwner = groupByOwner(batch, Url::getId);
+        return fanOut(byOwner.keySet(), shard -> shard.insert(byOwner.get(shard)));
+    }
+
+    @Override
+    public void deleteById(String id) {
+        owner(id).deleteById(id);
+        if (relocating) {
+            shards.forEach(shard -> shard.deleteById(id));
+        }
+    }
+
+    @Override
+    public long deleteByIdInAndExpiresAtBefore(Collection<String> ids, Instant time) {
+        if (relocating) {
+            return fanOut(shards, shard -> List.of(shard.deleteByIdInAndExpiresAtBefore(ids, time))).stream()
+                    .mapToLong(Long::longValue).sum();
+        }
+
+        final Map<UrlRepository, List<String>> byOwner = groupByOwner(ids, Function.identity());
+        return fanOut(byOwner.keySet(), shard -> List.of(shard.deleteByIdInAndExpiresAtBefore(byOwner.get(shard),
+                time))).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public long estimatedCount() {
+        return shards.stream().mapToLong(UrlRepository::estimatedCount).sum();
+    }
+
+    /**
+     * Moves urls stored on other shards than their owners, which happens once the shard list changes. Urls are
+     * copied to the owner before they are removed from the old shard, so they can be found all the time. A url
+     * deleted while it's being moved may be moved back, so rebalancing is best run when there are no deletes.
+     * Relocating is turned off once it's over, also when it fails
+     *
+     * @return amount of moved urls
+     */
+    public long rebalance() {
+        relocating = true;
+        long moved = 0;
+
+        try {
+            for (int index = 0; index < shards.size(); index++) {
+                final UrlRepository shard = shards.get(index);
+                final int current = index;
+
+                // storage cursors tolerate removal of already read urls
+                try (Stream<Url> urls = shard.streamAllBy()) {
+                    final Iterator<Url> misplaced = urls.filter(url -> ring.shardOf(url.getId()) != current)
+                            .iterator();
+                    while (misplaced.hasNext()) {
+                        final Url url = misplaced.next();
+                        owner(url.getId()).save(url);
+                        shard.deleteById(url.getId());
+                        moved++;
+                    }
+                }
+                LOGGER.info("Shard {} is rebalanced, {} urls moved so far", names.get(index), moved);
+            }
+        } finally {
+            relocating = false;
+        }
+        return moved;
+    }
+
+    public boolean isRelocating() {
+        return relocating;
+    }
+
+    public void close() {
+        executor.shutdown();
+    }
+
+    UrlRepository owner(String id) {
+        return shards.get(ring.shardOf(id));
+    }
+
+    private static DuplicateKeyException duplicate(String id) {
+        return new DuplicateKeyException(String.format("Url with id=%s already exists", id));
+    }
+
+    private <T> Map<UrlRepository, List<T>> groupByOwner(Collection<T> values, Function<T, String> id) {
+        final Map<UrlRepository, List<T>> byOwner = new LinkedHashMap<>();
+        values.forEach(value -> byOwner.computeIfAbsent(owner(id.apply(value)), shard -> new ArrayList<>())
+                .add(value));
+        return byOwner;
+    }
+
+    /**
+     * Runs the query on every given shard concurrently
+     *
+     * @return concatenated results in the order of shards
+     */
+    private <T> List<T> fanOut(Collection<UrlRepository> targets, Function<UrlRepository, List<T>> query) {
+        if (targets.size() == 1) {
+            return query.apply(targets.iterator().next());
+        }
+
+        final List<Future<List<T>>> futures = targets.stream().map(shard -> executor.submit(() -> query.apply(shard)))
+                .collect(Collectors.toList());
+
+        final List<T> results = new ArrayList<>();
+        Throwable failure = null;
+        for (Future<List<T>> future : futures) {
+            try {
+                results.addAll(future.get());
+            } catch (ExecutionException e) {
+                failure = failure == null ? e.getCause() : failure;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for shards", e);
+            }
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("Shard query failed", failure);
+        }
+        return results;
+    }
+}
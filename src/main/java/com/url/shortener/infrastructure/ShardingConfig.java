@@ -0,0 +1,59 @@
+package com.url.shortener.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores urls in the collections listed by sharding.collections when sharding.enabled is set, see
+ * {@link ShardedUrlRepository}. The default url collection may be one of them, so a single collection can be turned
+ * into shards in place: with sharding.rebalance-on-startup urls are moved to their shards in background once the
+ * application has started, and are found while they are being moved. All instances must be started with it until
+ * the move is done
+ */
+@Configuration
+@Profile("!embedded")
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardingConfig.class);
+
+    /**
+     * Takes precedence over the Spring Data repository of the default url collection by its priority
+     */
+    @Bean
+    public ShardedUrlRepository shardedUrlRepository(MongoOperations mongoOperations, ShardingProperties properties) {
+        final Map<String, UrlRepository> shards = new LinkedHashMap<>();
+        properties.getCollections().forEach(collection ->
+                shards.put(collection, new MongoCollectionUrlRepository(mongoOperations, collection)));
+        return new ShardedUrlRepository(shards, properties.getVirtualNodes(), properties.isRebalanceOnStartup());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        final ShardedUrlRepository repository = event.getApplicationContext().getBean(ShardedUrlRepository.class);
+        if (!repository.isRelocating()) {
+            return;
+        }
+
+        final Thread thread = new Thread(() -> {
+            try {
+                LOGGER.info("Url shards are rebalanced, {} urls moved", repository.rebalance());
+            } catch (RuntimeException e) {
+                LOGGER.error("Url shard rebalancing failed, urls which weren't moved are found after a restart with " +
+                        "sharding.rebalance-on-startup", e);
+            }
+        }, "url-shard-rebalancer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,47 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties("sharding")
+public class ShardingProperties {
+    private boolean enabled;
+    private List<String> collections;
+    private int virtualNodes;
+    private boolean rebalanceOnStartup;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getCollections() {
+        return collections;
+    }
+
+    public void setCollections(List<String> collections) {
+        this.collections = collections;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public boolean isRebalanceOnStartup() {
+        return rebalanceOnStartup;
+    }
+
+    public void setRebalanceOnStartup(boolean rebalanceOnStartup) {
+        this.rebalanceOnStartup = rebalanceOnStartup;
+    }
+}
@@ -0,0 +1,45 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates random Base62 codes of requested length. Chars are taken directly from 6-bit chunks of random longs
+ * (chunks above 61 are rejected to keep distribution uniform), so one code of up to 10 chars usually costs a single
+ * call to the generator and no allocations besides the resulting string.
+ * <p>
+ * Random longs come from {@link ThreadLocalRandom}, which keeps its state in the thread itself, so it neither needs a
+ * ThreadLocal lookup nor builds a generator for every short-lived virtual thread
+ */
+@Component
+public class ShortCodeGenerator {
+
+    private static final int BITS_PER_CHAR = 6;
+    private static final int CHAR_MASK = (1 << BITS_PER_CHAR) - 1;
+
+    public String generate(int length) {
+        final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        final char[] chars = new char[length];
+
+        long bits = rnd.nextLong();
+        int available = Long.SIZE;
+
+        for (int i = 0; i < length; ) {
+            if (available < BITS_PER_CHAR) {
+                bits = rnd.nextLong();
+                available = Long.SIZE;
+            }
+
+            final int index = (int) (bits & CHAR_MASK);
+            bits >>>= BITS_PER_CHAR;
+            available -= BITS_PER_CHAR;
+
+            if (index < Base62Encoder.BASE) {
+                chars[i++] = Base62Encoder.ALPHABET[index];
+            }
+        }
+
+        return new String(chars);
+    }
+}
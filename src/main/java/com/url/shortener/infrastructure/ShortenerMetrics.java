@@ -0,0 +1,115 @@
+package com.url.shortener.infrastructure;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the hot paths. Meters are registered once, so recording is a single lock-free update without tag
+ * lookups. Percentiles and histograms of "shortener.*" timers are configured with management.metrics.distribution.*
+ * <p>
+ * Growing "shortener.id.collisions" means that the random id keyspace is getting saturated: each collision costs a
+ * storage round trip, and "shortener.id.exhausted" counts shortenings failed because every attempt collided
+ */
+@Component
+public class ShortenerMetrics {
+
+    private final Timer shorten;
+    private final Timer redirect;
+    private final Timer lookup;
+    private final Timer delete;
+    private final Counter collisions;
+    private final Counter exhausted;
+    private final Counter notFound;
+    private final Counter conflicts;
+    private final Counter expired;
+    private final Counter purged;
+    private final Timer invalidationLag;
+
+    @Autowired
+    public ShortenerMetrics(MeterRegistry meterRegistry) {
+        this.shorten = Timer.builder("shortener.shorten").description("Shortening of a single url or a batch")
+                .register(meterRegistry);
+        this.redirect = Timer.builder("shortener.redirect").description("Redirect including url lookup")
+                .register(meterRegistry);
+        this.lookup = Timer.builder("shortener.lookup").description("Url lookup by id through cache and storage")
+                .register(meterRegistry);
+        this.delete = Timer.builder("shortener.delete").description("Url deletion").register(meterRegistry);
+        this.collisions = Counter.builder("shortener.id.collisions")
+                .description("Generated ids which turned out to be taken").register(meterRegistry);
+        this.exhausted = Counter.builder("shortener.id.exhausted")
+                .description("Id generations failed after digest.random-max-attempts collisions")
+                .register(meterRegistry);
+        this.notFound = Counter.builder("shortener.not.found")
+                .description("Lookups of unknown ids, answered with 404").register(meterRegistry);
+        this.conflicts = Counter.builder("shortener.conflicts")
+                .description("Custom hashes already used by another url, answered with 409").register(meterRegistry);
+        this.expired = Counter.builder("shortener.expired")
+                .description("Lookups of expired urls, answered with 410").register(meterRegistry);
+        this.purged = Counter.builder("shortener.expired.purged")
+                .description("Expired urls deleted from the storage").register(meterRegistry);
+        this.invalidationLag = Timer.builder("shortener.invalidation.lag")
+                .description("Time from a url change on any instance until this instance has dropped its copies")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param startNanos value of {@link System#nanoTime()} when shortening has started
+     */
+    public void shortened(long startNanos) {
+        shorten.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void redirected(long startNanos) {
+        redirect.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lookedUp(long startNanos) {
+        lookup.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void deleted(long startNanos) {
+        delete.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void collisions(int count) {
+        if (count > 0) {
+            collisions.increment(count);
+        }
+    }
+
+    public void exhausted() {
+        exhausted.increment();
+    }
+
+    public void notFound() {
+        notFound.increment();
+    }
+
+    public void conflict() {
+        conflicts.increment();
+    }
+
+    public void expired() {
+        expired.increment();
+    }
+
+    public void purged(long count) {
+        if (count > 0) {
+            purged.increment(count);
+        }
+    }
+
+    /**
+     * @param changedAtMillis epoch millis of the change, 0 if unknown
+     */
+    public void invalidated(long changedAtMillis) {
+        if (changedAtMillis > 0) {
+            invalidationLag.record(Math.max(0, System.currentTimeMillis() - changedAtMillis), TimeUnit.MILLISECONDS);
+        }
+    }
+}
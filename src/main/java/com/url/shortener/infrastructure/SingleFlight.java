@@ -0,0 +1,64 @@
+package com.url.shortener.infrastructure;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller runs the call, callers arriving while it's in flight
+ * wait for it and get the same result or exception. Nothing is remembered once the call completes, so the next caller
+ * runs it again. Waiting parks the thread, which doesn't pin carriers of virtual threads
+ *
+ * @param <K> key of the call
+ * @param <V> result of the call
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @param key  of the call
+     * @param call to be run unless another call with the same key is in flight
+     * @return result of the call, possibly run by another thread
+     */
+    public V execute(K key, Supplier<V> call) {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> inFlight = calls.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            final V result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return amount of calls in flight
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    private V await(CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
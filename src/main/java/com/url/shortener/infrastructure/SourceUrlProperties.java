@@ -0,0 +1,47 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties("source-url")
+public class SourceUrlProperties {
+    private List<String> allowedSchemes;
+    private List<String> allowedHosts;
+    private List<String> deniedHosts;
+    private boolean normalize;
+
+    public List<String> getAllowedSchemes() {
+        return allowedSchemes;
+    }
+
+    public void setAllowedSchemes(List<String> allowedSchemes) {
+        this.allowedSchemes = allowedSchemes;
+    }
+
+    public List<String> getAllowedHosts() {
+        return allowedHosts;
+    }
+
+    public void setAllowedHosts(List<String> allowedHosts) {
+        this.allowedHosts = allowedHosts;
+    }
+
+    public List<String> getDeniedHosts() {
+        return deniedHosts;
+    }
+
+    public void setDeniedHosts(List<String> deniedHosts) {
+        this.deniedHosts = deniedHosts;
+    }
+
+    public boolean isNormalize() {
+        return normalize;
+    }
+
+    public void setNormalize(boolean normalize) {
+        this.normalize = normalize;
+    }
+}
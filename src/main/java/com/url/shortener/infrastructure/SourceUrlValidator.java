@@ -0,0 +1,278 @@
+package com.url.shortener.infrastructure;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.validator.routines.DomainValidator;
+import org.apache.commons.validator.routines.UrlValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Validates and normalizes source urls. Plain http(s) urls with a domain name, which is what almost every request
+ * has, are checked by a single scan without regular expressions; a url the scan accepts is also accepted by
+ * commons-validator. Everything else is left to a shared commons-validator {@link UrlValidator}.
+ * <p>
+ * Schemes are limited by source-url.allowed-schemes, hosts by source-url.allowed-hosts and source-url.denied-hosts,
+ * where a host also covers its subdomains. With source-url.normalize scheme and host are lower-cased, default ports
+ * are dropped and hex digits of percent-encoded chars are upper-cased, so equivalent urls get the same shortcut.
+ * Urls left to commons-validator are kept as they are
+ */
+@Component
+public class SourceUrlValidator {
+
+    private static final int MAX_DOMAIN_LENGTH = 253;
+    private static final int MAX_LABEL_LENGTH = 63;
+    private static final int MAX_PORT = 65535;
+    private static final boolean[] PATH_CHARS = new boolean[128];
+
+    static {
+        // path chars accepted by commons-validator
+        for (char c : "-_:@&=+,.!/~*'%$;()".toCharArray()) {
+            PATH_CHARS[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            PATH_CHARS[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            PATH_CHARS[c] = true;
+            PATH_CHARS[Character.toUpperCase(c)] = true;
+        }
+    }
+
+    private final Set<String> schemes;
+    private final Set<String> allowedHosts;
+    private final Set<String> deniedHosts;
+    private final boolean normalize;
+    private final UrlValidator validator;
+    private final DomainValidator domainValidator = DomainValidator.getInstance();
+
+    @Autowired
+    public SourceUrlValidator(SourceUrlProperties properties) {
+        this.schemes = lowerCase(properties.getAllowedSchemes());
+        this.allowedHosts = lowerCase(properties.getAllowedHosts());
+        this.deniedHosts = lowerCase(properties.getDeniedHosts());
+        this.normalize = properties.isNormalize();
+        this.validator = new UrlValidator(schemes.toArray(new String[0]));
+    }
+
+    public boolean isValid(String sourceUrl) {
+        return normalize(sourceUrl) != null;
+    }
+
+    /**
+     * @return source url in normal form, as is if normalization is disabled, null if the url isn't valid or isn't
+     * allowed
+     */
+    public String normalize(String sourceUrl) {
+        if (sourceUrl == null) {
+            return null;
+        }
+
+        String result = scan(sourceUrl);
+        if (result == null) {
+            if (!validator.isValid(sourceUrl)) {
+                return null;
+            }
+            result = sourceUrl;
+        }
+
+        final String host = host(result);
+        if (matches(deniedHosts, host) || !allowedHosts.isEmpty() && !matches(allowedHosts, host)) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * @return normalized url, null if it's not a plain http(s) url which can be validated without commons-validator
+     */
+    private String scan(String url) {
+        final int schemeEnd = url.indexOf("://");
+        final String scheme = schemeEnd < 0 ? null : url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        final int defaultPort = "http".equals(scheme) ? 80 : "https".equals(scheme) ? 443 : -1;
+        if (defaultPort < 0 || !schemes.contains(scheme)) {
+            return null;
+        }
+
+        // host: at least two labels of letters, digits and inner hyphens, and a known top level domain
+        final int hostStart = schemeEnd + 3;
+        int labelStart = hostStart;
+        int i = hostStart;
+        for (; i < url.length(); i++) {
+            final char c = url.charAt(i);
+            if (c == '.') {
+                if (!isLabel(url, labelStart, i)) {
+                    return null;
+                }
+                labelStart = i + 1;
+            } else if (!isAlphanumeric(c) && c != '-') {
+                break;
+            }
+        }
+        final int hostEnd = i;
+        if (labelStart == hostStart || hostEnd - hostStart > MAX_DOMAIN_LENGTH || !isLabel(url, labelStart, hostEnd)
+                || !domainValidator.isValidTld(url.substring(labelStart, hostEnd))) {
+            return null;
+        }
+
+        int port = -1;
+        if (i < url.length() && url.charAt(i) == ':') {
+            final int portStart = ++i;
+            port = 0;
+            for (; i < url.length() && url.charAt(i) >= '0' && url.charAt(i) <= '9'; i++) {
+                port = port * 10 + url.charAt(i) - '0';
+                if (port > MAX_PORT) {
+                    return null;
+                }
+            }
+            if (i == portStart || i - portStart > 5) {
+                return null;
+            }
+        }
+
+        final int pathStart = i;
+        for (; i < url.length() && url.charAt(i) != '?' && url.charAt(i) != '#'; i++) {
+            final char c = url.charAt(i);
+            if (c >= PATH_CHARS.length || !PATH_CHARS[c]) {
+                return null;
+            }
+        }
+        final String path = url.substring(pathStart, i);
+        if (!path.isEmpty() && (path.charAt(0) != '/' || path.contains("//") || path.contains(".."))) {
+            return null;
+        }
+
+        // query and fragment: printable ASCII
+        for (; i < url.length(); i++) {
+            final char c = url.charAt(i);
+            if (c <= ' ' || c > '~') {
+                return null;
+            }
+        }
+
+        return normalize ? normalForm(url, scheme, hostStart, hostEnd, port == defaultPort ? -1 : port, pathStart) :
+                url;
+    }
+
+    private static String normalForm(String url, String scheme, int hostStart, int hostEnd, int port, int pathStart) {
+        final boolean defaultPortDropped = port < 0 && hostEnd < pathStart;
+        if (url.startsWith(scheme) && !hasUpperCase(url, hostStart, hostEnd) && !defaultPortDropped
+                && !hasLowerCaseEscape(url, pathStart)) {
+            // urls are normal as a rule, so they are returned without copying
+            return url;
+        }
+
+        final StringBuilder normalized = new StringBuilder(url.length()).append(scheme).append("://")
+                .append(url.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT));
+        if (port >= 0) {
+            normalized.append(':').append(port);
+        }
+        int i = pathStart;
+        while (i < url.length()) {
+            if (url.charAt(i) == '%' && isEscape(url, i)) {
+                normalized.append('%').append(Character.toUpperCase(url.charAt(i + 1)))
+                        .append(Character.toUpperCase(url.charAt(i + 2)));
+                i += 3;
+            } else {
+                normalized.append(url.charAt(i++));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static boolean hasUpperCase(String url, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (url.charAt(i) >= 'A' && url.charAt(i) <= 'Z') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasLowerCaseEscape(String url, int start) {
+        for (int i = url.indexOf('%', start); i >= 0; i = url.indexOf('%', i + 1)) {
+            if (isEscape(url, i) && (url.charAt(i + 1) >= 'a' || url.charAt(i + 2) >= 'a')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if % at index is followed by two hex digits
+     */
+    private static boolean isEscape(String url, int index) {
+        return index + 2 < url.length() && isHex(url.charAt(index + 1)) && isHex(url.charAt(index + 2));
+    }
+
+    /**
+     * @return lower-cased host of a valid url, empty if it has no authority
+     */
+    static String host(String url) {
+        final int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) {
+            return "";
+        }
+
+        final int start = schemeEnd + 3;
+        int end = start;
+        while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0) {
+            end++;
+        }
+
+        String authority = url.substring(start, end);
+        authority = authority.substring(authority.lastIndexOf('@') + 1);
+        if (authority.startsWith("[")) {
+            return authority.substring(0, authority.indexOf(']') + 1).toLowerCase(Locale.ROOT);
+        }
+
+        final int portStart = authority.indexOf(':');
+        return StringUtils.removeEnd(portStart < 0 ? authority : authority.substring(0, portStart), ".")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return true if hosts contain host or any of its parent domains
+     */
+    private static boolean matches(Set<String> hosts, String host) {
+        String domain = host;
+        while (!hosts.isEmpty()) {
+            if (hosts.contains(domain)) {
+                return true;
+            }
+
+            final int dot = domain.indexOf('.');
+            if (dot < 0) {
+                return false;
+            }
+            domain = domain.substring(dot + 1);
+        }
+        return false;
+    }
+
+    private static boolean isLabel(String url, int start, int end) {
+        return end > start && end - start <= MAX_LABEL_LENGTH && url.charAt(start) != '-'
+                && url.charAt(end - 1) != '-';
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isHex(char c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private static Set<String> lowerCase(Collection<String> values) {
+        final Set<String> result = new HashSet<>();
+        if (values != null) {
+            values.stream().filter(StringUtils::isNotBlank).map(value -> value.trim().toLowerCase(Locale.ROOT))
+                    .forEach(result::add);
+        }
+        return result;
+    }
+}
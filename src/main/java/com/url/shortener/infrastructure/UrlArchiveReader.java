@@ -0,0 +1,207 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads urls from an archive written by {@link UrlArchiveWriter} one block at a time, so memory consumption doesn't
+ * depend on the amount of urls. Archives which are corrupted, truncated or exceed block limits are rejected with
+ * {@link UrlValidationException}; urls of blocks returned before are valid
+ */
+public class UrlArchiveReader {
+
+    private static final int MAX_BLOCK_BYTES = 64 * 1024 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(UrlArchiveWriter.BLOCK_HEADER_BYTES);
+    private final Inflater inflater = new Inflater();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer compressed = ByteBuffer.allocate(64 * 1024);
+    private byte[] raw = new byte[256 * 1024];
+    private long read;
+    private boolean finished;
+
+    public UrlArchiveReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+
+        final ByteBuffer start = ByteBuffer.allocate(Integer.BYTES + 1);
+        readFully(start);
+        if (start.getInt() != UrlArchiveWriter.MAGIC) {
+            throw corrupted("not an url archive");
+        }
+        final byte version = start.get();
+        if (version != UrlArchiveWriter.VERSION) {
+            throw corrupted(String.format("unsupported version %s", version));
+        }
+    }
+
+    /**
+     * @return urls of the next block, null after the last one
+     */
+    public List<Url> read() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        header.clear().limit(Integer.BYTES);
+        readFully(header);
+        final int count = header.getInt();
+        if (count == 0) {
+            final ByteBuffer end = ByteBuffer.allocate(Long.BYTES);
+            readFully(end);
+            if (end.getLong() != read) {
+                throw corrupted(String.format("%s urls read, end marker doesn't match", read));
+            }
+            finished = true;
+            inflater.end();
+            return null;
+        }
+
+        header.clear().position(Integer.BYTES);
+        readFully(header);
+        header.position(Integer.BYTES);
+        final int rawLength = header.getInt();
+        final int compressedLength = header.getInt();
+        final int checksum = header.getInt();
+        if (count < 0 || count > UrlArchiveWriter.BLOCK_URLS || rawLength < 0 || rawLength > MAX_BLOCK_BYTES
+                || compressedLength < 0 || compressedLength > MAX_BLOCK_BYTES) {
+            throw corrupted("invalid block header");
+        }
+
+        if (compressed.capacity() < compressedLength) {
+            compressed = ByteBuffer.allocate(compressedLength);
+        }
+        compressed.clear().limit(compressedLength);
+        readFully(compressed);
+        inflate(rawLength, checksum);
+
+        final List<Url> urls = decode(count, ByteBuffer.wrap(raw, 0, rawLength));
+        read += count;
+        return urls;
+    }
+
+    public long getRead() {
+        return read;
+    }
+
+    private void inflate(int rawLength, int checksum) {
+        if (raw.length < rawLength) {
+            raw = Arrays.copyOf(raw, rawLength);
+        }
+
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressed.limit());
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                final int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != rawLength || !inflater.finished()) {
+                throw corrupted("block length doesn't match");
+            }
+        } catch (DataFormatException e) {
+            throw corrupted(e.getMessage());
+        }
+
+        crc.reset();
+        crc.update(raw, 0, rawLength);
+        if ((int) crc.getValue() != checksum) {
+            throw corrupted("block checksum doesn't match");
+        }
+    }
+
+    private List<Url> decode(int count, ByteBuffer block) {
+        try {
+            final String[] ids = new String[count];
+            for (int i = 0; i < count; i++) {
+                final long header = readVarLong(block);
+                final int length = Math.toIntExact(header >>> 1);
+                if ((header & 1) != 0) {
+                    if (length > UrlArchiveWriter.MAX_PACKED_ID_LENGTH) {
+                        throw corrupted("invalid packed id");
+                    }
+                    ids[i] = Base62Encoder.encode(readVarLong(block), length);
+                } else {
+                    if (length > block.remaining()) {
+                        throw corrupted("invalid id length");
+                    }
+                    ids[i] = new String(raw, block.position(), length, StandardCharsets.UTF_8);
+                    block.position(block.position() + length);
+                }
+            }
+
+            final List<Url> urls = new ArrayList<>(count);
+            byte[] previous = new byte[0];
+            for (int i = 0; i < count; i++) {
+                final int shared = Math.toIntExact(readVarLong(block));
+                final int rest = Math.toIntExact(readVarLong(block));
+                if (shared > previous.length || rest > block.remaining()) {
+                    throw corrupted("invalid source url length");
+                }
+                final byte[] bytes = Arrays.copyOf(previous, shared + rest);
+                block.get(bytes, shared, rest);
+                urls.add(new Url(ids[i], new String(bytes, StandardCharsets.UTF_8)));
+                previous = bytes;
+            }
+
+            final byte[] flags = new byte[count];
+            block.get(flags);
+            for (int i = 0; i < count; i++) {
+                if ((flags[i] & UrlArchiveWriter.HAS_FINGERPRINT) != 0) {
+                    urls.get(i).setFingerprint(block.getLong());
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                if ((flags[i] & UrlArchiveWriter.HAS_EXPIRY) != 0) {
+                    final long zigzag = readVarLong(block);
+                    urls.get(i).setExpiresAt(Instant.ofEpochMilli(zigzag >>> 1 ^ -(zigzag & 1)));
+                }
+            }
+            return urls;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | ArithmeticException e) {
+            throw corrupted("invalid block contents");
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw corrupted("unexpected end of archive");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varlong is too long");
+    }
+
+    private static UrlValidationException corrupted(String reason) {
+        return new UrlValidationException(String.format("Invalid url archive: %s", reason));
+    }
+}
@@ -0,0 +1,199 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes urls to a channel in a compact binary archive, read back by {@link UrlArchiveReader}. Urls are buffered in
+ * blocks of {@link #BLOCK_URLS}, so memory consumption doesn't depend on the amount of urls.
+ * <p>
+ * Archive starts with magic int "URLA" and version byte, followed by blocks and an end marker. Each block is a header
+ * of url count, raw length, compressed length and CRC32 of raw bytes (4 bytes each), followed by raw bytes compressed
+ * with Deflate. Raw bytes hold columns of the block's urls sorted by source url:
+ * <ul>
+ *     <li>ids: varint of length &lt;&lt; 1 | packed flag, then ids of Base62 chars up to 10 chars long as varlong
+ *     number and other ids as UTF-8 bytes</li>
+ *     <li>source urls front-coded: varint of bytes shared with the previous url, varint length of the rest and the
+ *     rest of UTF-8 bytes</li>
+ *     <li>flags byte of each url: 1 if it has a fingerprint, 2 if it expires</li>
+ *     <li>fingerprints of flagged urls, 8 bytes each</li>
+ *     <li>expiry epoch millis of flagged urls as zigzag varlongs</li>
+ * </ul>
+ * End marker is a zero url count followed by the total amount of urls (8 bytes), so truncated archives are detected
+ */
+public class UrlArchiveWriter implements Closeable {
+
+    static final int MAGIC = 0x55524C41;
+    static final byte VERSION = 1;
+    static final int BLOCK_URLS = 4096;
+    static final int BLOCK_HEADER_BYTES = 4 * Integer.BYTES;
+    static final int MAX_PACKED_ID_LENGTH = 10;
+    static final byte HAS_FINGERPRINT = 1;
+    static final byte HAS_EXPIRY = 2;
+
+    private final WritableByteChannel channel;
+    private final List<Url> block = new ArrayList<>(BLOCK_URLS);
+    private final RawBytes raw = new RawBytes();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private byte[] compressed = new byte[64 * 1024];
+    private long written;
+
+    public UrlArchiveWriter(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+
+        final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1);
+        header.putInt(MAGIC).put(VERSION).flip();
+        writeFully(header);
+    }
+
+    public void write(Url url) throws IOException {
+        block.add(url);
+        if (block.size() == BLOCK_URLS) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the last block and the end marker. The channel is left open
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+
+            final ByteBuffer end = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+            end.putInt(0).putLong(written).flip();
+            writeFully(end);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    private void writeBlock() throws IOException {
+        if (block.isEmpty()) {
+            return;
+        }
+
+        block.sort(Comparator.comparing(Url::getSourceUrl));
+        encode();
+
+        crc.reset();
+        crc.update(raw.bytes(), 0, raw.size());
+        deflater.reset();
+        deflater.setInput(raw.bytes(), 0, raw.size());
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        header.putInt(block.size()).putInt(raw.size()).putInt(length).putInt((int) crc.getValue()).flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(compressed, 0, length));
+
+        written += block.size();
+        block.clear();
+    }
+
+    private void encode() {
+        raw.reset();
+
+        for (Url url : block) {
+            final String id = url.getId();
+            final long packed = id.length() <= MAX_PACKED_ID_LENGTH ? Base62Encoder.decode(id) : -1;
+            if (packed >= 0) {
+                raw.writeVarLong((long) id.length() << 1 | 1);
+                raw.writeVarLong(packed);
+            } else {
+                final byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                raw.writeVarLong((long) bytes.length << 1);
+                raw.write(bytes, 0, bytes.length);
+            }
+        }
+
+        byte[] previous = new byte[0];
+        for (Url url : block) {
+            final byte[] bytes = url.getSourceUrl().getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            while (shared < previous.length && shared < bytes.length && previous[shared] == bytes[shared]) {
+                shared++;
+            }
+            raw.writeVarLong(shared);
+            raw.writeVarLong(bytes.length - shared);
+            raw.write(bytes, shared, bytes.length - shared);
+            previous = bytes;
+        }
+
+        for (Url url : block) {
+            raw.write((url.getFingerprint() != null ? HAS_FINGERPRINT : 0)
+                    | (url.getExpiresAt() != null ? HAS_EXPIRY : 0));
+        }
+        for (Url url : block) {
+            if (url.getFingerprint() != null) {
+                raw.writeLong(url.getFingerprint());
+            }
+        }
+        for (Url url : block) {
+            if (url.getExpiresAt() != null) {
+                final long millis = url.getExpiresAt().toEpochMilli();
+                raw.writeVarLong(millis << 1 ^ millis >> 63);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Growable buffer of raw block bytes, reused for all blocks
+     */
+    private static final class RawBytes extends ByteArrayOutputStream {
+
+        RawBytes() {
+            super(256 * 1024);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+
+        void writeVarLong(long value) {
+            long remainder = value;
+            while ((remainder & ~0x7FL) != 0) {
+                write((int) (remainder & 0x7F) | 0x80);
+                remainder >>>= 7;
+            }
+            write((int) remainder);
+        }
+
+        void writeLong(long value) {
+            for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+                write((int) (value >>> shift));
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.url.shortener.infrastructure;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded in-memory cache of urls keyed by their id. Evicts by size and by time since the entry has been written, so
+ * the hot set of redirects is served without a round trip to the storage.
+ * <p>
+ * Urls are loaded outside of the cache, so a load may read a url just before it's deleted and put it back after the
+ * invalidation. Invalidations bump a generation of the id, which loads compare before and after caching, see
+ * {@link #generation(String)}.
+ * <p>
+ * Hit, miss and eviction counters are exported as "cache.*" metrics with tag cache=urls
+ */
+@Component
+public class UrlCache {
+
+    static final String CACHE_NAME = "urls";
+
+    /**
+     * Generations are kept per stripe of ids rather than per id, a collision only costs a needless reload
+     */
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Cache<String, Url> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong allGeneration = new AtomicLong();
+
+    @Autowired
+    public UrlCache(UrlCacheProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite().toNanos(), TimeUnit.NANOSECONDS)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * @return cached url, null on cache miss
+     */
+    public Url getIfPresent(String id) {
+        return cache.getIfPresent(id);
+    }
+
+    public void put(Url url) {
+        cache.put(url.getId(), url);
+    }
+
+    /**
+     * @return ids of up to limit entries, most likely to be retained first, which is the most frequently used ones
+     */
+    public List<String> hottestIds(int limit) {
+        return cache.policy().eviction().map(eviction -> new ArrayList<>(eviction.hottest(limit).keySet()))
+                .orElseGet(ArrayList::new);
+    }
+
+    /**
+     * @return value which changes whenever the url with given id is invalidated. A url read from the storage before
+     * the generation changed must not stay in this cache or in {@link RedirectTable}
+     */
+    public long generation(String id) {
+        return allGeneration.get() + generations.get(stripe(id));
+    }
+
+    public void invalidate(String id) {
+        generations.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        allGeneration.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private static int stripe(String id) {
+        return (id.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+}
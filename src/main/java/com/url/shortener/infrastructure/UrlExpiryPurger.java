@@ -0,0 +1,79 @@
+package com.url.shortener.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes expired urls from the storage, so their ids can be generated again. Every url-expiry.purge-interval up to
+ * url-expiry.purge-batch-size expired urls are looked up through the expiry index and deleted with a single query,
+ * which bounds the load a large backlog of expired urls puts on the storage. Expired urls are answered with 410 until
+ * they are purged, so the purge may lag behind. Purges of several instances may overlap, the delete only removes
+ * urls which are still expired. Click totals of purged urls are deleted as well, so a regenerated id starts without
+ * clicks. Purged urls are exported as "shortener.expired.purged" metric
+ */
+@Component
+public class UrlExpiryPurger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UrlExpiryPurger.class);
+
+    private final UrlRepository repository;
+    private final UrlExpiryProperties properties;
+    private final UrlCache cache;
+    private final InvalidationBus invalidationBus;
+    private final ShortenerMetrics metrics;
+    private final ClickAnalytics clickAnalytics;
+
+    @Autowired
+    public UrlExpiryPurger(UrlRepository repository, UrlExpiryProperties properties, UrlCache cache,
+                           InvalidationBus invalidationBus, ShortenerMetrics metrics, ClickAnalytics clickAnalytics) {
+        this.repository = repository;
+        this.properties = properties;
+        this.cache = cache;
+        this.invalidationBus = invalidationBus;
+        this.metrics = metrics;
+        this.clickAnalytics = clickAnalytics;
+    }
+
+    @Scheduled(fixedDelayString = "${url-expiry.purge-interval}")
+    public void purge() {
+        try {
+            purge(Instant.now());
+        } catch (DataAccessException e) {
+            LOGGER.warn("Expired url purge failed, will be retried", e);
+        }
+    }
+
+    /**
+     * Purges one batch of urls expired before given time
+     *
+     * @return amount of deleted urls
+     */
+    long purge(Instant time) {
+        final List<String> ids = repository.findIdsByExpiresAtBefore(time,
+                PageRequest.of(0, properties.getPurgeBatchSize())).stream().map(UrlId::getId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        final long deleted = repository.deleteByIdInAndExpiresAtBefore(ids, time);
+        ids.forEach(id -> {
+            cache.invalidate(id);
+            invalidationBus.publish(UrlInvalidation.deleted(id));
+        });
+        clickAnalytics.delete(ids);
+        metrics.purged(deleted);
+
+        LOGGER.debug("{} expired urls purged", deleted);
+        return deleted;
+    }
+}
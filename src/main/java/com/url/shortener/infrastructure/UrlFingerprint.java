@@ -0,0 +1,32 @@
+package com.url.shortener.infrastructure;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Fixed-size fingerprint of a source url: first 64 bits of SHA-256 of the url. Urls are expected in the normal form
+ * of {@link SourceUrlValidator#normalize(String)}, so equivalent urls share fingerprint. Fingerprint is indexed
+ * instead of the url itself, which keeps the index small regardless of url length. Different urls may share
+ * fingerprint, so candidates found by fingerprint must be compared by source url
+ */
+public final class UrlFingerprint {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by JVM", e);
+        }
+    });
+
+    private UrlFingerprint() {
+    }
+
+    public static long of(String sourceUrl) {
+        final MessageDigest digest = SHA_256.get();
+        final byte[] hash = digest.digest(sourceUrl.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(hash).getLong();
+    }
+}
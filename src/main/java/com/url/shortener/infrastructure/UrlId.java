@@ -0,0 +1,8 @@
+package com.url.shortener.infrastructure;
+
+/**
+ * Projection of {@link com.url.shortener.Url} which fetches nothing but the id
+ */
+public interface UrlId {
+    String getId();
+}
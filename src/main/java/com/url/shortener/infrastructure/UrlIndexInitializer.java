@@ -0,0 +1,132 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates fingerprint and expiry indexes of the url collection, and of url shards when sharding is enabled, once
+ * application has started and backfills fingerprints of urls in the url collection which were stored before
+ * fingerprints were introduced. Backfill runs in background in batches of url-index.backfill-batch-size; until it's
+ * done, older urls are not found by source url and may get a second shortcut. Source urls of backfilled urls are
+ * rewritten in the normal form of {@link SourceUrlValidator}, as new urls are looked up by it; urls it rejects are
+ * fingerprinted as they are and aren't matched
+ */
+@Component
+@Profile("!embedded")
+public class UrlIndexInitializer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UrlIndexInitializer.class);
+
+    static final String FINGERPRINT_FIELD = "fingerprint";
+    static final String EXPIRES_AT_FIELD = "expiresAt";
+    private static final String SOURCE_URL_FIELD = "sourceUrl";
+    private static final String ID_FIELD = "_id";
+
+    private final MongoOperations mongoOperations;
+    private final UrlIndexProperties properties;
+    private final ShardingProperties shardingProperties;
+    private final SourceUrlValidator sourceUrlValidator;
+
+    @Autowired
+    public UrlIndexInitializer(MongoOperations mongoOperations, UrlIndexProperties properties,
+                               ShardingProperties shardingProperties, SourceUrlValidator sourceUrlValidator) {
+        this.mongoOperations = mongoOperations;
+        this.properties = properties;
+        this.shardingProperties = shardingProperties;
+        this.sourceUrlValidator = sourceUrlValidator;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        final Thread thread = new Thread(this::initialize, "url-index-initializer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void initialize() {
+        try {
+            final Index fingerprintIndex = new Index().on(FINGERPRINT_FIELD, Sort.Direction.ASC)
+                    .named(FINGERPRINT_FIELD);
+            // only expiring urls are indexed, so the purge doesn't scan the others
+            final Index expiresAtIndex = new Index().on(EXPIRES_AT_FIELD, Sort.Direction.ASC).sparse()
+                    .named(EXPIRES_AT_FIELD);
+            mongoOperations.indexOps(Url.class).ensureIndex(fingerprintIndex);
+            mongoOperations.indexOps(Url.class).ensureIndex(expiresAtIndex);
+            if (shardingProperties.isEnabled()) {
+                shardingProperties.getCollections().forEach(collection -> {
+                    mongoOperations.indexOps(collection).ensureIndex(fingerprintIndex);
+                    mongoOperations.indexOps(collection).ensureIndex(expiresAtIndex);
+                });
+            }
+
+            final long backfilled = backfillFingerprints();
+            LOGGER.info("Url indexes are ready, {} fingerprints backfilled", backfilled);
+        } catch (DataAccessException e) {
+            LOGGER.error("Url index initialization failed", e);
+        }
+    }
+
+    private long backfillFingerprints() {
+        final String collection = mongoOperations.getCollectionName(Url.class);
+        long total = 0;
+
+        List<Document> batch;
+        do {
+            // missing field is indexed as null, so this query is served by the fingerprint index
+            final Query query = Query.query(Criteria.where(FINGERPRINT_FIELD).is(null))
+                    .limit(properties.getBackfillBatchSize());
+            query.fields().include(SOURCE_URL_FIELD);
+
+            batch = mongoOperations.find(query, Document.class, collection);
+            if (!batch.isEmpty()) {
+                final BulkOperations operations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                        collection);
+                batch.forEach(document -> operations.updateOne(
+                        Query.query(Criteria.where(ID_FIELD).is(document.get(ID_FIELD))),
+                        backfill(document.getString(SOURCE_URL_FIELD))));
+                operations.execute();
+
+                total += batch.size();
+            }
+        }
+        while (!batch.isEmpty());
+
+        return total;
+    }
+
+    /**
+     * Urls without source url get zero fingerprint, so they are not selected by the backfill query again
+     */
+    private Update backfill(String sourceUrl) {
+        if (sourceUrl == null) {
+            return Update.update(FINGERPRINT_FIELD, 0L);
+        }
+
+        final String normalized = sourceUrlValidator.normalize(sourceUrl);
+        if (normalized == null) {
+            return Update.update(FINGERPRINT_FIELD, UrlFingerprint.of(sourceUrl));
+        }
+        return Update.update(FINGERPRINT_FIELD, UrlFingerprint.of(normalized)).set(SOURCE_URL_FIELD, normalized);
+    }
+}
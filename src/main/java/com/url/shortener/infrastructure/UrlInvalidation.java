@@ -0,0 +1,51 @@
+package com.url.shortener.infrastructure;
+
+/**
+ * Change of a stored url which makes copies held by application instances stale
+ */
+public class UrlInvalidation {
+
+    public enum Kind {
+        CREATED,
+        CHANGED,
+        DELETED,
+        /**
+         * Changes may have been missed, all copies are stale
+         */
+        ALL
+    }
+
+    private final Kind kind;
+    private final String id;
+    private final long timestamp;
+
+    /**
+     * @param id        of the url, null for {@link Kind#ALL}
+     * @param timestamp epoch millis when the change has been made, 0 if unknown
+     */
+    public UrlInvalidation(Kind kind, String id, long timestamp) {
+        this.kind = kind;
+        this.id = id;
+        this.timestamp = timestamp;
+    }
+
+    public static UrlInvalidation created(String id) {
+        return new UrlInvalidation(Kind.CREATED, id, System.currentTimeMillis());
+    }
+
+    public static UrlInvalidation deleted(String id) {
+        return new UrlInvalidation(Kind.DELETED, id, System.currentTimeMillis());
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,75 @@
+package com.url.shortener.infrastructure;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drops copies of urls changed on any instance, as delivered by {@link InvalidationBus}. Changed and deleted urls are
+ * evicted from {@link UrlCache} and {@link RedirectTable}, ids of created urls are added to {@link LookupFilter}, so
+ * urls shortened by other instances aren't rejected until the next rebuild. Invalidations of everything reload the
+ * redirect table and rebuild the lookup filter on a thread of their own, as both scan the whole collection; requests
+ * arriving meanwhile are coalesced into one more reload. Time from the change until it's handled is exported as
+ * "shortener.invalidation.lag" metric
+ */
+@Component
+public class UrlInvalidator {
+
+    private final UrlCache cache;
+    private final RedirectTable redirectTable;
+    private final LookupFilter lookupFilter;
+    private final ShortenerMetrics metrics;
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "url-invalidator-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+
+    @Autowired
+    public UrlInvalidator(InvalidationBus bus, UrlCache cache, RedirectTable redirectTable, LookupFilter lookupFilter,
+                          ShortenerMetrics metrics) {
+        this.cache = cache;
+        this.redirectTable = redirectTable;
+        this.lookupFilter = lookupFilter;
+        this.metrics = metrics;
+
+        bus.subscribe(this::invalidate);
+    }
+
+    void invalidate(UrlInvalidation invalidation) {
+        switch (invalidation.getKind()) {
+            case CREATED:
+                lookupFilter.put(invalidation.getId());
+                break;
+            case CHANGED:
+            case DELETED:
+                cache.invalidate(invalidation.getId());
+                redirectTable.remove(invalidation.getId());
+                break;
+            default:
+                cache.invalidateAll();
+                if (reloadQueued.compareAndSet(false, true)) {
+                    reloader.execute(this::reload);
+                }
+        }
+
+        metrics.invalidated(invalidation.getTimestamp());
+    }
+
+    @PreDestroy
+    public void close() {
+        reloader.shutdownNow();
+    }
+
+    private void reload() {
+        // cleared first, so invalidations arriving during the scan get a reload of their own
+        reloadQueued.set(false);
+        redirectTable.reload();
+        lookupFilter.rebuild();
+    }
+}
@@ -0,0 +1,266 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Preallocated memory-mapped file holding url records of {@link EmbeddedUrlRepository} one after another. Record
+ * layout is
+ * <pre>
+ * int length | int crc32 | byte type | byte flags | long fingerprint | short id length | id | int url length | url
+ * [| long expires at]
+ * </pre>
+ * with strings in UTF-8, expiry in epoch millis present for expiring urls only and checksum of everything after it.
+ * Length is written after the rest of the record, so a record torn by a crash has zero length, or fails the checksum
+ * if pages reached the disk out of order, and the segment ends before it.
+ * <p>
+ * Records are appended by one thread at a time and may be read concurrently by others
+ */
+class UrlLogSegment {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final byte HAS_FINGERPRINT = 1;
+    private static final byte HAS_EXPIRY = 2;
+
+    private static final int LENGTH_OFFSET = 0;
+    private static final int CRC_OFFSET = 4;
+    private static final int TYPE_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 9;
+    private static final int FINGERPRINT_OFFSET = 10;
+    private static final int ID_LENGTH_OFFSET = 18;
+    private static final int ID_OFFSET = 20;
+    static final int HEADER_BYTES = TYPE_OFFSET;
+    private static final int MIN_RECORD_BYTES = ID_OFFSET + Integer.BYTES;
+
+    private final Path path;
+    private final int number;
+    private final MappedByteBuffer buffer;
+    private volatile int end;
+
+    private UrlLogSegment(Path path, int number, MappedByteBuffer buffer) {
+        this.path = path;
+        this.number = number;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps the file, creating it with given size if it doesn't exist. Call {@link #recover(RecordVisitor)} before
+     * appending to an existing file
+     */
+    static UrlLogSegment open(Path path, int number, int size) {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() == 0) {
+                file.setLength(size);
+            }
+            return new UrlLogSegment(path, number, file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    file.length()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open " + path, e);
+        }
+    }
+
+    static byte[] put(Url url) {
+        return body(PUT, url.getId(), url.getFingerprint(), url.getSourceUrl(), url.getExpiresAt());
+    }
+
+    static byte[] delete(String id) {
+        return body(DELETE, id, null, null, null);
+    }
+
+    /**
+     * @return offset of the appended record, -1 if it doesn't fit
+     */
+    int append(byte[] body, boolean force) {
+        final int offset = end;
+        final int length = HEADER_BYTES + body.length;
+        if (length > buffer.capacity() - offset) {
+            return -1;
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        buffer.putInt(offset + CRC_OFFSET, (int) crc.getValue());
+        buffer.put(offset + TYPE_OFFSET, body);
+        buffer.putInt(offset + LENGTH_OFFSET, length);
+        if (force) {
+            buffer.force(offset, length);
+        }
+
+        end = offset + length;
+        return offset;
+    }
+
+    /**
+     * Passes valid records to the visitor and positions the end of the segment after the last one
+     */
+    void recover(RecordVisitor visitor) {
+        int offset = 0;
+        while (offset <= buffer.capacity() - MIN_RECORD_BYTES) {
+            final int length = buffer.getInt(offset + LENGTH_OFFSET);
+            if (length < MIN_RECORD_BYTES || length > buffer.capacity() - offset || !checksumMatches(offset, length)) {
+                break;
+            }
+
+            visitor.visit(this, offset, length);
+            offset += length;
+        }
+        end = offset;
+    }
+
+    /**
+     * @return offsets of records appended so far, oldest first
+     */
+    IntStream offsets() {
+        final int last = end;
+        return IntStream.iterate(0, offset -> offset < last, offset -> offset + length(offset));
+    }
+
+    int length(int offset) {
+        return buffer.getInt(offset + LENGTH_OFFSET);
+    }
+
+    byte type(int offset) {
+        return buffer.get(offset + TYPE_OFFSET);
+    }
+
+    Long fingerprint(int offset) {
+        return (buffer.get(offset + FLAGS_OFFSET) & HAS_FINGERPRINT) != 0 ?
+                buffer.getLong(offset + FINGERPRINT_OFFSET) : null;
+    }
+
+    /**
+     * @return expiry of the url in epoch millis, null if it never expires
+     */
+    Long expiresAt(int offset) {
+        if ((buffer.get(offset + FLAGS_OFFSET) & HAS_EXPIRY) == 0) {
+            return null;
+        }
+
+        final int urlLengthAt = urlLengthAt(offset);
+        return buffer.getLong(urlLengthAt + Integer.BYTES + buffer.getInt(urlLengthAt));
+    }
+
+    String id(int offset) {
+        return string(offset + ID_LENGTH_OFFSET, Short.BYTES, buffer.getShort(offset + ID_LENGTH_OFFSET));
+    }
+
+    /**
+     * Compares without decoding the stored id
+     */
+    boolean hasId(int offset, byte[] id) {
+        if (buffer.getShort(offset + ID_LENGTH_OFFSET) != id.length) {
+            return false;
+        }
+
+        for (int i = 0; i < id.length; i++) {
+            if (buffer.get(offset + ID_OFFSET + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Url url(int offset) {
+        final int urlLengthAt = urlLengthAt(offset);
+        final Url url = new Url(id(offset), string(urlLengthAt, Integer.BYTES, buffer.getInt(urlLengthAt)));
+        url.setFingerprint(fingerprint(offset));
+        final Long expiresAt = expiresAt(offset);
+        url.setExpiresAt(expiresAt == null ? null : Instant.ofEpochMilli(expiresAt));
+        return url;
+    }
+
+    private int urlLengthAt(int offset) {
+        return offset + ID_OFFSET + buffer.getShort(offset + ID_LENGTH_OFFSET);
+    }
+
+    /**
+     * @return copy of the record body, as accepted by {@link #append(byte[], boolean)}
+     */
+    byte[] body(int offset) {
+        final byte[] body = new byte[length(offset) - HEADER_BYTES];
+        buffer.get(offset + TYPE_OFFSET, body);
+        return body;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    int getNumber() {
+        return number;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Deletes the file. Readers which still hold this segment keep reading the mapping until it's garbage collected
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't delete " + path, e);
+        }
+    }
+
+    private boolean checksumMatches(int offset, int length) {
+        final ByteBuffer body = buffer.duplicate();
+        body.position(offset + TYPE_OFFSET).limit(offset + length);
+
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue() == buffer.getInt(offset + CRC_OFFSET);
+    }
+
+    private String string(int lengthAt, int lengthBytes, int length) {
+        final byte[] bytes = new byte[length];
+        buffer.get(lengthAt + lengthBytes, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] body(byte type, String id, Long fingerprint, String sourceUrl, Instant expiresAt) {
+        final byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        final byte[] urlBytes = sourceUrl == null ? new byte[0] : sourceUrl.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > Short.MAX_VALUE) {
+            throw new UrlValidationException("Url id is too long");
+        }
+
+        final ByteBuffer body = ByteBuffer.allocate(MIN_RECORD_BYTES - HEADER_BYTES + idBytes.length +
+                urlBytes.length + (expiresAt == null ? 0 : Long.BYTES));
+        body.put(type);
+        body.put((byte) ((fingerprint == null ? 0 : HAS_FINGERPRINT) | (expiresAt == null ? 0 : HAS_EXPIRY)));
+        body.putLong(fingerprint == null ? 0 : fingerprint);
+        body.putShort((short) idBytes.length);
+        body.put(idBytes);
+        body.putInt(urlBytes.length);
+        body.put(urlBytes);
+        if (expiresAt != null) {
+            body.putLong(expiresAt.toEpochMilli());
+        }
+        return body.array();
+    }
+
+    interface RecordVisitor {
+        void visit(UrlLogSegment segment, int offset, int length);
+    }
+}
@@ -1,8 +1,98 @@
 package com.url.shortener.infrastructure;
 
 import com.url.shortener.Url;
-import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.domain.Pageable;
 
-public interface UrlRepository extends MongoRepository<Url, String> {
-    Url findBySourceUrl(String sourceUrl);
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Storage of urls. Method names and semantics follow Spring Data conventions, so {@link MongoUrlRepository} gets
+ * them implemented by the framework, while other implementations (e.g. {@link EmbeddedUrlRepository}) don't have to
+ * implement the whole MongoRepository contract
+ */
+public interface UrlRepository {
+
+    Optional<Url> findById(String id);
+
+    boolean existsById(String id);
+
+    /**
+     * @param fingerprint of source url, see {@link UrlFingerprint}
+     * @return urls with given fingerprint, their source urls may differ
+     */
+    List<Url> findByFingerprint(Long fingerprint);
+
+    List<Url> findByFingerprintIn(Collection<Long> fingerprints);
+
+    List<Url> findByIdIn(Collection<String> ids);
+
+    List<UrlId> findIdsByIdIn(Collection<String> ids);
+
+    /**
+     * @param time     exclusive upper bound of expiry
+     * @param pageable page size, only the first page is expected to be requested
+     * @return ids of urls which have expired before given time, urls without expiry are not returned
+     */
+    List<UrlId> findIdsByExpiresAtBefore(Instant time, Pageable pageable);
+
+    /**
+     * Keyset pagination over urls ordered by id
+     *
+     * @param id       exclusive lower bound of ids, empty string to start from the first url
+     * @param pageable page size, only the first page is expected to be requested
+     * @return urls with ids greater than given one, ordered by id
+     */
+    List<Url> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    /**
+     * Streams all urls using database cursor. Stream must be closed after use
+     *
+     * @return all stored urls in no particular order
+     */
+    Stream<Url> streamAllBy();
+
+    /**
+     * Streams ids of all urls using database cursor. Stream must be closed after use
+     *
+     * @return ids of all stored urls
+     */
+    Stream<UrlId> findIdsBy();
+
+    /**
+     * Inserts or replaces url
+     */
+    <S extends Url> S save(S url);
+
+    /**
+     * Inserts new url
+     *
+     * @throws org.springframework.dao.DuplicateKeyException if url with the same id already exists
+     */
+    <S extends Url> S insert(S url);
+
+    /**
+     * Inserts new urls with a single batch
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if some of urls already exist. Urls preceding
+     *                                                                  the duplicate may have been inserted
+     */
+    <S extends Url> List<S> insert(Iterable<S> urls);
+
+    void deleteById(String id);
+
+    /**
+     * Deletes urls with given ids unless they were replaced by urls expiring later
+     *
+     * @return amount of deleted urls
+     */
+    long deleteByIdInAndExpiresAtBefore(Collection<String> ids, Instant time);
+
+    /**
+     * @return amount of stored urls, may be slightly off but doesn't scan the storage
+     */
+    long estimatedCount();
 }
@@ -0,0 +1,43 @@
+package com.url.shortener.infrastructure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Puts {@link WriteBehindUrlRepository} in front of the url storage when write-behind.enabled is set. The storage is
+ * {@link ShardedUrlRepository} with sharding, {@link EmbeddedUrlRepository} with "embedded" profile and the Spring
+ * Data repository of the default url collection otherwise. Pending urls are written in background once the
+ * application has started
+ */
+@Configuration
+@ConditionalOnProperty(name = "write-behind.enabled", havingValue = "true")
+public class WriteBehindConfig {
+
+    @Bean
+    @Primary
+    public WriteBehindUrlRepository writeBehindUrlRepository(ObjectProvider<ShardedUrlRepository> shardedRepository,
+                                                             ObjectProvider<EmbeddedUrlRepository> embeddedRepository,
+                                                             ObjectProvider<MongoUrlRepository> mongoRepository,
+                                                             WriteBehindProperties properties,
+                                                             MeterRegistry meterRegistry) {
+        UrlRepository storage = shardedRepository.getIfAvailable();
+        if (storage == null) {
+            storage = embeddedRepository.getIfAvailable();
+        }
+        if (storage == null) {
+            storage = mongoRepository.getObject();
+        }
+        return new WriteBehindUrlRepository(storage, properties, meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        event.getApplicationContext().getBean(WriteBehindUrlRepository.class).start();
+    }
+}
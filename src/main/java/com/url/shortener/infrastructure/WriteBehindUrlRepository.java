@@ -0,0 +1,517 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link UrlRepository} which acknowledges saves and inserts once they are appended to a local journal and leaves
+ * writing them to the storage to a background thread, enabled by write-behind.enabled. Written urls are kept in a
+ * pending table, which reads consult before the storage, and are persisted in batches of write-behind.batch-size
+ * every write-behind.flush-interval or as soon as a batch is full.
+ * <p>
+ * Journal files are {@link UrlLogSegment}s of write-behind.journal-size in write-behind.directory. On every flush
+ * the current file is sealed and a new one is started; sealed files are deleted once all their urls are stored. On
+ * startup remaining files are replayed into the pending table, so acknowledged urls survive a crash of the process,
+ * and with write-behind.force-writes a power loss as well. Failed flushes keep urls pending for the next attempt.
+ * <p>
+ * Inserts check ids against the pending table only, ids taken in the storage are expected to be sorted out by
+ * {@link IdGenerator}. A url whose id turns out to be taken by another live url when it's flushed can't be stored,
+ * it's logged and counted by "shortener.write.behind.lost" metric; segment ids are never taken this way. Saves
+ * replace expired urls only, which is how {@link com.url.shortener.ShortenerService} uses them. Pending urls and
+ * flush latency are exported as "shortener.write.behind.pending" and "shortener.write.behind.flush" metrics
+ */
+public class WriteBehindUrlRepository implements UrlRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindUrlRepository.class);
+
+    private static final Pattern JOURNAL_FILE = Pattern.compile("journal-(\\d+)\\.log");
+
+    private final UrlRepository storage;
+    private final WriteBehindProperties properties;
+    private final Path directory;
+    private final int journalSize;
+    private final Map<String, Url> pending = new ConcurrentHashMap<>();
+    /**
+     * Guards the pending table and journal files
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * Held while urls are written to the storage, so deletes can't be overtaken by a flush of the deleted url
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final List<UrlLogSegment> sealed = new ArrayList<>();
+    private final AtomicLong lost = new AtomicLong();
+    private final Timer flushTimer;
+
+    private UrlLogSegment journal;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public WriteBehindUrlRepository(UrlRepository storage, WriteBehindProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.storage = storage;
+        this.properties = properties;
+        this.directory = Paths.get(properties.getDirectory());
+        this.journalSize = Math.toIntExact(properties.getJournalSize().toBytes());
+        this.journal = recover();
+
+        Gauge.builder("shortener.write.behind.pending", pending, Map::size)
+                .description("Urls acknowledged but not stored yet").register(meterRegistry);
+        FunctionCounter.builder("shortener.write.behind.lost", lost, AtomicLong::get)
+                .description("Pending urls whose ids were taken by other urls in the storage").register(meterRegistry);
+        this.flushTimer = Timer.builder("shortener.write.behind.flush")
+                .description("Writing of pending urls to the storage").register(meterRegistry);
+    }
+
+    @Override
+    public Optional<Url> findById(String id) {
+        final Url url = pending.get(id);
+        return url != null ? Optional.of(url) : storage.findById(id);
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return pending.containsKey(id) || storage.existsById(id);
+    }
+
+    @Override
+    public List<Url> findByFingerprint(Long fingerprint) {
+        return merge(pending(url -> fingerprint.equals(url.getFingerprint())), storage.findByFingerprint(fingerprint));
+    }
+
+    @Override
+    public List<Url> findByFingerprintIn(Collection<Long> fingerprints) {
+        return merge(pending(url -> fingerprints.contains(url.getFingerprint())),
+                storage.findByFingerprintIn(fingerprints));
+    }
+
+    @Override
+    public List<Url> findByIdIn(Collection<String> ids) {
+        final List<Url> found = new ArrayList<>();
+        final List<String> rest = new ArrayList<>();
+        ids.forEach(id -> {
+            final Url url = pending.get(id);
+            if (url != null) {
+                found.add(url);
+            } else {
+                rest.add(id);
+            }
+        });
+
+        if (!rest.isEmpty()) {
+            found.addAll(storage.findByIdIn(rest));
+        }
+        return found;
+    }
+
+    @Override
+    public List<UrlId> findIdsByIdIn(Collection<String> ids) {
+        final List<UrlId> found = ids.stream().filter(pending::containsKey).map(id -> (UrlId) () -> id)
+                .collect(Collectors.toList());
+        final List<String> rest = ids.stream().filter(id -> !pending.containsKey(id)).collect(Collectors.toList());
+
+        if (!rest.isEmpty()) {
+            found.addAll(storage.findIdsByIdIn(rest));
+        }
+        return found;
+    }
+
+    /**
+     * Pending urls are not purged before they are stored
+     */
+    @Override
+    public List<UrlId> findIdsByExpiresAtBefore(Instant time, Pageable pageable) {
+        return storage.findIdsByExpiresAtBefore(time, pageable);
+    }
+
+    @Override
+    public List<Url> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable) {
+        final List<Url> page = merge(pending(url -> url.getId().compareTo(id) > 0),
+                storage.findByIdGreaterThanOrderByIdAsc(id, pageable));
+        return page.stream().sorted(Comparator.comparing(Url::getId)).limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Pending urls come first. Urls stored while the stream is read may be returned twice
+     */
+    @Override
+    public Stream<Url> streamAllBy() {
+        final Map<String, Url> snapshot = new HashMap<>(pending);
+        return Stream.concat(snapshot.values().stream(),
+                storage.streamAllBy().filter(url -> !snapshot.containsKey(url.getId())));
+    }
+
+    @Override
+    public Stream<UrlId> findIdsBy() {
+        final Set<String> snapshot = new HashSet<>(pending.keySet());
+        return Stream.concat(snapshot.stream().map(id -> (UrlId) () -> id),
+                storage.findIdsBy().filter(id -> !snapshot.contains(id.getId())));
+    }
+
+    @Override
+    public <S extends Url> S save(S url) {
+        writeLock.lock();
+        try {
+            enqueue(url);
+            return url;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public <S extends Url> S insert(S url) {
+        writeLock.lock();
+        try {
+            if (pending.containsKey(url.getId())) {
+                throw duplicate(url.getId());
+            }
+
+            enqueue(url);
+            return url;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Inserts nothing if some of urls are already pending
+     */
+    @Override
+    public <S extends Url> List<S> insert(Iterable<S> urls) {
+        final List<S> inserted = new ArrayList<>();
+        urls.forEach(inserted::add);
+
+        writeLock.lock();
+        try {
+            final Set<String> ids = new HashSet<>();
+            for (S url : inserted) {
+                if (!ids.add(url.getId()) || pending.containsKey(url.getId())) {
+                    throw duplicate(url.getId());
+                }
+            }
+
+            inserted.forEach(this::enqueue);
+            return inserted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes synchronously, waiting for a flush in progress
+     */
+    @Override
+    public void deleteById(String id) {
+        flushLock.lock();
+        try {
+            unqueue(id);
+            storage.deleteById(id);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public long deleteByIdInAndExpiresAtBefore(Collection<String> ids, Instant time) {
+        flushLock.lock();
+        try {
+            long deleted = 0;
+            for (String id : ids) {
+                final Url url = pending.get(id);
+                if (url != null && url.getExpiresAt() != null && url.getExpiresAt().isBefore(time)) {
+                    unqueue(id);
+                    deleted++;
+                }
+            }
+            return deleted + storage.deleteByIdInAndExpiresAtBefore(ids, time);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public long estimatedCount() {
+        return storage.estimatedCount() + pending.size();
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        flusher = new Thread(this::flushContinuously, "url-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Stops the background writer and makes a last attempt to store pending urls, which are otherwise replayed from
+     * the journal on the next start
+     */
+    public synchronized void close() throws InterruptedException {
+        if (running) {
+            running = false;
+            LockSupport.unpark(flusher);
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        writeLock.lock();
+        try {
+            journal.force();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes urls pending at the moment of the call to the storage
+     *
+     * @return false if the storage has failed, urls stay pending then
+     */
+    boolean flush() {
+        flushLock.lock();
+        try {
+            final List<Url> batch;
+            final List<UrlLogSegment> flushed;
+            writeLock.lock();
+            try {
+                batch = new ArrayList<>(pending.values());
+                if (journal.getEnd() > 0) {
+                    // urls of the batch are in sealed files only, urls written from now on in the new one
+                    rotate(journalSize);
+                }
+                // files sealed while the batch is stored hold urls which are not in it
+                flushed = new ArrayList<>(sealed);
+            } finally {
+                writeLock.unlock();
+            }
+
+            if (!batch.isEmpty()) {
+                final long start = System.nanoTime();
+                for (int from = 0; from < batch.size(); from += properties.getBatchSize()) {
+                    store(batch.subList(from, Math.min(from + properties.getBatchSize(), batch.size())));
+                }
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+
+            writeLock.lock();
+            try {
+                batch.forEach(url -> pending.remove(url.getId(), url));
+                flushed.forEach(UrlLogSegment::delete);
+                sealed.removeAll(flushed);
+            } finally {
+                writeLock.unlock();
+            }
+            return true;
+        } catch (DataAccessException e) {
+            LOGGER.warn("Pending urls can't be stored, {} urls wait for the next attempt", pending.size(), e);
+            return false;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushContinuously() {
+        final long interval = properties.getFlushInterval().toNanos();
+        boolean failing = false;
+
+        while (running) {
+            // woken up early by full batches unless the storage is failing
+            LockSupport.parkNanos(this, interval);
+            if (running && (!pending.isEmpty() || !sealed.isEmpty())) {
+                failing = !flush();
+            }
+            if (failing) {
+                LockSupport.parkNanos(this, interval);
+            }
+        }
+
+        flush();
+    }
+
+    /**
+     * Inserts urls with a single batch, falls back to one by one writes if some of ids are taken
+     */
+    private void store(List<Url> urls) {
+        try {
+            storage.insert(urls);
+        } catch (DataIntegrityViolationException e) {
+            urls.forEach(this::store);
+        }
+    }
+
+    private void store(Url url) {
+        try {
+            storage.insert(url);
+        } catch (DuplicateKeyException e) {
+            final Url stored = storage.findById(url.getId()).orElse(null);
+            if (stored != null && StringUtils.equals(stored.getSourceUrl(), url.getSourceUrl())) {
+                // stored by an earlier flush, which failed later or was interrupted by a crash
+                return;
+            }
+
+            if (stored == null || stored.isExpiredAt(Instant.now())) {
+                storage.save(url);
+            } else {
+                lost.incrementAndGet();
+                LOGGER.error("Url id={} for {} is lost, the id is taken by another url", url.getId(),
+                        url.getSourceUrl());
+            }
+        }
+    }
+
+    /**
+     * Must be called under the write lock
+     */
+    private void enqueue(Url url) {
+        append(UrlLogSegment.put(url));
+        pending.put(url.getId(), url);
+
+        if (pending.size() >= properties.getBatchSize() && flusher != null) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    private void unqueue(String id) {
+        writeLock.lock();
+        try {
+            if (pending.remove(id) != null) {
+                append(UrlLogSegment.delete(id));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void append(byte[] body) {
+        if (journal.append(body, properties.isForceWrites()) < 0) {
+            // a url larger than write-behind.journal-size gets a file of its own
+            rotate(Math.max(journalSize, UrlLogSegment.HEADER_BYTES + body.length));
+            journal.append(body, properties.isForceWrites());
+        }
+    }
+
+    /**
+     * Seals the current journal file and starts the next one of given size
+     */
+    private void rotate(int size) {
+        journal.force();
+        sealed.add(journal);
+        journal = journal(journal.getNumber() + 1, size);
+    }
+
+    /**
+     * Replays journal files left by the previous run into the pending table
+     *
+     * @return new journal file
+     */
+    private UrlLogSegment recover() {
+        try {
+            Files.createDirectories(directory);
+
+            final TreeMap<Integer, Path> files = new TreeMap<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "journal-*.log")) {
+                for (Path file : stream) {
+                    final Matcher matcher = JOURNAL_FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        files.put(Integer.parseInt(matcher.group(1)), file);
+                    }
+                }
+            }
+
+            files.forEach((number, file) -> {
+                final UrlLogSegment segment = UrlLogSegment.open(file, number, journalSize);
+                segment.recover((recovered, offset, length) -> {
+                    if (recovered.type(offset) == UrlLogSegment.PUT) {
+                        pending.put(recovered.id(offset), recovered.url(offset));
+                    } else {
+                        pending.remove(recovered.id(offset));
+                    }
+                });
+                sealed.add(segment);
+            });
+
+            if (!pending.isEmpty()) {
+                LOGGER.info("{} pending urls recovered from {} journal files in {}", pending.size(), files.size(),
+                        directory);
+            }
+            return journal(files.isEmpty() ? 0 : files.lastKey() + 1, journalSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open write-behind journal in " + directory, e);
+        }
+    }
+
+    private UrlLogSegment journal(int number, int size) {
+        return UrlLogSegment.open(directory.resolve(String.format("journal-%d.log", number)), number, size);
+    }
+
+    /**
+     * @return pending urls matching the filter
+     */
+    private List<Url> pending(Predicate<Url> filter) {
+        return pending.values().stream().filter(filter).collect(Collectors.toList());
+    }
+
+    /**
+     * @return pending urls followed by stored urls which are not replaced by pending ones
+     */
+    private static List<Url> merge(List<Url> pending, List<Url> stored) {
+        if (pending.isEmpty()) {
+            return stored;
+        }
+
+        final Set<String> ids = pending.stream().map(Url::getId).collect(Collectors.toSet());
+        final List<Url> merged = new ArrayList<>(pending);
+        stored.stream().filter(url -> !ids.contains(url.getId())).forEach(merged::add);
+        return merged;
+    }
+
+    private static DuplicateKeyException duplicate(String id) {
+        return new DuplicateKeyException(String.format("Url with id=%s already exists", id));
+    }
+}
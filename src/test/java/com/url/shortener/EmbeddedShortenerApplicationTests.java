@@ -0,0 +1,35 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.EmbeddedUrlRepository;
+import com.url.shortener.infrastructure.UrlRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test", "embedded"})
+@SpringBootTest(properties = "embedded-storage.directory=target/embedded-storage-${random.uuid}")
+public class EmbeddedShortenerApplicationTests {
+
+    @Autowired
+    private UrlRepository repository;
+
+    @Autowired
+    private ShortenerService service;
+
+    @Test
+    public void shorten_EmbeddedProfile_StoredWithoutMongo() {
+        assertThat(repository).isInstanceOf(EmbeddedUrlRepository.class);
+
+        final Url url = service.shorten("http://example.com", null);
+
+        assertEquals("http://example.com", service.getUrlByID(url.getId()).getSourceUrl());
+        assertEquals(url.getId(), service.shorten("http://example.com", null).getId());
+    }
+}
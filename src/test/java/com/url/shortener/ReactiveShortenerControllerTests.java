@@ -0,0 +1,143 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.UrlValidationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test", "reactive"})
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class ReactiveShortenerControllerTests {
+
+    @MockBean
+    private ReactiveShortenerService service;
+
+    @MockBean
+    private ClickAnalytics clickAnalytics;
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Test
+    public void shortenUrl_InvalidUrl_BadRequest() {
+        final String sourceUrl = "!foo";
+        Mockito.when(service.shorten(sourceUrl, null)).thenReturn(Mono.error(new UrlValidationException("invalid")));
+
+        webClient.post().uri("/shorten-url").bodyValue(sourceUrl).exchange().expectStatus().isBadRequest();
+        verify(service).shorten(sourceUrl, null);
+    }
+
+    @Test
+    public void shortenUrl_RandomHash_Success() {
+        final String sourceUrl = "http://google.com";
+        Mockito.when(service.shorten(sourceUrl, null)).thenReturn(Mono.just(new Url("1", sourceUrl)));
+
+        webClient.post().uri("/shorten-url").bodyValue(sourceUrl).exchange().expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("{\"id\":\"1\",\"sourceUrl\":\"http://google.com\",\"shortcut\":null}");
+    }
+
+    @Test
+    public void shortenUrl_Ttl_BadRequest() {
+        webClient.post().uri("/shorten-url?ttl=1d").bodyValue("http://google.com").exchange().expectStatus()
+                .isBadRequest();
+        Mockito.verifyNoInteractions(service);
+    }
+
+    @Test
+    public void shortenUrls_EmptyBatch_BadRequest() {
+        webClient.post().uri("/shorten-urls").contentType(MediaType.APPLICATION_JSON).bodyValue("[]").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getUrls_Success() {
+        Mockito.when(service.getAllUrls()).thenReturn(Flux.just(new Url("1", "http://foo.com/1"),
+                new Url("2", "http://foor.com/2")));
+
+        webClient.get().uri("/url").exchange().expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody(String.class)
+                .isEqualTo("[{\"id\":\"1\",\"sourceUrl\":\"http://foo.com/1\",\"shortcut\":null}," +
+                        "{\"id\":\"2\",\"sourceUrl\":\"http://foor.com/2\",\"shortcut\":null}]");
+    }
+
+    @Test
+    public void getUrls_Empty_EmptyArray() {
+        Mockito.when(service.getAllUrls()).thenReturn(Flux.empty());
+
+        webClient.get().uri("/url").exchange().expectStatus().isOk().expectBody(String.class).isEqualTo("[]");
+    }
+
+    @Test
+    public void getUrls_Ndjson_StreamedLineByLine() {
+        Mockito.when(service.getAllUrls()).thenReturn(Flux.just(new Url("1", "http://foo.com/1"),
+                new Url("2", "http://foor.com/2")));
+
+        webClient.get().uri("/url").accept(MediaType.parseMediaType(ShortenerController.APPLICATION_NDJSON_VALUE))
+                .exchange().expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("{\"id\":\"1\",\"sourceUrl\":\"http://foo.com/1\",\"shortcut\":null}\n" +
+                        "{\"id\":\"2\",\"sourceUrl\":\"http://foor.com/2\",\"shortcut\":null}\n");
+    }
+
+    @Test
+    public void getUrls_PageLimitTooLarge_BadRequest() {
+        webClient.get().uri("/url?limit=100000").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getUrl_NotExists_NotFound() {
+        Mockito.when(service.getUrlByID(any())).thenReturn(Mono.empty());
+
+        webClient.get().uri("/url/1").exchange().expectStatus().isNotFound();
+        verify(service).getUrlByID("1");
+    }
+
+    @Test
+    public void redirect_Existing_Redirected() {
+        Mockito.when(service.getUrlByID("1")).thenReturn(Mono.just(new Url("1", "http://google.com")));
+
+        webClient.get().uri("/redirect/1").header("Referer", "https://news.example.com/item").exchange()
+                .expectStatus().isFound()
+                .expectHeader().valueEquals("Location", "http://google.com");
+        verify(clickAnalytics).record("1", "https://news.example.com/item");
+    }
+
+    @Test
+    public void getClickStats_Existing_StatsReturned() {
+        Mockito.when(service.getUrlByID("1")).thenReturn(Mono.just(new Url("1", "http://google.com")));
+        Mockito.when(clickAnalytics.getStats("1")).thenReturn(new ClickStats("1", 3, null,
+                Collections.singletonMap("news.example.com", 2L)));
+
+        webClient.get().uri("/url/1/clicks").exchange().expectStatus().isOk().expectBody(String.class)
+                .isEqualTo("{\"id\":\"1\",\"clicks\":3,\"lastClickAt\":null," +
+                        "\"referrers\":{\"news.example.com\":2}}");
+    }
+
+    @Test
+    public void deleteUrl_Success() {
+        Mockito.when(service.deleteUrl(any())).thenReturn(Mono.just(true));
+
+        webClient.delete().uri("/url/1").exchange().expectStatus().isOk();
+        verify(service).deleteUrl("1");
+    }
+}
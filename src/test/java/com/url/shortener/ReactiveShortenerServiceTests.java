@@ -0,0 +1,136 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickStore;
+import com.url.shortener.infrastructure.DigestProperties;
+import com.url.shortener.infrastructure.ReactiveMongoUrlRepository;
+import com.url.shortener.infrastructure.ReactiveUrlRepository;
+import com.url.shortener.infrastructure.UrlCache;
+import com.url.shortener.infrastructure.UrlConflictException;
+import com.url.shortener.infrastructure.UrlValidationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test", "reactive"})
+@SpringBootTest
+public class ReactiveShortenerServiceTests {
+
+    @MockBean(ReactiveMongoUrlRepository.class)
+    private ReactiveUrlRepository repository;
+
+    @MockBean
+    private ClickStore clickStore;
+
+    @Autowired
+    private ReactiveShortenerService service;
+
+    @Autowired
+    private DigestProperties digestProperties;
+
+    @Autowired
+    private UrlCache cache;
+
+    @Before
+    public void setUp() {
+        cache.invalidateAll();
+    }
+
+    @Test
+    public void shorten_InvalidUrl_Error() {
+        StepVerifier.create(service.shorten("h ttp://&example.com", null))
+                .expectError(UrlValidationException.class).verify();
+    }
+
+    @Test
+    public void shorten_AlreadyShortened_ExistingReturned() {
+        final String sourceUrl = "http://foo.com";
+        Mockito.when(repository.findByFingerprint(anyLong())).thenReturn(Flux.just(new Url("other", "http://bar.com"),
+                new Url("existing", sourceUrl)));
+
+        StepVerifier.create(service.shorten(sourceUrl, null))
+                .expectNextMatches(url -> url.getId().equals("existing") &&
+                        url.getShortcut().equals(digestProperties.getPrefix() + "existing"))
+                .verifyComplete();
+        verify(repository, Mockito.never()).insert(any(Url.class));
+    }
+
+    @Test
+    public void shorten_GeneratedIdTaken_Regenerated() {
+        final AtomicInteger attempts = new AtomicInteger();
+        Mockito.when(repository.findByFingerprint(anyLong())).thenReturn(Flux.empty());
+        Mockito.when(repository.insert(any(Url.class))).thenAnswer(invocation -> Mono.defer(() ->
+                attempts.incrementAndGet() < 3 ? Mono.error(new DuplicateKeyException("taken")) :
+                        Mono.just(invocation.<Url>getArgument(0))));
+
+        StepVerifier.create(service.shorten("http://foo.com", null))
+                .expectNextMatches(url -> url.getSourceUrl().equals("http://foo.com") && url.getFingerprint() != null)
+                .verifyComplete();
+        verify(repository, times(3)).insert(any(Url.class));
+    }
+
+    @Test
+    public void shorten_CustomHashTakenByAnotherUrl_Conflict() {
+        Mockito.when(repository.findById("hash")).thenReturn(Mono.just(new Url("hash", "http://bar.com")));
+
+        StepVerifier.create(service.shorten("http://foo.com", "hash"))
+                .expectError(UrlConflictException.class).verify();
+        verify(repository, Mockito.never()).save(any(Url.class));
+    }
+
+    @Test
+    public void shortenAll_NewAndExisting_SingleInsert() {
+        Mockito.when(repository.findByFingerprintIn(any())).thenReturn(Flux.just(new Url("1", "http://foo.com")));
+        Mockito.when(repository.insert(Mockito.<Iterable<Url>>any())).thenAnswer(invocation ->
+                Flux.fromIterable(invocation.<Iterable<Url>>getArgument(0)));
+
+        StepVerifier.create(service.shortenAll(Arrays.asList(new ShortenRequest("http://foo.com", null),
+                new ShortenRequest("http://bar.com", null), new ShortenRequest("foo", null))))
+                .expectNextMatches(results -> results.size() == 3 &&
+                        results.get(0).getUrl().getId().equals("1") &&
+                        results.get(1).getStatus() == 200 && results.get(1).getUrl() != null &&
+                        results.get(2).getStatus() == 400)
+                .verifyComplete();
+        verify(repository, times(1)).insert(Mockito.<Iterable<Url>>any());
+    }
+
+    @Test
+    public void getUrlByID_Cached_RepositoryNotQueried() {
+        Mockito.when(repository.findById("1")).thenReturn(Mono.just(new Url("1", "http://foo.com")));
+
+        StepVerifier.create(service.getUrlByID("1")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(service.getUrlByID("1")).expectNextCount(1).verifyComplete();
+        verify(repository, times(1)).findById("1");
+    }
+
+    @Test
+    public void deleteUrl_Cached_Invalidated() {
+        Mockito.when(repository.findById("1")).thenReturn(Mono.just(new Url("1", "http://foo.com")));
+        Mockito.when(repository.deleteById("1")).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.getUrlByID("1")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(service.deleteUrl("1")).expectNext(true).verifyComplete();
+        StepVerifier.create(service.getUrlByID("1")).expectNextCount(1).verifyComplete();
+        verify(repository, times(2)).findById("1");
+        verify(clickStore).delete(Collections.singletonList("1"));
+    }
+}
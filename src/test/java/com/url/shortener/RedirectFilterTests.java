@@ -0,0 +1,134 @@
+package com.url.shortener;
+
+import com.url.shortener.infrastructure.ClickAnalytics;
+import com.url.shortener.infrastructure.RateLimitProperties;
+import com.url.shortener.infrastructure.RateLimiter;
+import com.url.shortener.infrastructure.RedirectPolicy;
+import com.url.shortener.infrastructure.RedirectProperties;
+import com.url.shortener.infrastructure.ShortenerMetrics;
+import com.url.shortener.infrastructure.UrlExpiredException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RedirectFilterTests {
+
+    private ShortenerService service;
+    private ClickAnalytics clickAnalytics;
+    private RedirectFilter filter;
+
+    @Before
+    public void setUp() {
+        final RedirectProperties properties = new RedirectProperties();
+        properties.setStatus(301);
+        properties.setCacheMaxAge(Duration.ofHours(1));
+        properties.setCachePublic(true);
+
+        final RateLimitProperties rateLimitProperties = new RateLimitProperties();
+        rateLimitProperties.setEnabled(true);
+        rateLimitProperties.setMaxClients(100);
+        rateLimitProperties.setIdleTimeout(Duration.ofMinutes(1));
+        rateLimitProperties.setRates(Collections.singletonMap(ShortenerController.REDIRECT_LIMIT, 1.0));
+        rateLimitProperties.setBursts(Collections.singletonMap(ShortenerController.REDIRECT_LIMIT, 3));
+
+        service = Mockito.mock(ShortenerService.class);
+        clickAnalytics = Mockito.mock(ClickAnalytics.class);
+        filter = new RedirectFilter(service, new RedirectPolicy(properties), clickAnalytics,
+                new ShortenerMetrics(new SimpleMeterRegistry()),
+                new RateLimiter(rateLimitProperties, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    public void doFilter_Existing_RedirectWrittenDirectly() throws Exception {
+        Mockito.when(service.getUrlByID("abc")).thenReturn(new Url("abc", "http://google.com"));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final MockFilterChain chain = new MockFilterChain();
+
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/redirect/abc");
+        request.addHeader("Referer", "https://news.example.com/item");
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(301);
+        assertThat(response.getHeader("Location")).isEqualTo("http://google.com");
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("public, max-age=3600");
+        assertThat(chain.getRequest()).isNull();
+        Mockito.verify(clickAnalytics).record("abc", "https://news.example.com/item");
+    }
+
+    @Test
+    public void doFilter_Unknown_NotFound() throws Exception {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/redirect/abc"), response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(chain.getRequest()).isNull();
+        Mockito.verifyNoInteractions(clickAnalytics);
+    }
+
+    @Test
+    public void doFilter_Expired_Gone() throws Exception {
+        Mockito.when(service.getUrlByID("abc")).thenThrow(new UrlExpiredException("Url id=abc has expired"));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/redirect/abc"), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(410);
+        Mockito.verifyNoInteractions(clickAnalytics);
+    }
+
+    @Test
+    public void doFilter_OverLimit_TooManyRequests() throws Exception {
+        Mockito.when(service.getUrlByID("abc")).thenReturn(new Url("abc", "http://google.com"));
+        for (int i = 0; i < 3; i++) {
+            final MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/redirect/abc"), response, new MockFilterChain());
+            assertThat(response.getStatus()).isEqualTo(301);
+        }
+
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/redirect/abc"), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+        Mockito.verify(service, Mockito.times(3)).getUrlByID("abc");
+    }
+
+    @Test
+    public void doFilter_OtherPath_PassedThrough() throws Exception {
+        final MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/url/abc"), new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        Mockito.verifyNoInteractions(service);
+    }
+
+    @Test
+    public void redirectId_ContextPath_IdExtracted() {
+        final MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/app/redirect/abc");
+        request.setContextPath("/app");
+
+        assertThat(RedirectFilter.redirectId(request)).isEqualTo("abc");
+    }
+
+    @Test
+    public void redirectId_NotRedirect_Null() {
+        assertThat(RedirectFilter.redirectId(new MockHttpServletRequest("POST", "/redirect/abc"))).isNull();
+        assertThat(RedirectFilter.redirectId(new MockHttpServletRequest("GET", "/redirect/"))).isNull();
+        assertThat(RedirectFilter.redirectId(new MockHttpServletRequest("GET", "/redirect/a/b"))).isNull();
+        assertThat(RedirectFilter.redirectId(new MockHttpServletRequest("GET", "/redirect/a%20b"))).isNull();
+        assertThat(RedirectFilter.redirectId(new MockHttpServletRequest("GET", "/url/abc"))).isNull();
+    }
+}
@@ -1,20 +1,28 @@
 package com.url.shortener;
 
+import com.url.shortener.infrastructure.ClickAnalytics;
 import com.url.shortener.infrastructure.UrlValidationException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -30,49 +38,143 @@ public class ShortenerControllerTests {
     @MockBean
     private ShortenerService service;
 
+    @MockBean
+    private ClickAnalytics clickAnalytics;
+
     @Autowired
     private MockMvc mockMvc;
 
     @Test
     public void shortenUrl_InvalidUrl_BadRequest() throws Exception {
         final String sourceUrl = "!foo";
-        Mockito.when(service.shorten(sourceUrl, null)).thenThrow(UrlValidationException.class);
+        Mockito.when(service.shorten(sourceUrl, null, null)).thenThrow(UrlValidationException.class);
         mockMvc.perform(post("/shorten-url").content(sourceUrl)).andDo(print()).andExpect(status().isBadRequest());
-        verify(service).shorten(sourceUrl, null);
+        verify(service).shorten(sourceUrl, null, null);
     }
 
     @Test
     public void shortenUrl_RandomHash_Success() throws Exception {
         final String sourceUrl = "http://google.com";
         final Url expected = new Url("1", sourceUrl);
-        Mockito.when(service.shorten(sourceUrl, null)).thenReturn(expected);
+        Mockito.when(service.shorten(sourceUrl, null, null)).thenReturn(expected);
 
         mockMvc.perform(post("/shorten-url").content(sourceUrl)).andDo(print()).andExpect(status().isOk()).
                 andExpect(content().string("{\"id\":\"1\",\"sourceUrl\":\"http://google.com\",\"shortcut\":null}"));
-        verify(service).shorten(sourceUrl, null);
+        verify(service).shorten(sourceUrl, null, null);
+    }
+
+    @Test
+    public void shortenUrl_Ttl_PassedAsDuration() throws Exception {
+        final String sourceUrl = "http://google.com";
+        Mockito.when(service.shorten(sourceUrl, null, Duration.ofDays(7))).thenReturn(new Url("1", sourceUrl));
+
+        mockMvc.perform(post("/shorten-url").content(sourceUrl).param("ttl", "7d")).andExpect(status().isOk());
+        verify(service).shorten(sourceUrl, null, Duration.ofDays(7));
+    }
+
+    @Test
+    public void shortenUrl_InvalidTtl_BadRequest() throws Exception {
+        mockMvc.perform(post("/shorten-url").content("http://google.com").param("ttl", "soon"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(service);
+    }
+
+    @Test
+    public void importUrls_Archive_ResultReturned() throws Exception {
+        Mockito.when(service.importUrls(any())).thenReturn(new ImportResult(10, 2));
+
+        mockMvc.perform(post("/url-archive").contentType(MediaType.APPLICATION_OCTET_STREAM).content(new byte[16]))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(10))
+                .andExpect(jsonPath("$.skipped").value(2));
     }
 
     @Test
     public void shortenUrl_CustomHash_Success() throws Exception {
         final String sourceUrl = "http://google.com";
         final String hash = "1";
-        Mockito.when(service.shorten(sourceUrl, hash)).thenReturn(new Url(hash, sourceUrl));
+        Mockito.when(service.shorten(sourceUrl, hash, null)).thenReturn(new Url(hash, sourceUrl));
 
         mockMvc.perform(post("/shorten-url").content(sourceUrl).param("custom-hash", hash)).andDo(print()).andExpect(status().isOk()).
                 andExpect(content().string("{\"id\":\"1\",\"sourceUrl\":\"http://google.com\",\"shortcut\":null}"));
-        verify(service).shorten(sourceUrl, hash);
+        verify(service).shorten(sourceUrl, hash, null);
+    }
+
+    @Test
+    public void shortenUrls_Json_ResultsReturned() throws Exception {
+        final ShortenRequest request = new ShortenRequest("http://google.com", null);
+        Mockito.when(service.shortenAll(any())).thenReturn(Collections.singletonList(
+                ShortenResult.success(request, new Url("1", "http://google.com"))));
+
+        mockMvc.perform(post("/shorten-urls").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"sourceUrl\":\"http://google.com\"}]")).andDo(print()).andExpect(status().isOk())
+                .andExpect(content().string("[{\"sourceUrl\":\"http://google.com\",\"customHash\":null," +
+                        "\"status\":200,\"url\":{\"id\":\"1\",\"sourceUrl\":\"http://google.com\"," +
+                        "\"shortcut\":null},\"error\":null}]"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shortenUrls_PlainTextLines_EachLineShortened() throws Exception {
+        Mockito.when(service.shortenAll(any())).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(post("/shorten-urls").contentType(MediaType.TEXT_PLAIN)
+                .content("http://google.com\r\nhttp://foo.com\n")).andDo(print()).andExpect(status().isOk());
+
+        final ArgumentCaptor<List<ShortenRequest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(service).shortenAll(captor.capture());
+        assertThat(captor.getValue()).extracting(ShortenRequest::getSourceUrl).containsExactly("http://google.com",
+                "http://foo.com");
+    }
+
+    @Test
+    public void shortenUrls_EmptyBatch_BadRequest() throws Exception {
+        mockMvc.perform(post("/shorten-urls").contentType(MediaType.APPLICATION_JSON).content("[]")).andDo(print())
+                .andExpect(status().isBadRequest());
     }
 
     @Test
     public void getUrls_Success() throws Exception {
         final List<Url> urls = Arrays.asList(new Url("1", "http://foo.com/1"),
                 new Url("2", "http://foor.com/2"));
-        Mockito.when(service.getUrls()).thenReturn(urls);
+        mockForEachUrl(urls);
 
-        mockMvc.perform(get("/url")).andDo(print()).andExpect(status().isOk()).
+        final MvcResult result = mockMvc.perform(get("/url")).andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk()).
+                andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)).
                 andExpect(content().string("[{\"id\":\"1\",\"sourceUrl\":\"http://foo.com/1\",\"shortcut\":null}," +
                         "{\"id\":\"2\",\"sourceUrl\":\"http://foor.com/2\",\"shortcut\":null}]"));
-        verify(service).getUrls();
+        verify(service).forEachUrl(any());
+    }
+
+    @Test
+    public void getUrls_Ndjson_StreamedLineByLine() throws Exception {
+        final List<Url> urls = Arrays.asList(new Url("1", "http://foo.com/1"),
+                new Url("2", "http://foor.com/2"));
+        mockForEachUrl(urls);
+
+        final MvcResult result = mockMvc.perform(get("/url").accept(ShortenerController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk()).
+                andExpect(content().string("{\"id\":\"1\",\"sourceUrl\":\"http://foo.com/1\",\"shortcut\":null}\n" +
+                        "{\"id\":\"2\",\"sourceUrl\":\"http://foor.com/2\",\"shortcut\":null}\n"));
+        verify(service).forEachUrl(any());
+    }
+
+    @Test
+    public void getUrls_Page_Success() throws Exception {
+        final List<Url> urls = Collections.singletonList(new Url("2", "http://foor.com/2"));
+        Mockito.when(service.getUrls("1", 1)).thenReturn(urls);
+
+        mockMvc.perform(get("/url").param("after", "1").param("limit", "1")).andDo(print())
+                .andExpect(status().isOk()).andExpect(content().string(
+                "[{\"id\":\"2\",\"sourceUrl\":\"http://foor.com/2\",\"shortcut\":null}]"));
+        verify(service).getUrls("1", 1);
+    }
+
+    @Test
+    public void getUrls_PageLimitTooLarge_BadRequest() throws Exception {
+        mockMvc.perform(get("/url").param("limit", "100000")).andDo(print()).andExpect(status().isBadRequest());
     }
 
     @Test
@@ -106,9 +208,28 @@ public class ShortenerControllerTests {
         final Url url = new Url("1", "http://google.com");
         Mockito.when(service.getUrlByID(url.getId())).thenReturn(url);
 
-        mockMvc.perform(get("/redirect/1")).andDo(print()).andExpect(status().isFound()).andExpect(header().string(
-                "Location", url.getSourceUrl())).andExpect(redirectedUrl(url.getSourceUrl()));
+        mockMvc.perform(get("/redirect/1").header("Referer", "https://news.example.com/item")).andDo(print())
+                .andExpect(status().isFound()).andExpect(header().string("Location", url.getSourceUrl()))
+                .andExpect(redirectedUrl(url.getSourceUrl()));
         verify(service).getUrlByID("1");
+        verify(clickAnalytics).record("1", "https://news.example.com/item");
+    }
+
+    @Test
+    public void getClickStats_Existing_StatsReturned() throws Exception {
+        Mockito.when(service.getUrlByID("1")).thenReturn(new Url("1", "http://google.com"));
+        Mockito.when(clickAnalytics.getStats("1")).thenReturn(new ClickStats("1", 3, null,
+                Collections.singletonMap("news.example.com", 2L)));
+
+        mockMvc.perform(get("/url/1/clicks")).andDo(print()).andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":\"1\",\"clicks\":3,\"lastClickAt\":null," +
+                        "\"referrers\":{\"news.example.com\":2}}"));
+    }
+
+    @Test
+    public void getClickStats_NonExisting_NotFound() throws Exception {
+        mockMvc.perform(get("/url/1/clicks")).andDo(print()).andExpect(status().isNotFound());
+        Mockito.verifyNoInteractions(clickAnalytics);
     }
 
     @Test
@@ -118,4 +239,12 @@ public class ShortenerControllerTests {
         mockMvc.perform(delete("/url/1")).andDo(print()).andExpect(status().isOk());
         verify(service).deleteUrl("1");
     }
+
+    @SuppressWarnings("unchecked")
+    private void mockForEachUrl(List<Url> urls) {
+        Mockito.doAnswer(invocation -> {
+            urls.forEach(invocation.getArgument(0));
+            return null;
+        }).when(service).forEachUrl(any(Consumer.class));
+    }
 }
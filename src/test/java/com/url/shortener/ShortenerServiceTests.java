@@ -1,31 +1,61 @@
 package com.url.shortener;
 
+import com.url.shortener.infrastructure.ClickStore;
 import com.url.shortener.infrastructure.DigestProperties;
+import com.url.shortener.infrastructure.InvalidationBus;
+import com.url.shortener.infrastructure.MongoUrlRepository;
+import com.url.shortener.infrastructure.UrlCache;
 import com.url.shortener.infrastructure.UrlConflictException;
+import com.url.shortener.infrastructure.UrlExpiredException;
+import com.url.shortener.infrastructure.UrlExpiryProperties;
+import com.url.shortener.infrastructure.UrlFingerprint;
+import com.url.shortener.infrastructure.UrlInvalidation;
 import com.url.shortener.infrastructure.UrlRepository;
 import com.url.shortener.infrastructure.UrlValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Captor;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @RunWith(SpringRunner.class)
@@ -33,18 +63,43 @@ import static org.mockito.Mockito.verify;
 @SpringBootTest
 public class ShortenerServiceTests {
 
-    @MockBean
+    private static final int THREADS = 8;
+
+    @MockBean(MongoUrlRepository.class)
     private UrlRepository repository;
 
+    @MockBean
+    private ClickStore clickStore;
+
+    @SpyBean
+    private InvalidationBus invalidationBus;
+
     @Captor
     private ArgumentCaptor<String> stringArgumentCaptor;
 
+    @Captor
+    private ArgumentCaptor<Iterable<Url>> urlsArgumentCaptor;
+
     @Autowired
     private ShortenerService service;
 
     @Autowired
     private DigestProperties digestProperties;
 
+    @Autowired
+    private UrlCache cache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UrlExpiryProperties expiryProperties;
+
+    @Before
+    public void setUp() {
+        cache.invalidateAll();
+    }
+
     @Test(expected = UrlValidationException.class)
     public void shorten_NullUrl_ExceptionIsThrown() {
         service.shorten(null, null);
@@ -71,11 +126,21 @@ public class ShortenerServiceTests {
         assertEquals(digestProperties.getPrefix() + customHash, url.getShortcut());
     }
 
+    @Test
+    public void shorten_CustomHash_CreationPublished() {
+        Mockito.when(repository.save(any(Url.class))).thenReturn(new Url("test-hash", "http://foo.com"));
+
+        service.shorten("http://foo.com", "test-hash");
+
+        verify(invalidationBus).publish(argThat(invalidation -> invalidation.getKind() ==
+                UrlInvalidation.Kind.CREATED && "test-hash".equals(invalidation.getId())));
+    }
+
     @Test
     public void shorten_RandomHash_Success() {
         final String sourceUrl = "http://foo.com";
 
-        Mockito.when(repository.save(any(Url.class))).thenAnswer((Answer<Url>) i -> i.getArgument(0));
+        Mockito.when(repository.insert(any(Url.class))).thenAnswer((Answer<Url>) i -> i.getArgument(0));
         final Url url = service.shorten(sourceUrl, null);
 
         assertNotNull(url);
@@ -84,18 +149,59 @@ public class ShortenerServiceTests {
         assertEquals(getExpectedShortcut(url.getId()), url.getShortcut());
     }
 
+    @Test
+    public void shorten_EquivalentUrl_StoredInNormalForm() {
+        Mockito.when(repository.insert(any(Url.class))).thenAnswer((Answer<Url>) i -> i.getArgument(0));
+        final Url url = service.shorten("HTTP://Foo.COM:80/bar", null);
+
+        assertEquals("http://foo.com/bar", url.getSourceUrl());
+        verify(repository).findByFingerprint(UrlFingerprint.of("http://foo.com/bar"));
+    }
+
+    @Test
+    public void shorten_RandomHashTakenConcurrently_Regenerated() {
+        final String sourceUrl = "http://foo.com";
+
+        final double collisions = meterRegistry.counter("shortener.id.collisions").count();
+        final long shortened = meterRegistry.timer("shortener.shorten").count();
+
+        Mockito.when(repository.insert(any(Url.class))).thenThrow(new DuplicateKeyException("taken"))
+                .thenAnswer((Answer<Url>) i -> i.getArgument(0));
+        final Url url = service.shorten(sourceUrl, null);
+
+        assertNotNull(url);
+        verify(repository, times(2)).insert(any(Url.class));
+        assertEquals(collisions + 1, meterRegistry.counter("shortener.id.collisions").count(), 0);
+        assertEquals(shortened + 1, meterRegistry.timer("shortener.shorten").count());
+    }
+
     @Test
     public void shorten_RandomHashAndAlreadyExists_ExistingUrlReturned(){
         final String sourceUrl = "http://foo.com";
         final Url expected = new Url("1", sourceUrl);
 
-        Mockito.when(repository.findBySourceUrl(sourceUrl)).thenReturn(expected);
+        Mockito.when(repository.findByFingerprint(UrlFingerprint.of(sourceUrl))).thenReturn(
+                Collections.singletonList(expected));
 
         final Url url = service.shorten(sourceUrl, null);
-        verify(repository).findBySourceUrl(sourceUrl);
+        verify(repository).findByFingerprint(UrlFingerprint.of(sourceUrl));
         assertSame(expected, url);
     }
 
+    @Test
+    public void shorten_RandomHashAndFingerprintCollision_NewUrlCreated() {
+        final String sourceUrl = "http://foo.com";
+        Mockito.when(repository.findByFingerprint(UrlFingerprint.of(sourceUrl))).thenReturn(
+                Collections.singletonList(new Url("1", "http://other.com")));
+        Mockito.when(repository.insert(any(Url.class))).thenAnswer((Answer<Url>) i -> i.getArgument(0));
+
+        final Url url = service.shorten(sourceUrl, null);
+
+        assertEquals(sourceUrl, url.getSourceUrl());
+        assertEquals(Long.valueOf(UrlFingerprint.of(sourceUrl)), url.getFingerprint());
+        verify(repository).insert(any(Url.class));
+    }
+
     @Test
     public void shorten_CustomHashAndAlreadyExists_ExistingUrlIsReturned(){
         final String sourceUrl = "http://foo.com";
@@ -120,12 +226,140 @@ public class ShortenerServiceTests {
     }
 
     @Test
-    public void getUrls_UrlsExist_ReturnedWithShortcut() {
+    public void shorten_Ttl_NewExpiringUrlCreated() {
+        final String sourceUrl = "http://foo.com";
+        Mockito.when(repository.findByFingerprint(UrlFingerprint.of(sourceUrl))).thenReturn(
+                Collections.singletonList(new Url("1", sourceUrl)));
+        Mockito.when(repository.insert(any(Url.class))).thenAnswer((Answer<Url>) i -> i.getArgument(0));
+
+        final Instant before = Instant.now();
+        final Url url = service.shorten(sourceUrl, null, Duration.ofDays(1));
+
+        assertThat(url.getId()).isNotEqualTo("1");
+        assertThat(url.getExpiresAt()).isBetween(before.plus(Duration.ofDays(1)),
+                Instant.now().plus(Duration.ofDays(1)));
+        verify(repository, never()).findByFingerprint(any());
+    }
+
+    @Test
+    public void shorten_CustomHashOfExpiredUrl_Replaced() {
+        final Url expired = new Url("1", "http://google.com");
+        expired.setExpiresAt(Instant.now().minusSeconds(1));
+        Mockito.when(repository.findById("1")).thenReturn(Optional.of(expired));
+        Mockito.when(repository.save(any(Url.class))).thenAnswer((Answer<Url>) i -> i.getArgument(0));
+
+        final Url url = service.shorten("http://foo.com", "1");
+
+        assertEquals("http://foo.com", url.getSourceUrl());
+        Assert.assertNull(url.getExpiresAt());
+    }
+
+    @Test
+    public void shorten_CustomHashDifferentSourceUrl_ConflictCounted() {
+        final double conflicts = meterRegistry.counter("shortener.conflicts").count();
+        Mockito.when(repository.findById("1")).thenReturn(Optional.of(new Url("1", "http://google.com")));
+
+        try {
+            service.shorten("http://foo.com", "1");
+        } catch (UrlConflictException e) {
+            // expected
+        }
+
+        assertEquals(conflicts + 1, meterRegistry.counter("shortener.conflicts").count(), 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shortenAll_MixedBatch_ResultsInRequestOrder() {
+        final List<ShortenRequest> requests = Arrays.asList(
+                new ShortenRequest("http://foo.com", null),
+                new ShortenRequest("!foo", null),
+                new ShortenRequest("http://bar.com", null),
+                new ShortenRequest("http://bar.com", null),
+                new ShortenRequest("http://baz.com", "h1"),
+                new ShortenRequest("http://other.com", "h1"),
+                new ShortenRequest("http://baz.com", "h2"));
+
+        Mockito.when(repository.findByFingerprintIn(any())).thenReturn(
+                Collections.singletonList(new Url("1", "http://foo.com")));
+        Mockito.when(repository.findByIdIn(any())).thenReturn(
+                Collections.singletonList(new Url("h2", "http://google.com")));
+        Mockito.when(repository.insert(ArgumentMatchers.<Url>anyIterable())).thenAnswer(i -> i.getArgument(0));
+
+        final List<ShortenResult> results = service.shortenAll(requests);
+
+        assertThat(results).extracting(ShortenResult::getStatus).containsExactly(200, 400, 200, 200, 200, 409, 409);
+        assertEquals("1", results.get(0).getUrl().getId());
+        assertEquals(getExpectedShortcut("1"), results.get(0).getUrl().getShortcut());
+        assertSame(results.get(2).getUrl(), results.get(3).getUrl());
+        assertEquals("h1", results.get(4).getUrl().getId());
+
+        verify(repository, times(1)).insert(urlsArgumentCaptor.capture());
+        assertThat(urlsArgumentCaptor.getValue()).extracting(Url::getSourceUrl).containsExactly("http://bar.com",
+                "http://baz.com");
+    }
+
+    @Test
+    public void shortenAll_InsertedConcurrently_ExistingUrlReturned() {
+        final Url existing = new Url("1", "http://foo.com");
+        Mockito.when(repository.insert(ArgumentMatchers.<Url>anyIterable()))
+                .thenThrow(new DuplicateKeyException("taken"));
+        Mockito.when(repository.findByFingerprint(UrlFingerprint.of(existing.getSourceUrl()))).thenReturn(
+                Collections.singletonList(existing));
+
+        final List<ShortenResult> results = service.shortenAll(
+                Collections.singletonList(new ShortenRequest(existing.getSourceUrl(), null)));
+
+        assertThat(results).hasSize(1);
+        assertSame(existing, results.get(0).getUrl());
+    }
+
+    @Test
+    public void shortenAll_ExpiringBatchStoredPartially_OnlyRestInserted() {
+        final long shortened = meterRegistry.timer("shortener.shorten").count();
+        expiryProperties.setDefaultTtl(Duration.ofDays(1));
+        try {
+            Mockito.when(repository.insert(urlsArgumentCaptor.capture())).thenThrow(new DuplicateKeyException("taken"));
+            Mockito.when(repository.findByIdIn(any())).thenAnswer(invocation -> {
+                final Url stored = urlsArgumentCaptor.getValue().iterator().next();
+                return Collections.singletonList(new Url(stored.getId(), stored.getSourceUrl()));
+            });
+            Mockito.when(repository.insert(any(Url.class))).thenAnswer((Answer<Url>) i -> i.getArgument(0));
+
+            final List<ShortenResult> results = service.shortenAll(Arrays.asList(
+                    new ShortenRequest("http://foo.com", null), new ShortenRequest("http://bar.com", null)));
+
+            assertThat(results).extracting(ShortenResult::getStatus).containsOnly(HttpStatus.OK.value());
+            final ArgumentCaptor<Url> inserted = ArgumentCaptor.forClass(Url.class);
+            verify(repository, times(1)).insert(inserted.capture());
+            assertThat(urlsArgumentCaptor.getValue().iterator().next().getSourceUrl())
+                    .isNotEqualTo(inserted.getValue().getSourceUrl());
+            assertEquals(shortened + 1, meterRegistry.timer("shortener.shorten").count());
+        } finally {
+            expiryProperties.setDefaultTtl(null);
+        }
+    }
+
+    @Test
+    public void forEachUrl_UrlsExist_ReturnedWithShortcut() {
+        final List<Url> urls = Arrays.asList(new Url("1", "http://foo.com/1"),
+                new Url("2", "http://foor.com/2"));
+        Mockito.when(repository.streamAllBy()).thenReturn(urls.stream());
+
+        final List<Url> actual = new ArrayList<>();
+        service.forEachUrl(actual::add);
+
+        assertThat(actual).isNotNull().hasSize(urls.size()).extracting(Url::getShortcut).containsOnly(
+                getExpectedShortcut("1"), getExpectedShortcut("2"));
+    }
+
+    @Test
+    public void getUrls_FirstPage_ReturnedWithShortcut() {
         final List<Url> urls = Arrays.asList(new Url("1", "http://foo.com/1"),
                 new Url("2", "http://foor.com/2"));
-        Mockito.when(repository.findAll()).thenReturn(urls);
+        Mockito.when(repository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(""), any())).thenReturn(urls);
 
-        final List<Url> actual = service.getUrls();
+        final List<Url> actual = service.getUrls(null, 2);
 
         assertThat(actual).isNotNull().hasSize(urls.size()).extracting(Url::getShortcut).containsOnly(
                 getExpectedShortcut("1"), getExpectedShortcut("2"));
@@ -143,12 +377,16 @@ public class ShortenerServiceTests {
         service.deleteUrl(id);
         verify(repository).deleteById(stringArgumentCaptor.capture());
         assertEquals(id, stringArgumentCaptor.getValue());
+        verify(clickStore).delete(Collections.singletonList(id));
     }
 
     @Test
     public void getUrlByID_NonExisting_NoExceptionThrown() {
+        final double notFound = meterRegistry.counter("shortener.not.found").count();
+
         final Url url = service.getUrlByID(null);
         Assert.assertNull(url);
+        assertEquals(notFound + 1, meterRegistry.counter("shortener.not.found").count(), 0);
     }
 
     @Test
@@ -164,7 +402,163 @@ public class ShortenerServiceTests {
         assertEquals(getExpectedShortcut(id), url.getShortcut());
     }
 
+    @Test
+    public void getUrlByID_RepeatedLookup_ServedFromCache() {
+        final String id = "cachedID";
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(new Url(id, "http://foo.com")));
+
+        service.getUrlByID(id);
+        final Url url = service.getUrlByID(id);
+
+        assertNotNull(url);
+        verify(repository, times(1)).findById(id);
+    }
+
+    @Test
+    public void getUrlByID_AfterDelete_ReloadedFromRepository() {
+        final String id = "deletedID";
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(new Url(id, "http://foo.com")));
+
+        service.getUrlByID(id);
+        service.deleteUrl(id);
+
+        Mockito.when(repository.findById(id)).thenReturn(Optional.empty());
+        Assert.assertNull(service.getUrlByID(id));
+        verify(repository, times(2)).findById(id);
+    }
+
+    @Test
+    public void getUrlByID_DeletedWhileLoading_NotCached() {
+        final String id = "deletedWhileLoadingID";
+        // the url is read, then deleted before the lookup caches it
+        Mockito.when(repository.findById(id)).thenAnswer(invocation -> {
+            service.deleteUrl(id);
+            return Optional.of(new Url(id, "http://foo.com"));
+        }).thenReturn(Optional.empty());
+
+        assertNotNull(service.getUrlByID(id));
+
+        Assert.assertNull(service.getUrlByID(id));
+        verify(repository, times(2)).findById(id);
+    }
+
+    @Test
+    public void getUrlByID_AfterShorten_ServedFromCache() {
+        final String sourceUrl = "http://foo.com";
+        final String hash = "shortenedID";
+        Mockito.when(repository.save(any(Url.class))).thenAnswer((Answer<Url>) i -> i.getArgument(0));
+
+        service.shorten(sourceUrl, hash);
+        final Url url = service.getUrlByID(hash);
+
+        assertNotNull(url);
+        assertEquals(sourceUrl, url.getSourceUrl());
+        verify(repository, times(1)).findById(hash);
+    }
+
+    @Test
+    public void getUrlByID_Expired_GoneAlsoWhenCached() {
+        final String id = "expiredID";
+        final Url expired = new Url(id, "http://foo.com");
+        expired.setExpiresAt(Instant.now().minusSeconds(1));
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(expired));
+        final double expiredCount = meterRegistry.counter("shortener.expired").count();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                service.getUrlByID(id);
+                Assert.fail();
+            } catch (UrlExpiredException e) {
+                // expected
+            }
+        }
+
+        verify(repository, times(1)).findById(id);
+        assertEquals(expiredCount + 2, meterRegistry.counter("shortener.expired").count(), 0);
+    }
+
+    @Test
+    public void getUrlByID_ConcurrentMisses_LoadedOnce() throws Exception {
+        final String id = "viralID";
+        final CountDownLatch started = new CountDownLatch(THREADS);
+        Mockito.when(repository.findById(id)).thenAnswer(i -> {
+            started.await();
+            // lets the other lookups reach the storage call in flight
+            Thread.sleep(100);
+            return Optional.of(new Url(id, "http://foo.com"));
+        });
+
+        final List<Url> urls = concurrently(started, () -> service.getUrlByID(id));
+
+        assertThat(urls).hasSize(THREADS).allMatch(url -> "http://foo.com".equals(url.getSourceUrl()));
+        verify(repository, times(1)).findById(id);
+    }
+
+    @Test
+    public void shorten_SameSourceUrlConcurrently_OneShortcutCreated() throws Exception {
+        final String sourceUrl = "http://foo.com";
+        final CountDownLatch started = new CountDownLatch(THREADS);
+        Mockito.when(repository.insert(any(Url.class))).thenAnswer((Answer<Url>) i -> {
+            started.await();
+            Thread.sleep(100);
+            return i.getArgument(0);
+        });
+
+        final List<Url> urls = concurrently(started, () -> service.shorten(sourceUrl, null));
+
+        assertThat(urls).extracting(Url::getId).containsOnly(urls.get(0).getId());
+        verify(repository, times(1)).insert(any(Url.class));
+    }
+
+    private List<Url> concurrently(CountDownLatch started, Callable<Url> call) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Url>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    return call.call();
+                }));
+            }
+
+            final List<Url> urls = new ArrayList<>();
+            for (Future<Url> future : futures) {
+                urls.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return urls;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private String getExpectedShortcut(String hash) {
         return String.format("%s%s", digestProperties.getPrefix(), hash);
     }
+
+    @Test
+    public void importUrls_ExportedUrls_TakenAndExpiredSkipped() throws Exception {
+        final Url expired = new Url("expired", "http://foo.com/expired");
+        expired.setExpiresAt(Instant.now().minusSeconds(1));
+        final Url unsafe = new Url("unsafe", "javascript:alert(1)");
+        final Url forged = new Url("abc", "HTTP://Foo.com:80/abc");
+        forged.setFingerprint(42L);
+        final List<Url> urls = Arrays.asList(forged, new Url("taken", "http://foo.com/taken"), expired, unsafe);
+        Mockito.when(repository.streamAllBy()).thenAnswer(invocation -> urls.stream());
+
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        assertEquals(4, service.exportUrls(Channels.newChannel(archive)));
+
+        Mockito.when(repository.insert(ArgumentMatchers.<List<Url>>any()))
+                .thenThrow(new DuplicateKeyException("taken"));
+        Mockito.when(repository.findIdsByIdIn(any())).thenReturn(Collections.singletonList(() -> "taken"));
+        final ImportResult result = service.importUrls(Channels.newChannel(
+                new ByteArrayInputStream(archive.toByteArray())));
+
+        assertEquals(1, result.getImported());
+        assertEquals(3, result.getSkipped());
+        final ArgumentCaptor<Url> inserted = ArgumentCaptor.forClass(Url.class);
+        verify(repository).insert(inserted.capture());
+        assertEquals("http://foo.com/abc", inserted.getValue().getSourceUrl());
+        assertEquals(UrlFingerprint.of("http://foo.com/abc"), inserted.getValue().getFingerprint().longValue());
+    }
 }
@@ -0,0 +1,110 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CacheWarmupTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryUrlRepository repository;
+    private CacheWarmupProperties properties;
+
+    @Before
+    public void setUp() {
+        repository = new InMemoryUrlRepository();
+        IntStream.range(0, 100).forEach(i -> repository.insert(new Url("id" + i, "https://example.com/" + i)));
+
+        properties = new CacheWarmupProperties();
+        properties.setEnabled(true);
+        properties.setFile(folder.getRoot().toPath().resolve("snapshots").resolve("hot-ids").toString());
+        properties.setMaxEntries(1000);
+        properties.setMaxTime(Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void warmUp_Snapshot_HotUrlsLoaded() {
+        final UrlCache before = cache();
+        IntStream.range(0, 10).forEach(i -> before.put(repository.findById("id" + i).get()));
+        new CacheWarmup(repository, before, properties).snapshot();
+
+        final UrlCache after = cache();
+        final CacheWarmup warmup = new CacheWarmup(repository, after, properties);
+
+        assertEquals(10, warmup.warmUp());
+        IntStream.range(0, 10).forEach(i -> assertNotNull(after.getIfPresent("id" + i)));
+        assertNull(after.getIfPresent("id10"));
+        assertFalse(warmup.isWarming());
+    }
+
+    @Test
+    public void warmUp_Budget_Respected() throws Exception {
+        writeSnapshot("id0", "id1", "id2", "id3");
+        properties.setMaxEntries(2);
+
+        final UrlCache cache = cache();
+        assertEquals(2, new CacheWarmup(repository, cache, properties).warmUp());
+        assertNotNull(cache.getIfPresent("id0"));
+        assertNull(cache.getIfPresent("id2"));
+
+        properties.setMaxTime(Duration.ZERO);
+        assertEquals(0, new CacheWarmup(repository, cache(), properties).warmUp());
+    }
+
+    @Test
+    public void warmUp_DeletedAndExpired_Skipped() throws Exception {
+        final Url expired = new Url("expired", "https://example.com/expired");
+        expired.setExpiresAt(Instant.now().minusSeconds(1));
+        repository.insert(expired);
+        writeSnapshot("id0", "deleted", "expired");
+
+        final UrlCache cache = cache();
+        assertEquals(1, new CacheWarmup(repository, cache, properties).warmUp());
+        assertNull(cache.getIfPresent("expired"));
+    }
+
+    @Test
+    public void warmUp_NoSnapshot_NothingLoaded() {
+        assertEquals(0, new CacheWarmup(repository, cache(), properties).warmUp());
+    }
+
+    @Test
+    public void snapshot_EmptyCache_PreviousSnapshotKept() throws Exception {
+        writeSnapshot("id0");
+
+        new CacheWarmup(repository, cache(), properties).snapshot();
+
+        assertThat(Files.readAllLines(folder.getRoot().toPath().resolve("snapshots").resolve("hot-ids")))
+                .containsExactly("id0");
+    }
+
+    private void writeSnapshot(String... ids) throws Exception {
+        Files.createDirectories(folder.getRoot().toPath().resolve("snapshots"));
+        Files.write(folder.getRoot().toPath().resolve("snapshots").resolve("hot-ids"),
+                String.join("\n", ids).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static UrlCache cache() {
+        final UrlCacheProperties properties = new UrlCacheProperties();
+        properties.setMaximumSize(100);
+        properties.setExpireAfterWrite(Duration.ofMinutes(10));
+        return new UrlCache(properties, new SimpleMeterRegistry());
+    }
+}
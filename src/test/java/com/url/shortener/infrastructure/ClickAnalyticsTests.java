@@ -0,0 +1,191 @@
+package com.url.shortener.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+public class ClickAnalyticsTests {
+
+    private ClickStore store;
+    private ClickAnalyticsProperties properties;
+    private List<ClickCounts> flushed;
+
+    @Before
+    public void setUp() {
+        store = Mockito.mock(ClickStore.class);
+        flushed = new ArrayList<>();
+        Mockito.doAnswer(invocation -> flushed.addAll(invocation.getArgument(0))).when(store).increment(any());
+
+        properties = new ClickAnalyticsProperties();
+        properties.setEnabled(true);
+        properties.setBufferSize(2);
+        properties.setFlushInterval(Duration.ofSeconds(5));
+        properties.setFlushThreshold(100);
+        properties.setOverflowPolicy(ClickOverflowPolicy.DROP);
+        properties.setMaxReferrers(100);
+    }
+
+    @Test
+    public void flush_Clicks_AggregatedPerUrlAndReferrer() {
+        properties.setBufferSize(16);
+        final ClickAnalytics analytics = analytics();
+
+        analytics.record("a", "https://news.example.com/item?id=1");
+        analytics.record("a", "https://NEWS.example.com/other");
+        analytics.record("a", null);
+        analytics.record("b", "not a url");
+        assertEquals(4, analytics.drain());
+        assertTrue(analytics.flush());
+
+        final Map<String, ClickCounts> byId = byId();
+        assertEquals(3, byId.get("a").getClicks());
+        assertThat(byId.get("a").getReferrers()).containsOnlyKeys("news.example.com").containsValue(2L);
+        assertTrue(byId.get("a").getLastClickAt() > 0);
+        assertEquals(1, byId.get("b").getClicks());
+        assertThat(byId.get("b").getReferrers()).isEmpty();
+    }
+
+    @Test
+    public void flush_MoreReferrersThanMax_RestCountedAsOther() {
+        properties.setBufferSize(16);
+        properties.setMaxReferrers(2);
+        final ClickAnalytics analytics = analytics();
+
+        analytics.record("a", "https://a.example.com");
+        analytics.record("a", "https://b.example.com");
+        analytics.record("a", "https://c.example.com");
+        analytics.record("a", "https://d.example.com");
+        analytics.record("a", "https://a.example.com");
+        analytics.drain();
+        analytics.flush();
+
+        assertThat(byId().get("a").getReferrers()).containsOnlyKeys("a.example.com", "b.example.com",
+                ClickCounts.OTHER_REFERRERS).containsEntry("a.example.com", 2L)
+                .containsEntry(ClickCounts.OTHER_REFERRERS, 2L);
+    }
+
+    @Test
+    public void flush_StorePartiallyFailed_OnlyFailedRetried() {
+        properties.setBufferSize(16);
+        final ClickAnalytics analytics = analytics();
+        Mockito.doAnswer(invocation -> {
+            final List<ClickCounts> counts = new ArrayList<>(invocation.<Collection<ClickCounts>>getArgument(0));
+            throw new ClickIncrementException("partial", counts.stream().filter(count -> "b".equals(count.getId()))
+                    .collect(Collectors.toList()), null);
+        }).doAnswer(invocation -> flushed.addAll(invocation.getArgument(0))).when(store).increment(any());
+
+        analytics.record("a", null);
+        analytics.record("b", null);
+        analytics.drain();
+        assertFalse(analytics.flush());
+
+        analytics.record("b", null);
+        analytics.drain();
+        assertTrue(analytics.flush());
+
+        assertThat(byId()).containsOnlyKeys("b");
+        assertEquals(2, byId().get("b").getClicks());
+    }
+
+    @Test
+    public void record_FullWithDrop_Dropped() {
+        final ClickAnalytics analytics = analytics();
+
+        analytics.record("a", null);
+        analytics.record("a", null);
+        analytics.record("a", null);
+        analytics.drain();
+        analytics.flush();
+
+        assertEquals(1, analytics.getDropped());
+        assertEquals(2, byId().get("a").getClicks());
+    }
+
+    @Test
+    public void record_FullWithCountOnly_Counted() {
+        properties.setOverflowPolicy(ClickOverflowPolicy.COUNT_ONLY);
+        final ClickAnalytics analytics = analytics();
+
+        analytics.record("a", null);
+        analytics.record("a", null);
+        analytics.record("a", null);
+        analytics.record("b", null);
+        analytics.drain();
+        analytics.flush();
+
+        assertEquals(0, analytics.getDropped());
+        assertEquals(3, byId().get("a").getClicks());
+        assertEquals(1, byId().get("b").getClicks());
+    }
+
+    @Test
+    public void flush_StoreFailed_RetriedWithNextFlush() {
+        final ClickAnalytics analytics = analytics();
+        Mockito.doThrow(new DataAccessResourceFailureException("down")).doAnswer(invocation ->
+                flushed.addAll(invocation.getArgument(0))).when(store).increment(any());
+
+        analytics.record("a", null);
+        analytics.drain();
+        assertFalse(analytics.flush());
+
+        analytics.record("a", null);
+        analytics.drain();
+        assertTrue(analytics.flush());
+
+        assertEquals(2, byId().get("a").getClicks());
+    }
+
+    @Test
+    public void record_Disabled_Ignored() {
+        properties.setEnabled(false);
+        final ClickAnalytics analytics = analytics();
+
+        analytics.record("a", null);
+        analytics.start();
+
+        Mockito.verifyNoInteractions(store);
+    }
+
+    @Test
+    public void getStats_NoClicks_Zero() {
+        assertEquals(0, analytics().getStats("a").getClicks());
+        assertNull(analytics().getStats("a").getLastClickAt());
+    }
+
+    @Test
+    public void start_ClickRecorded_FlushedOnStop() throws Exception {
+        final ClickAnalytics analytics = analytics();
+        analytics.start();
+
+        analytics.record("a", null);
+        analytics.stop();
+
+        Mockito.verify(store).increment(any());
+        assertEquals(1, byId().get("a").getClicks());
+    }
+
+    private ClickAnalytics analytics() {
+        return new ClickAnalytics(store, properties, new SimpleMeterRegistry());
+    }
+
+    private Map<String, ClickCounts> byId() {
+        return flushed.stream().collect(Collectors.toMap(ClickCounts::getId, Function.identity()));
+    }
+}
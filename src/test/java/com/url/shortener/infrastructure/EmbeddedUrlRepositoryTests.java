@@ -0,0 +1,247 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.util.unit.DataSize;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EmbeddedUrlRepositoryTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedStorageProperties properties;
+
+    @Before
+    public void setUp() {
+        properties = new EmbeddedStorageProperties();
+        properties.setDirectory(folder.getRoot().getAbsolutePath());
+        properties.setSegmentSize(DataSize.ofKilobytes(1));
+        properties.setExpectedUrls(16);
+        properties.setCompactionDeadRatio(0.3);
+    }
+
+    @Test
+    public void insert_Url_FoundByIdAndFingerprint() {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        repository.insert(url("abc", "http://example.com", 42L));
+        repository.insert(url("def", "http://other.com", null));
+
+        final Url found = repository.findById("abc").orElseThrow(AssertionError::new);
+        assertEquals("http://example.com", found.getSourceUrl());
+        assertEquals(Long.valueOf(42), found.getFingerprint());
+        assertEquals(null, repository.findById("def").orElseThrow(AssertionError::new).getFingerprint());
+        assertFalse(repository.findById("unknown").isPresent());
+
+        assertThat(repository.findByFingerprint(42L)).extracting(Url::getId).containsExactly("abc");
+        assertThat(repository.findIdsByIdIn(Arrays.asList("abc", "unknown"))).extracting(UrlId::getId)
+                .containsExactly("abc");
+        assertEquals(2, repository.estimatedCount());
+    }
+
+    @Test
+    public void insert_ExistingId_DuplicateKeyException() {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        repository.insert(url("abc", "http://example.com", 1L));
+
+        try {
+            repository.insert(url("abc", "http://other.com", 2L));
+            fail();
+        } catch (DuplicateKeyException e) {
+            assertEquals("http://example.com", repository.findById("abc").get().getSourceUrl());
+        }
+    }
+
+    @Test
+    public void insertBatch_OneExisting_NothingInserted() {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        repository.insert(url("b", "http://b.com", null));
+
+        try {
+            repository.insert(Arrays.asList(url("a", "http://a.com", null), url("b", "http://b.com", null)));
+            fail();
+        } catch (DuplicateKeyException e) {
+            assertFalse(repository.existsById("a"));
+        }
+    }
+
+    @Test
+    public void save_ExistingId_ReplacedAndReindexed() {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        repository.save(url("abc", "http://example.com", 1L));
+        repository.save(url("abc", "http://other.com", 2L));
+
+        assertEquals("http://other.com", repository.findById("abc").get().getSourceUrl());
+        assertThat(repository.findByFingerprint(1L)).isEmpty();
+        assertThat(repository.findByFingerprint(2L)).extracting(Url::getId).containsExactly("abc");
+        assertEquals(1, repository.estimatedCount());
+        assertThat(repository.getDeadRatio()).isGreaterThan(0);
+    }
+
+    @Test
+    public void deleteById_Existing_NotFoundAnymore() {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        repository.insert(url("abc", "http://example.com", 1L));
+
+        repository.deleteById("abc");
+        repository.deleteById("unknown");
+
+        assertFalse(repository.existsById("abc"));
+        assertThat(repository.findByFingerprint(1L)).isEmpty();
+        assertEquals(0, repository.estimatedCount());
+        try (Stream<Url> urls = repository.streamAllBy()) {
+            assertEquals(0, urls.count());
+        }
+    }
+
+    @Test
+    public void open_ExistingDirectory_StateRecovered() {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        IntStream.range(0, 100).forEach(i -> repository.insert(url("id" + i, "http://example.com/" + i, (long) i)));
+        repository.deleteById("id0");
+        repository.save(url("id1", "http://replaced.com", 1L));
+
+        final EmbeddedUrlRepository reopened = new EmbeddedUrlRepository(properties);
+
+        assertEquals(99, reopened.estimatedCount());
+        assertFalse(reopened.existsById("id0"));
+        assertEquals("http://replaced.com", reopened.findById("id1").get().getSourceUrl());
+        assertEquals("http://example.com/99", reopened.findById("id99").get().getSourceUrl());
+        assertThat(reopened.findByFingerprint(1L)).hasSize(1);
+        assertEquals(repository.getDeadRatio(), reopened.getDeadRatio(), 0.0001);
+    }
+
+    @Test
+    public void open_TornLastRecord_PrecedingRecordsKept() throws Exception {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        repository.insert(url("first", "http://first.com", null));
+        repository.insert(url("torn", "http://torn.com", null));
+        corrupt("http://torn.com");
+
+        final EmbeddedUrlRepository reopened = new EmbeddedUrlRepository(properties);
+        assertTrue(reopened.existsById("first"));
+        assertFalse(reopened.existsById("torn"));
+
+        reopened.insert(url("next", "http://next.com", null));
+        assertTrue(new EmbeddedUrlRepository(properties).existsById("next"));
+    }
+
+    @Test
+    public void compact_DeadRecords_DroppedAndLiveKept() throws Exception {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        IntStream.range(0, 100).forEach(i -> repository.insert(url("id" + i, "http://example.com/" + i, (long) i)));
+        IntStream.range(0, 50).forEach(i -> repository.deleteById("id" + i));
+
+        repository.compactIfNeeded();
+
+        assertEquals(0, repository.getDeadRatio(), 0);
+        assertEquals(50, repository.estimatedCount());
+        assertEquals("http://example.com/75", repository.findById("id75").get().getSourceUrl());
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertThat(files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".log")))
+                    .allMatch(name -> name.startsWith("urls-1-"));
+        }
+
+        final EmbeddedUrlRepository reopened = new EmbeddedUrlRepository(properties);
+        assertEquals(50, reopened.estimatedCount());
+        assertFalse(reopened.existsById("id0"));
+        assertThat(reopened.findByFingerprint(75L)).extracting(Url::getId).containsExactly("id75");
+    }
+
+    @Test
+    public void compactIfNeeded_FewDeadRecords_NotCompacted() {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        IntStream.range(0, 10).forEach(i -> repository.insert(url("id" + i, "http://example.com/" + i, null)));
+        repository.deleteById("id0");
+        final double deadRatio = repository.getDeadRatio();
+
+        repository.compactIfNeeded();
+
+        assertEquals(deadRatio, repository.getDeadRatio(), 0);
+    }
+
+    @Test
+    public void findByIdGreaterThanOrderByIdAsc_Pages_OrderedById() {
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        Stream.of("e", "b", "d", "a", "c").forEach(id -> repository.insert(url(id, "http://" + id + ".com", null)));
+        repository.deleteById("c");
+
+        assertThat(repository.findByIdGreaterThanOrderByIdAsc("", PageRequest.of(0, 2)))
+                .extracting(Url::getId).containsExactly("a", "b");
+        assertThat(repository.findByIdGreaterThanOrderByIdAsc("b", PageRequest.of(0, 2)))
+                .extracting(Url::getId).containsExactly("d", "e");
+        try (Stream<UrlId> ids = repository.findIdsBy()) {
+            final List<String> all = ids.map(UrlId::getId).collect(Collectors.toList());
+            assertThat(all).containsExactlyInAnyOrder("a", "b", "d", "e");
+        }
+    }
+
+    @Test
+    public void deleteByIdInAndExpiresAtBefore_Expired_DeletedAndExpiryRecovered() {
+        final Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+        final EmbeddedUrlRepository repository = new EmbeddedUrlRepository(properties);
+        repository.insert(expiring(url("past", "http://past.com", 1L), now.minusSeconds(60)));
+        repository.insert(expiring(url("future", "http://future.com", 2L), now.plusSeconds(60)));
+        repository.insert(url("never", "http://never.com", 3L));
+
+        final EmbeddedUrlRepository reopened = new EmbeddedUrlRepository(properties);
+        assertEquals(now.plusSeconds(60), reopened.findById("future").get().getExpiresAt());
+        assertEquals(null, reopened.findById("never").get().getExpiresAt());
+        assertThat(reopened.findIdsByExpiresAtBefore(now, PageRequest.of(0, 10))).extracting(UrlId::getId)
+                .containsExactly("past");
+
+        assertEquals(1, reopened.deleteByIdInAndExpiresAtBefore(Arrays.asList("past", "future", "never"), now));
+        assertFalse(reopened.existsById("past"));
+        assertTrue(reopened.existsById("future"));
+        assertTrue(reopened.existsById("never"));
+    }
+
+    private void corrupt(String content) throws Exception {
+        final Path segment = folder.getRoot().toPath().resolve("urls-0-0.log");
+        final byte[] bytes = Files.readAllBytes(segment);
+        final byte[] searched = content.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < bytes.length - searched.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + searched.length), searched)) {
+                try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+                    file.seek(i);
+                    file.write('X');
+                }
+                return;
+            }
+        }
+        fail("Record not found");
+    }
+
+    private static Url url(String id, String sourceUrl, Long fingerprint) {
+        final Url url = new Url(id, sourceUrl);
+        url.setFingerprint(fingerprint);
+        return url;
+    }
+
+    private static Url expiring(Url url, Instant expiresAt) {
+        url.setExpiresAt(expiresAt);
+        return url;
+    }
+}
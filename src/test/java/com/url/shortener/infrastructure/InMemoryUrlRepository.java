@@ -0,0 +1,165 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link UrlRepository} which keeps urls in concurrent maps. Intended as a stand-in for the database in tests and
+ * benchmarks. Returned urls are copies, as if they have been read from a real storage
+ */
+public class InMemoryUrlRepository implements UrlRepository {
+
+    private final NavigableMap<String, Url> byId = new ConcurrentSkipListMap<>();
+    private final Map<Long, Set<String>> idsByFingerprint = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<Url> findById(String id) {
+        return Optional.ofNullable(copy(byId.get(id)));
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return byId.containsKey(id);
+    }
+
+    @Override
+    public List<Url> findByFingerprint(Long fingerprint) {
+        return findByFingerprintIn(Collections.singleton(fingerprint));
+    }
+
+    @Override
+    public List<Url> findByFingerprintIn(Collection<Long> fingerprints) {
+        return fingerprints.stream()
+                .flatMap(fingerprint -> idsByFingerprint.getOrDefault(fingerprint, Collections.emptySet()).stream())
+                .map(byId::get).filter(Objects::nonNull).map(InMemoryUrlRepository::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Url> findByIdIn(Collection<String> ids) {
+        return ids.stream().map(byId::get).filter(Objects::nonNull).map(InMemoryUrlRepository::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UrlId> findIdsByIdIn(Collection<String> ids) {
+        return ids.stream().filter(byId::containsKey).map(id -> (UrlId) () -> id).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UrlId> findIdsByExpiresAtBefore(Instant time, Pageable pageable) {
+        return byId.values().stream().filter(url -> url.getExpiresAt() != null && url.getExpiresAt().isBefore(time))
+                .limit(pageable.getPageSize()).map(url -> (UrlId) url::getId).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Url> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable) {
+        final List<Url> urls = new ArrayList<>(pageable.getPageSize());
+        for (Url url : byId.tailMap(id, false).values()) {
+            if (urls.size() == pageable.getPageSize()) {
+                break;
+            }
+            urls.add(copy(url));
+        }
+        return urls;
+    }
+
+    @Override
+    public Stream<Url> streamAllBy() {
+        return byId.values().stream().map(InMemoryUrlRepository::copy);
+    }
+
+    @Override
+    public Stream<UrlId> findIdsBy() {
+        return byId.keySet().stream().map(id -> () -> id);
+    }
+
+    @Override
+    public synchronized <S extends Url> S save(S url) {
+        final Url previous = byId.put(url.getId(), copy(url));
+        unindex(previous);
+
+        if (url.getFingerprint() != null) {
+            idsByFingerprint.computeIfAbsent(url.getFingerprint(), fingerprint -> ConcurrentHashMap.newKeySet())
+                    .add(url.getId());
+        }
+        return url;
+    }
+
+    @Override
+    public synchronized <S extends Url> S insert(S url) {
+        if (byId.containsKey(url.getId())) {
+            throw new DuplicateKeyException(String.format("Url with id=%s already exists", url.getId()));
+        }
+
+        return save(url);
+    }
+
+    @Override
+    public synchronized <S extends Url> List<S> insert(Iterable<S> urls) {
+        final List<S> inserted = new ArrayList<>();
+        urls.forEach(url -> inserted.add(insert(url)));
+        return inserted;
+    }
+
+    @Override
+    public synchronized void deleteById(String id) {
+        unindex(byId.remove(id));
+    }
+
+    @Override
+    public synchronized long deleteByIdInAndExpiresAtBefore(Collection<String> ids, Instant time) {
+        long deleted = 0;
+        for (String id : ids) {
+            final Url url = byId.get(id);
+            if (url != null && url.getExpiresAt() != null && url.getExpiresAt().isBefore(time)) {
+                deleteById(id);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public long estimatedCount() {
+        return byId.size();
+    }
+
+    public void deleteAll() {
+        byId.clear();
+        idsByFingerprint.clear();
+    }
+
+    private void unindex(Url url) {
+        if (url != null && url.getFingerprint() != null) {
+            idsByFingerprint.getOrDefault(url.getFingerprint(), Collections.emptySet()).remove(url.getId());
+        }
+    }
+
+    private static Url copy(Url url) {
+        if (url == null) {
+            return null;
+        }
+
+        final Url copy = new Url(url.getId(), url.getSourceUrl());
+        copy.setFingerprint(url.getFingerprint());
+        copy.setExpiresAt(url.getExpiresAt());
+        return copy;
+    }
+}
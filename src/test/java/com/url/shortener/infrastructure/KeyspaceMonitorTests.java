@@ -0,0 +1,121 @@
+package com.url.shortener.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyspaceMonitorTests {
+
+    private UrlRepository repository;
+    private DigestProperties digestProperties;
+    private KeyspaceProperties properties;
+
+    @Before
+    public void setUp() {
+        repository = Mockito.mock(UrlRepository.class);
+
+        digestProperties = new DigestProperties();
+        digestProperties.setRandomLength(2);
+        digestProperties.setRandomMaxAttempts(10);
+
+        properties = new KeyspaceProperties();
+        properties.setEnabled(true);
+        properties.setMaxOccupancy(0.1);
+        properties.setMaxCollisionRate(0.2);
+        properties.setMinAttempts(100);
+        properties.setMaxLength(4);
+    }
+
+    @Test
+    public void refresh_OccupancyOverThreshold_LengthGrown() {
+        final KeyspaceMonitor monitor = monitor();
+
+        // 62^2 = 3844, 62^3 = 238328
+        Mockito.when(repository.estimatedCount()).thenReturn(300L);
+        monitor.refresh();
+        assertEquals(2, monitor.getLength());
+
+        Mockito.when(repository.estimatedCount()).thenReturn(30_000L);
+        monitor.refresh();
+        assertEquals(4, monitor.getLength());
+        assertFalse(monitor.isSaturated());
+    }
+
+    @Test
+    public void refresh_CollisionRateOverThreshold_LengthGrown() {
+        final KeyspaceMonitor monitor = monitor();
+
+        monitor.attempted(50, 40);
+        monitor.refresh();
+        assertEquals("window is too small", 2, monitor.getLength());
+
+        monitor.attempted(50, 10);
+        monitor.refresh();
+        assertEquals(3, monitor.getLength());
+        assertEquals(0, monitor.getCollisionRate(), 0);
+    }
+
+    @Test
+    public void exhausted_SameLengthTwice_GrownOnce() {
+        final KeyspaceMonitor monitor = monitor();
+
+        monitor.exhausted(2);
+        monitor.exhausted(2);
+
+        assertEquals(3, monitor.getLength());
+    }
+
+    @Test
+    public void exhausted_MaxLength_Saturated() {
+        final KeyspaceMonitor monitor = monitor();
+        Mockito.when(repository.estimatedCount()).thenReturn(10_000_000L);
+
+        monitor.refresh();
+        monitor.exhausted(4);
+
+        assertEquals(4, monitor.getLength());
+        assertTrue(monitor.isSaturated());
+    }
+
+    @Test
+    public void refresh_Disabled_LengthKept() {
+        properties.setEnabled(false);
+        final KeyspaceMonitor monitor = monitor();
+
+        monitor.exhausted(2);
+        monitor.refresh();
+
+        assertEquals(2, monitor.getLength());
+        Mockito.verifyNoInteractions(repository);
+    }
+
+    @Test
+    public void nextId_LengthGrown_LongerIds() {
+        final KeyspaceMonitor monitor = monitor();
+        final RandomIdGenerator generator = new RandomIdGenerator(new InMemoryUrlRepository(), digestProperties,
+                new ShortCodeGenerator(), monitor);
+        assertEquals(2, generator.nextId().length());
+
+        monitor.exhausted(2);
+
+        assertEquals(3, generator.nextId().length());
+        assertEquals(3, generator.nextUncheckedId().length());
+        assertTrue(generator.nextIds(5).stream().allMatch(id -> id.length() == 3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void new_LengthOverCapacityOfLong_ExceptionIsThrown() {
+        digestProperties.setRandomLength(11);
+        monitor();
+    }
+
+    private KeyspaceMonitor monitor() {
+        return new KeyspaceMonitor(repository, digestProperties, properties,
+                new ShortenerMetrics(new SimpleMeterRegistry()), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,79 @@
+package com.url.shortener.infrastructure;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LookupFilterTests {
+
+    private UrlRepository repository;
+    private LookupFilterProperties properties;
+    private LookupFilter filter;
+
+    @Before
+    public void setUp() {
+        repository = Mockito.mock(UrlRepository.class);
+        properties = new LookupFilterProperties();
+        properties.setEnabled(true);
+        properties.setExpectedInsertions(1000);
+        properties.setFalsePositiveProbability(0.01);
+
+        filter = new LookupFilter(repository, properties);
+    }
+
+    @Test
+    public void mightContain_NotBuilt_AllowsEverything() {
+        assertTrue(filter.mightContain("unknown"));
+    }
+
+    @Test
+    public void mightContain_Disabled_AllowsEverything() {
+        properties.setEnabled(false);
+        filter.rebuild();
+
+        assertTrue(filter.mightContain("unknown"));
+        Mockito.verifyNoInteractions(repository);
+    }
+
+    @Test
+    public void mightContain_Built_StoredIdsAllowedUnknownRejected() {
+        Mockito.when(repository.findIdsBy()).thenReturn(Stream.of(urlId("a"), urlId("b")));
+        filter.rebuild();
+
+        assertTrue(filter.mightContain("a"));
+        assertTrue(filter.mightContain("b"));
+        assertFalse(filter.mightContain("unknown"));
+    }
+
+    @Test
+    public void put_AfterBuild_IdAllowed() {
+        Mockito.when(repository.findIdsBy()).thenReturn(Stream.empty());
+        filter.rebuild();
+
+        filter.put("new");
+        assertTrue(filter.mightContain("new"));
+    }
+
+    @Test
+    public void bloomFilter_FalsePositiveRate_WithinConfiguredBound() {
+        final BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("id-" + i));
+
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> bloomFilter.mightContain("id-" + i))).isTrue();
+
+        final long falsePositives = IntStream.range(0, 100_000).filter(i -> bloomFilter.mightContain("other-" + i))
+                .count();
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    private static UrlId urlId(String id) {
+        return () -> id;
+    }
+}
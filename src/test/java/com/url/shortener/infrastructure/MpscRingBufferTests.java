@@ -0,0 +1,84 @@
+package com.url.shortener.infrastructure;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MpscRingBufferTests {
+
+    @Test
+    public void poll_OfferedInOrder_SameOrder() {
+        final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+
+        for (int lap = 0; lap < 3; lap++) {
+            assertTrue(buffer.offer(1));
+            assertTrue(buffer.offer(2));
+            assertEquals(Integer.valueOf(1), buffer.poll());
+            assertEquals(Integer.valueOf(2), buffer.poll());
+            assertNull(buffer.poll());
+        }
+    }
+
+    @Test
+    public void offer_Full_Rejected() {
+        final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(2);
+
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertFalse(buffer.offer(3));
+        assertEquals(2, buffer.size());
+
+        assertEquals(Integer.valueOf(1), buffer.poll());
+        assertTrue(buffer.offer(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_NotPowerOfTwo_Rejected() {
+        new MpscRingBuffer<>(100);
+    }
+
+    @Test
+    public void drain_ConcurrentProducers_EveryElementOnce() throws Exception {
+        final int producers = 4;
+        final int perProducer = 100_000;
+        final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(1024);
+        final ExecutorService executor = Executors.newFixedThreadPool(producers);
+        final CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            final int first = p * perProducer;
+            executor.execute(() -> {
+                for (int i = first; i < first + perProducer; i++) {
+                    while (!buffer.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        final List<Integer> received = new ArrayList<>();
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            buffer.drain(received::add, 256);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        final Set<Integer> distinct = new HashSet<>(received);
+        assertThat(received).hasSize(producers * perProducer);
+        assertThat(distinct).hasSize(producers * perProducer);
+    }
+}
@@ -0,0 +1,79 @@
+package com.url.shortener.infrastructure;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapHashIndexTests {
+
+    @Test
+    public void get_SeveralValuesOfKey_AllReturned() {
+        final OffHeapHashIndex index = new OffHeapHashIndex(16);
+        index.put(1, 10);
+        index.put(1, 11);
+        index.put(2, 20);
+
+        assertThat(index.get(1)).containsExactlyInAnyOrder(10, 11);
+        assertThat(index.get(2)).containsExactly(20);
+        assertThat(index.get(3)).isEmpty();
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void remove_Value_OtherValuesKept() {
+        final OffHeapHashIndex index = new OffHeapHashIndex(16);
+        index.put(1, 10);
+        index.put(1, 11);
+
+        assertTrue(index.remove(1, 10));
+        assertFalse(index.remove(1, 10));
+        assertThat(index.get(1)).containsExactly(11);
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void replace_MappedAndUnmappedValue_NewValueMapped() {
+        final OffHeapHashIndex index = new OffHeapHashIndex(16);
+        index.put(1, 10);
+
+        index.replace(1, 10, 12);
+        index.replace(2, 20, 21);
+
+        assertThat(index.get(1)).containsExactly(12);
+        assertThat(index.get(2)).containsExactly(21);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void put_BeyondExpectedSize_IndexGrows() {
+        final OffHeapHashIndex index = new OffHeapHashIndex(16);
+        final long initialBytes = index.capacityBytes();
+
+        for (long key = 0; key < 10_000; key++) {
+            index.put(key, key * 2);
+        }
+
+        assertThat(index.capacityBytes()).isGreaterThan(initialBytes);
+        assertEquals(10_000, index.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertThat(index.get(key)).containsExactly(key * 2);
+        }
+    }
+
+    @Test
+    public void put_AfterManyRemovals_TableReusedWithoutGrowth() {
+        final OffHeapHashIndex index = new OffHeapHashIndex(1000);
+        final long initialBytes = index.capacityBytes();
+
+        for (long key = 0; key < 100_000; key++) {
+            index.put(key, key);
+            index.remove(key, key);
+        }
+
+        assertEquals(initialBytes, index.capacityBytes());
+        assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,106 @@
+package com.url.shortener.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTests {
+
+    private RateLimitProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        properties = new RateLimitProperties();
+        properties.setEnabled(true);
+        properties.setApiKeyHeader("X-API-Key");
+        properties.setMaxClients(100);
+        properties.setIdleTimeout(Duration.ofMinutes(1));
+        properties.setRates(Collections.singletonMap("shorten", 10.0));
+        properties.setBursts(Collections.singletonMap("shorten", 5));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void tryAcquire_Burst_RejectedAfterwards() {
+        final RateLimiter limiter = new RateLimiter(properties, meterRegistry);
+
+        IntStream.range(0, 5).forEach(i -> assertEquals(0, limiter.tryAcquire("shorten", "client")));
+        final long waitNanos = limiter.tryAcquire("shorten", "client");
+
+        assertThat(waitNanos).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, limiter.tryAcquire("shorten", "other"));
+        assertEquals(6, meterRegistry.get("shortener.rate.limit").tag("result", "allowed").counter().count(), 0);
+        assertEquals(1, meterRegistry.get("shortener.rate.limit").tag("result", "rejected").counter().count(), 0);
+    }
+
+    @Test
+    public void tryAcquire_AfterInterval_Admitted() throws Exception {
+        final RateLimiter limiter = new RateLimiter(properties, meterRegistry);
+        IntStream.range(0, 5).forEach(i -> limiter.tryAcquire("shorten", "client"));
+
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(limiter.tryAcquire("shorten", "client")) + 1);
+
+        assertEquals(0, limiter.tryAcquire("shorten", "client"));
+    }
+
+    @Test
+    public void tryAcquire_NotConfiguredOrDisabled_Admitted() {
+        IntStream.range(0, 100).forEach(i ->
+                assertEquals(0, new RateLimiter(properties, meterRegistry).tryAcquire("redirect", "client")));
+
+        properties.setEnabled(false);
+        final RateLimiter limiter = new RateLimiter(properties, new SimpleMeterRegistry());
+        IntStream.range(0, 100).forEach(i -> assertEquals(0, limiter.tryAcquire("shorten", "client")));
+    }
+
+    @Test
+    public void clientOf_ApiKey_PreferredOverAddress() {
+        final RateLimiter limiter = new RateLimiter(properties, meterRegistry);
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+
+        assertEquals("10.0.0.1", limiter.clientOf(request));
+        request.addHeader("X-API-Key", "secret");
+        assertEquals("key:secret", limiter.clientOf(request));
+    }
+
+    @Test
+    public void preHandle_AnnotatedHandler_LimitedWithRetryAfter() throws Exception {
+        properties.setBursts(Collections.singletonMap("shorten", 1));
+        final RateLimitInterceptor interceptor = new RateLimitInterceptor(new RateLimiter(properties, meterRegistry));
+        final HandlerMethod limited = new HandlerMethod(new Handlers(), "limited");
+        final HandlerMethod unlimited = new HandlerMethod(new Handlers(), "unlimited");
+
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), limited));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), response, limited));
+        assertEquals(429, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), unlimited));
+    }
+
+    private static class Handlers {
+
+        @RateLimited("shorten")
+        public void limited() {
+        }
+
+        public void unlimited() {
+        }
+    }
+}
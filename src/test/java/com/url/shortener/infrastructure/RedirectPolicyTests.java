@@ -0,0 +1,88 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RedirectPolicyTests {
+
+    private static final Url URL = new Url("abc", "http://google.com");
+
+    @Test
+    public void new_NoMaxAge_NoCacheControl() {
+        final RedirectPolicy policy = new RedirectPolicy(properties(302, Duration.ZERO, true));
+
+        assertEquals(HttpStatus.FOUND, policy.getStatus(URL));
+        assertNull(policy.getCacheControl(URL));
+    }
+
+    @Test
+    public void new_PrivateMaxAge_CacheControl() {
+        final RedirectPolicy policy = new RedirectPolicy(properties(307, Duration.ofMinutes(5), false));
+
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, policy.getStatus(URL));
+        assertEquals("private, max-age=300", policy.getCacheControl(URL));
+    }
+
+    @Test
+    public void writeTo_StatusAndHeadersWritten() {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new RedirectPolicy(properties(301, Duration.ofDays(1), true)).writeTo(response, URL);
+
+        assertEquals(301, response.getStatus());
+        assertEquals("http://google.com", response.getHeader("Location"));
+        assertEquals("public, max-age=86400", response.getHeader("Cache-Control"));
+        assertEquals(0, response.getContentLength());
+    }
+
+    @Test
+    public void writeTo_ExpiringUrl_FoundWithMaxAgeUntilExpiry() {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final Url url = new Url("abc", "http://google.com");
+        url.setExpiresAt(Instant.now().plus(Duration.ofMinutes(10)));
+
+        new RedirectPolicy(properties(301, Duration.ofDays(1), true)).writeTo(response, url);
+
+        assertEquals(302, response.getStatus());
+        assertThat(response.getHeader("Cache-Control")).matches("private, max-age=(599|600)");
+    }
+
+    @Test
+    public void getCacheControl_ExpiringUrlAfterMaxAge_MaxAge() {
+        final Url url = new Url("abc", "http://google.com");
+        url.setExpiresAt(Instant.now().plus(Duration.ofDays(1)));
+
+        assertEquals("private, max-age=300", new RedirectPolicy(properties(301, Duration.ofMinutes(5), true))
+                .getCacheControl(url));
+    }
+
+    @Test
+    public void getCacheControl_ExpiringUrlWithoutMaxAge_NoCacheControl() {
+        final Url url = new Url("abc", "http://google.com");
+        url.setExpiresAt(Instant.now().plus(Duration.ofDays(1)));
+
+        assertNull(new RedirectPolicy(properties(301, Duration.ZERO, true)).getCacheControl(url));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void new_NotRedirectStatus_ExceptionIsThrown() {
+        new RedirectPolicy(properties(200, Duration.ZERO, false));
+    }
+
+    private static RedirectProperties properties(int status, Duration maxAge, boolean cachePublic) {
+        final RedirectProperties properties = new RedirectProperties();
+        properties.setStatus(status);
+        properties.setCacheMaxAge(maxAge);
+        properties.setCachePublic(cachePublic);
+        return properties;
+    }
+}
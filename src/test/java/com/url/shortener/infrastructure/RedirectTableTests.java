@@ -0,0 +1,108 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.util.unit.DataSize;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RedirectTableTests {
+
+    private UrlRepository repository;
+    private RedirectTableProperties properties;
+    private RedirectTable table;
+
+    @Before
+    public void setUp() {
+        repository = Mockito.mock(UrlRepository.class);
+        properties = new RedirectTableProperties();
+        properties.setEnabled(true);
+        properties.setExpectedUrls(16);
+        properties.setChunkSize(DataSize.ofBytes(256));
+
+        table = new RedirectTable(repository, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void pack_Base62Ids_DistinctKeysIncludingLeadingZeros() {
+        assertNotEquals(0, RedirectTable.pack("abc"));
+        assertNotEquals(RedirectTable.pack("a"), RedirectTable.pack("0a"));
+        assertNotEquals(0, RedirectTable.pack("zzzzzzzzzz"));
+        assertEquals(0, RedirectTable.pack("zzzzzzzzzzz"));
+        assertEquals(0, RedirectTable.pack("my-hash"));
+        assertEquals(0, RedirectTable.pack(""));
+    }
+
+    @Test
+    public void get_Reloaded_StoredUrlsFound() {
+        Mockito.when(repository.streamAllBy()).thenReturn(Stream.of(new Url("abc", "http://a.com"),
+                new Url("custom-hash", "http://b.com")));
+        table.reload();
+
+        assertEquals("http://a.com", table.get("abc").getSourceUrl());
+        assertNull("id can't be packed", table.get("custom-hash"));
+        assertNull(table.get("abd"));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void put_NotLoaded_NotKept() {
+        assertFalse(table.put(new Url("abc", "http://a.com")));
+        assertNull(table.get("abc"));
+    }
+
+    @Test
+    public void put_Disabled_NotKept() {
+        properties.setEnabled(false);
+        table.reload();
+
+        assertFalse(table.put(new Url("abc", "http://a.com")));
+        Mockito.verifyNoInteractions(repository);
+    }
+
+    @Test
+    public void putAndRemove_Loaded_TableUpdated() {
+        Mockito.when(repository.streamAllBy()).thenReturn(Stream.empty());
+        table.reload();
+
+        assertTrue(table.put(new Url("abc", "http://a.com")));
+        assertTrue(table.put(new Url("abc", "http://replaced.com")));
+        assertEquals("http://replaced.com", table.get("abc").getSourceUrl());
+
+        table.remove("abc");
+        assertNull(table.get("abc"));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void put_BeyondChunkSize_ChunksAdded() {
+        Mockito.when(repository.streamAllBy()).thenReturn(Stream.empty());
+        table.reload();
+
+        IntStream.range(0, 1000).forEach(i -> table.put(new Url(Base62Encoder.encode(i, 6), "http://a.com/" + i)));
+
+        assertEquals(1000, table.size());
+        assertEquals("http://a.com/999", table.get(Base62Encoder.encode(999, 6)).getSourceUrl());
+        assertTrue(table.bytes() > 1000 * 256 / 16);
+    }
+
+    @Test
+    public void reload_RemovedWhileLoading_NotInNewTable() {
+        Mockito.when(repository.streamAllBy()).thenReturn(Stream.of(new Url("abc", "http://a.com"))
+                .peek(url -> table.remove("abc")));
+
+        table.reload();
+
+        assertNull(table.get("abc"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.url.shortener.infrastructure;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+public class SegmentIdGeneratorTests {
+
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicInteger leases = new AtomicInteger();
+
+    private DigestProperties digestProperties;
+
+    @Before
+    public void setUp() {
+        digestProperties = new DigestProperties();
+        digestProperties.setRandomLength(6);
+        digestProperties.setSegmentSize(100);
+    }
+
+    @Test
+    public void nextId_ManySegments_UniqueFixedLengthIds() {
+        final SegmentIdGenerator generator = new SegmentIdGenerator(this::lease, digestProperties);
+
+        final Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            final String id = generator.nextId();
+            assertEquals(6, id.length());
+            ids.add(id);
+        }
+
+        assertThat(ids).hasSize(10_000);
+        assertEquals(100, leases.get());
+    }
+
+    @Test
+    public void nextId_TwoInstances_NoOverlap() {
+        final SegmentIdGenerator first = new SegmentIdGenerator(this::lease, digestProperties);
+        final SegmentIdGenerator second = new SegmentIdGenerator(this::lease, digestProperties);
+
+        final Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            ids.add(first.nextId());
+            ids.add(second.nextId());
+        }
+
+        assertThat(ids).hasSize(2_000);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void nextId_KeyspaceExhausted_ExceptionIsThrown() {
+        digestProperties.setRandomLength(1);
+        final SegmentIdGenerator generator = new SegmentIdGenerator(this::lease, digestProperties);
+
+        for (int i = 0; i <= Base62Encoder.BASE; i++) {
+            generator.nextId();
+        }
+    }
+
+    private long lease(int size) {
+        leases.incrementAndGet();
+        return counter.getAndAdd(size);
+    }
+}
@@ -0,0 +1,216 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedUrlRepositoryTests {
+
+    private static final int URLS = 1000;
+    private static final int VIRTUAL_NODES = 160;
+
+    private Map<String, InMemoryUrlRepository> shards;
+    private ShardedUrlRepository repository;
+
+    @Before
+    public void setUp() {
+        shards = shards("url", "url_1", "url_2");
+        repository = new ShardedUrlRepository(shards, VIRTUAL_NODES, false);
+    }
+
+    @Test
+    public void insert_Urls_StoredOnOwnerOnly() {
+        urls().forEach(repository::insert);
+
+        for (int i = 0; i < URLS; i++) {
+            final String id = id(i);
+            assertEquals(1, shards.values().stream().filter(shard -> shard.existsById(id)).count());
+            assertTrue(repository.owner(id).existsById(id));
+            assertTrue(repository.findById(id).isPresent());
+        }
+        assertEquals(URLS, repository.estimatedCount());
+        shards.values().forEach(shard -> assertThat(shard.estimatedCount()).isBetween(200L, 500L));
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void insert_ExistingId_ExceptionIsThrown() {
+        repository.insert(url(1));
+        repository.insert(url(1));
+    }
+
+    @Test
+    public void insertBatch_Urls_FoundByIdsAndFingerprints() {
+        repository.insert(urls());
+
+        final List<String> ids = Arrays.asList(id(1), id(500), id(999), "missing");
+        assertThat(repository.findByIdIn(ids)).extracting(Url::getId).containsOnly(id(1), id(500), id(999));
+        assertThat(repository.findIdsByIdIn(ids)).extracting(UrlId::getId).containsOnly(id(1), id(500), id(999));
+
+        assertThat(repository.findByFingerprint(UrlFingerprint.of(sourceUrl(7)))).extracting(Url::getId)
+                .containsExactly(id(7));
+        assertThat(repository.findByFingerprintIn(Arrays.asList(UrlFingerprint.of(sourceUrl(7)),
+                UrlFingerprint.of(sourceUrl(8))))).extracting(Url::getId).containsOnly(id(7), id(8));
+    }
+
+    @Test
+    public void findByIdGreaterThan_Pages_MergedInIdOrder() {
+        repository.insert(urls());
+
+        final List<String> ids = new ArrayList<>();
+        String after = "";
+        List<Url> page;
+        while (!(page = repository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, 64))).isEmpty()) {
+            page.forEach(url -> ids.add(url.getId()));
+            after = page.get(page.size() - 1).getId();
+        }
+
+        assertThat(ids).hasSize(URLS).isSorted().doesNotHaveDuplicates();
+        try (Stream<Url> urls = repository.streamAllBy()) {
+            assertEquals(URLS, urls.count());
+        }
+    }
+
+    @Test
+    public void deleteById_Existing_Removed() {
+        repository.insert(url(1));
+        repository.deleteById(id(1));
+
+        assertFalse(repository.existsById(id(1)));
+        assertEquals(0, repository.estimatedCount());
+    }
+
+    @Test
+    public void rebalance_ShardAdded_OnlyMovedToNewShard() {
+        repository.insert(urls());
+        final Map<String, String> owners = owners(shards);
+
+        final Map<String, InMemoryUrlRepository> grown = new LinkedHashMap<>(shards);
+        grown.put("url_3", new InMemoryUrlRepository());
+        final ShardedUrlRepository resharded = new ShardedUrlRepository(grown, VIRTUAL_NODES, true);
+
+        // not moved yet, but found on other shards
+        IntStream.range(0, URLS).forEach(i -> assertTrue(resharded.findById(id(i)).isPresent()));
+
+        final long moved = resharded.rebalance();
+
+        assertThat(moved).isBetween(150L, 350L);
+        assertEquals(moved, grown.get("url_3").estimatedCount());
+        assertFalse(resharded.isRelocating());
+
+        final Map<String, String> movedOwners = owners(grown);
+        movedOwners.forEach((id, shard) -> assertTrue(shard.equals(owners.get(id)) || shard.equals("url_3")));
+        IntStream.range(0, URLS).forEach(i -> assertTrue(resharded.owner(id(i)).existsById(id(i))));
+        assertEquals(URLS, resharded.estimatedCount());
+    }
+
+    @Test
+    public void rebalance_NothingChanged_NothingMoved() {
+        repository.insert(urls());
+        assertEquals(0, new ShardedUrlRepository(shards, VIRTUAL_NODES, true).rebalance());
+    }
+
+    @Test
+    public void insert_RelocatingIdOnOtherShard_ExceptionIsThrown() {
+        repository.insert(urls());
+        final ShardedUrlRepository resharded = grown();
+        final Url misplaced = url(misplacedIndex(resharded));
+
+        try {
+            resharded.insert(misplaced);
+            throw new AssertionError("Expected DuplicateKeyException");
+        } catch (DuplicateKeyException e) {
+            assertFalse(resharded.owner(misplaced.getId()).existsById(misplaced.getId()));
+        }
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void insertBatch_RelocatingIdOnOtherShard_ExceptionIsThrown() {
+        repository.insert(urls());
+        final ShardedUrlRepository resharded = grown();
+
+        resharded.insert(List.of(new Url("new", "http://new.com"), url(misplacedIndex(resharded))));
+    }
+
+    @Test
+    public void rebalance_Failed_NotRelocating() {
+        final InMemoryUrlRepository failing = Mockito.spy(new InMemoryUrlRepository());
+        Mockito.doThrow(new IllegalStateException("broken")).when(failing).streamAllBy();
+        shards.put("url", failing);
+        final ShardedUrlRepository resharded = new ShardedUrlRepository(shards, VIRTUAL_NODES, true);
+
+        try {
+            resharded.rebalance();
+            throw new AssertionError("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertFalse(resharded.isRelocating());
+        }
+    }
+
+    private ShardedUrlRepository grown() {
+        final Map<String, InMemoryUrlRepository> grown = new LinkedHashMap<>(shards);
+        grown.put("url_3", new InMemoryUrlRepository());
+        return new ShardedUrlRepository(grown, VIRTUAL_NODES, true);
+    }
+
+    /**
+     * @return index of a url stored on other shard than its owner
+     */
+    private static int misplacedIndex(ShardedUrlRepository resharded) {
+        return IntStream.range(0, URLS).filter(i -> !resharded.owner(id(i)).existsById(id(i))).findFirst()
+                .orElseThrow();
+    }
+
+    private static Map<String, InMemoryUrlRepository> shards(String... names) {
+        final Map<String, InMemoryUrlRepository> shards = new LinkedHashMap<>();
+        Arrays.stream(names).forEach(name -> shards.put(name, new InMemoryUrlRepository()));
+        return shards;
+    }
+
+    /**
+     * @return shard names by ids of urls stored on them
+     */
+    private static Map<String, String> owners(Map<String, InMemoryUrlRepository> shards) {
+        final Map<String, String> owners = new LinkedHashMap<>();
+        shards.forEach((name, shard) -> {
+            try (Stream<UrlId> ids = shard.findIdsBy()) {
+                ids.forEach(id -> owners.put(id.getId(), name));
+            }
+        });
+        return owners;
+    }
+
+    private static List<Url> urls() {
+        return IntStream.range(0, URLS).mapToObj(ShardedUrlRepositoryTests::url).collect(Collectors.toList());
+    }
+
+    private static Url url(int i) {
+        final Url url = new Url(id(i), sourceUrl(i));
+        url.setFingerprint(UrlFingerprint.of(url.getSourceUrl()));
+        return url;
+    }
+
+    private static String id(int i) {
+        return Base62Encoder.encode(i, 6);
+    }
+
+    private static String sourceUrl(int i) {
+        return "https://example.com/" + i;
+    }
+}
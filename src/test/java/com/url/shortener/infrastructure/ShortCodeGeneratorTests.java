@@ -0,0 +1,32 @@
+package com.url.shortener.infrastructure;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShortCodeGeneratorTests {
+
+    private final ShortCodeGenerator generator = new ShortCodeGenerator();
+
+    @Test
+    public void generate_RequestedLength_Base62Code() {
+        for (int length = 1; length <= 20; length++) {
+            assertThat(generator.generate(length)).hasSize(length).matches("[0-9A-Za-z]+");
+        }
+    }
+
+    @Test
+    public void generate_ManyCodes_AllCharsUsed() {
+        final Set<Character> chars = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            for (char c : generator.generate(6).toCharArray()) {
+                chars.add(c);
+            }
+        }
+
+        assertThat(chars).hasSize(Base62Encoder.BASE);
+    }
+}
@@ -0,0 +1,99 @@
+package com.url.shortener.infrastructure;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTests {
+
+    private static final int THREADS = 8;
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+
+    @Test
+    public void execute_ConcurrentCalls_RunOnce() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(THREADS);
+
+        final List<Future<String>> results = concurrently(started, () -> flight.execute("key", () -> {
+            calls.incrementAndGet();
+            await(started);
+            return "value";
+        }));
+
+        for (Future<String> result : results) {
+            assertEquals("value", result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    public void execute_CallFailed_ExceptionSharedAndKeyReleased() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("failed");
+        final CountDownLatch started = new CountDownLatch(THREADS);
+
+        final List<Future<String>> results = concurrently(started, () -> flight.execute("key", () -> {
+            await(started);
+            throw failure;
+        }));
+
+        for (Future<String> result : results) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                fail("exception expected");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals("value", flight.execute("key", () -> "value"));
+    }
+
+    @Test
+    public void execute_NestedCallWithAnotherKey_RunSeparately() {
+        assertEquals("second", flight.execute("first", () -> flight.execute("second", () -> "second")));
+        assertEquals(0, flight.size());
+    }
+
+    private List<Future<String>> concurrently(CountDownLatch started, Callable<String> call) {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    started.countDown();
+                    return call.call();
+                }));
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Holds the call in flight until every thread has started and had time to join it
+     */
+    private static void await(CountDownLatch started) {
+        try {
+            started.await();
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
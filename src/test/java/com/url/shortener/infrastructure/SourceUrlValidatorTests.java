@@ -0,0 +1,120 @@
+package com.url.shortener.infrastructure;
+
+import org.apache.commons.validator.routines.UrlValidator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SourceUrlValidatorTests {
+
+    private SourceUrlProperties properties;
+
+    @Before
+    public void setUp() {
+        properties = new SourceUrlProperties();
+        properties.setAllowedSchemes(Arrays.asList("http", "https", "ftp"));
+        properties.setNormalize(true);
+    }
+
+    @Test
+    public void normalize_NormalUrl_ReturnedAsIs() {
+        final String sourceUrl = "https://www.example.com/articles/some-article?utm_source=feed#comments";
+        assertSame(sourceUrl, new SourceUrlValidator(properties).normalize(sourceUrl));
+    }
+
+    @Test
+    public void normalize_EquivalentUrls_SameForm() {
+        final SourceUrlValidator validator = new SourceUrlValidator(properties);
+
+        assertEquals("http://example.com/a%2Fb?q=%C3%A9", validator.normalize("HTTP://Example.COM:80/a%2fb?q=%c3%a9"));
+        assertEquals("https://example.com/", validator.normalize("https://EXAMPLE.com:443/"));
+        assertEquals("https://example.com:8443/", validator.normalize("https://example.com:8443/"));
+    }
+
+    @Test
+    public void normalize_NormalizationDisabled_ReturnedAsIs() {
+        properties.setNormalize(false);
+        assertEquals("HTTP://Example.COM:80/", new SourceUrlValidator(properties).normalize("HTTP://Example.COM:80/"));
+    }
+
+    @Test
+    public void normalize_InvalidUrl_Null() {
+        final SourceUrlValidator validator = new SourceUrlValidator(properties);
+
+        assertNull(validator.normalize(null));
+        assertNull(validator.normalize("h ttp://&example.com"));
+        assertNull(validator.normalize("http://localhost/"));
+        assertNull(validator.normalize("http://example.unknowntld/"));
+        assertNull(validator.normalize("http://example.com/a/../../b"));
+    }
+
+    @Test
+    public void normalize_UrlWithCredentials_LeftToCommonsValidator() {
+        final SourceUrlValidator validator = new SourceUrlValidator(properties);
+
+        assertEquals("http://User@Example.com/", validator.normalize("http://User@Example.com/"));
+        assertEquals("http://192.168.0.1:8080/", validator.normalize("http://192.168.0.1:8080/"));
+    }
+
+    @Test
+    public void normalize_SchemeNotAllowed_Null() {
+        properties.setAllowedSchemes(Collections.singletonList("https"));
+        final SourceUrlValidator validator = new SourceUrlValidator(properties);
+
+        assertNull(validator.normalize("http://example.com/"));
+        assertNull(validator.normalize("ftp://example.com/"));
+        assertTrue(validator.isValid("https://example.com/"));
+    }
+
+    @Test
+    public void normalize_DeniedHost_NullForSubdomains() {
+        properties.setDeniedHosts(Collections.singletonList("Example.com"));
+        final SourceUrlValidator validator = new SourceUrlValidator(properties);
+
+        assertFalse(validator.isValid("https://example.com/"));
+        assertFalse(validator.isValid("https://www.EXAMPLE.com/"));
+        assertFalse(validator.isValid("https://user@example.com:8080/"));
+        assertTrue(validator.isValid("https://notexample.com/"));
+    }
+
+    @Test
+    public void normalize_AllowedHosts_OthersRejected() {
+        properties.setAllowedHosts(Collections.singletonList("example.com"));
+        final SourceUrlValidator validator = new SourceUrlValidator(properties);
+
+        assertTrue(validator.isValid("https://example.com/"));
+        assertTrue(validator.isValid("https://docs.example.com/"));
+        assertFalse(validator.isValid("https://example.org/"));
+    }
+
+    @Test
+    public void isValid_UrlVariants_SameAsCommonsValidator() {
+        properties.setNormalize(false);
+        final SourceUrlValidator validator = new SourceUrlValidator(properties);
+        final UrlValidator commons = new UrlValidator(new String[]{"http", "https", "ftp"});
+
+        for (String scheme : new String[]{"http://", "HTTPS://", "ftp://", "mailto://", "http:/", ""}) {
+            for (String host : new String[]{"example.com", "Example.COM", "a-b.example.co.uk", "-a.com", "a..com",
+                    "localhost", "example.unknowntld", "192.168.0.1", "[::1]", "user@example.com", "exa_mple.com",
+                    "xn--e1afmkfd.xn--p1ai", "example.com.", "a.b"}) {
+                for (String port : new String[]{"", ":80", ":8080", ":65536", ":", ":000080"}) {
+                    for (String path : new String[]{"", "/", "/a/b", "//a", "/a/../b", "/a b", "/a%2fb",
+                            "/~user/(x)", "/a|b", "/ü"}) {
+                        for (String rest : new String[]{"", "?q=1&r=2", "?q= 1", "?q=\"x\"", "#top", "#a b"}) {
+                            final String url = scheme + host + port + path + rest;
+                            assertEquals(url, commons.isValid(url), validator.isValid(url));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class UrlArchiveTests {
+
+    @Test
+    public void read_WrittenUrls_SameUrls() throws Exception {
+        final Url expiring = new Url("0000Ab", "https://example.com/a?q=1");
+        expiring.setExpiresAt(Instant.ofEpochMilli(1700000000123L));
+        final Url fingerprinted = new Url("custom-hash", "https://example.com/ä");
+        fingerprinted.setFingerprint(-42L);
+        final List<Url> urls = Arrays.asList(expiring, fingerprinted, new Url("zzzzzzzzzz", "https://example.com/"),
+                new Url("abcdefghijkl", "ftp://example.org"), new Url("0", "https://example.com/a"));
+
+        final List<Url> read = readAll(write(urls));
+
+        assertThat(read).hasSize(urls.size());
+        for (Url url : urls) {
+            final Url copy = read.stream().filter(r -> r.getId().equals(url.getId())).findFirst().get();
+            assertEquals(url.getSourceUrl(), copy.getSourceUrl());
+            assertEquals(url.getFingerprint(), copy.getFingerprint());
+            assertEquals(url.getExpiresAt(), copy.getExpiresAt());
+        }
+    }
+
+    @Test
+    public void read_ManyBlocks_AllUrlsCompact() throws Exception {
+        final List<Url> urls = IntStream.range(0, UrlArchiveWriter.BLOCK_URLS * 2 + 1)
+                .mapToObj(i -> new Url(Base62Encoder.encode(i, 6), "https://example.com/articles/" + i))
+                .collect(Collectors.toList());
+
+        final byte[] archive = write(urls);
+
+        assertThat(archive.length).isLessThan(urls.size() * 8);
+        assertThat(readAll(archive).stream().map(Url::getId).sorted().collect(Collectors.toList()))
+                .isEqualTo(urls.stream().map(Url::getId).sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void read_Empty_NoUrls() throws Exception {
+        final UrlArchiveReader reader = reader(write(Collections.emptyList()));
+
+        assertNull(reader.read());
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void read_Corrupted_Rejected() throws Exception {
+        final byte[] archive = write(Collections.singletonList(new Url("abc", "https://example.com")));
+        archive[archive.length - 20] ^= 1;
+
+        assertThatThrownBy(() -> readAll(archive)).isInstanceOf(UrlValidationException.class);
+    }
+
+    @Test
+    public void read_Truncated_Rejected() throws Exception {
+        final byte[] archive = write(Collections.singletonList(new Url("abc", "https://example.com")));
+
+        assertThatThrownBy(() -> readAll(Arrays.copyOf(archive, archive.length - 1)))
+                .isInstanceOf(UrlValidationException.class);
+        assertThatThrownBy(() -> readAll("not an archive".getBytes()))
+                .isInstanceOf(UrlValidationException.class);
+    }
+
+    private static byte[] write(List<Url> urls) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (UrlArchiveWriter writer = new UrlArchiveWriter(Channels.newChannel(output))) {
+            for (Url url : urls) {
+                writer.write(url);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static List<Url> readAll(byte[] archive) throws IOException {
+        final UrlArchiveReader reader = reader(archive);
+        final List<Url> urls = new ArrayList<>();
+        List<Url> block;
+        while ((block = reader.read()) != null) {
+            urls.addAll(block);
+        }
+        return urls;
+    }
+
+    private static UrlArchiveReader reader(byte[] archive) throws IOException {
+        return new UrlArchiveReader(Channels.newChannel(new ByteArrayInputStream(archive)));
+    }
+}
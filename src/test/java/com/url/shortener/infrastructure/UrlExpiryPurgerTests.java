@@ -0,0 +1,108 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UrlExpiryPurgerTests {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private InMemoryUrlRepository repository;
+    private UrlCache cache;
+    private List<UrlInvalidation> published;
+    private SimpleMeterRegistry meterRegistry;
+    private InMemoryClickStore clickStore;
+    private ClickAnalytics clickAnalytics;
+    private UrlExpiryPurger purger;
+
+    @Before
+    public void setUp() {
+        repository = new InMemoryUrlRepository();
+        meterRegistry = new SimpleMeterRegistry();
+
+        final UrlCacheProperties cacheProperties = new UrlCacheProperties();
+        cacheProperties.setMaximumSize(100);
+        cacheProperties.setExpireAfterWrite(Duration.ofMinutes(10));
+        cache = new UrlCache(cacheProperties, meterRegistry);
+
+        published = new ArrayList<>();
+        final LocalInvalidationBus bus = new LocalInvalidationBus();
+        bus.subscribe(published::add);
+
+        final UrlExpiryProperties properties = new UrlExpiryProperties();
+        properties.setPurgeBatchSize(10);
+        final ClickAnalyticsProperties clickProperties = new ClickAnalyticsProperties();
+        clickProperties.setMaxReferrers(10);
+        clickStore = new InMemoryClickStore(clickProperties);
+        clickAnalytics = new ClickAnalytics(clickStore, clickProperties, meterRegistry);
+
+        purger = new UrlExpiryPurger(repository, properties, cache, bus, new ShortenerMetrics(meterRegistry),
+                clickAnalytics);
+    }
+
+    @Test
+    public void purge_ExpiredUrls_DeletedInBatches() {
+        IntStream.range(0, 25).forEach(i -> repository.insert(url("expired" + i, NOW.minusSeconds(i + 1))));
+        repository.insert(url("valid", NOW.plusSeconds(1)));
+        repository.insert(url("eternal", null));
+
+        assertEquals(10, purger.purge(NOW));
+        assertEquals(10, purger.purge(NOW));
+        assertEquals(5, purger.purge(NOW));
+        assertEquals(0, purger.purge(NOW));
+
+        assertEquals(2, repository.estimatedCount());
+        assertTrue(repository.existsById("valid"));
+        assertTrue(repository.existsById("eternal"));
+        assertEquals(25, meterRegistry.counter("shortener.expired.purged").count(), 0);
+    }
+
+    @Test
+    public void purge_CachedUrl_EvictedAndPublished() {
+        final Url expired = url("abc", NOW.minusSeconds(1));
+        repository.insert(expired);
+        cache.put(expired);
+
+        purger.purge(NOW);
+
+        assertFalse(repository.existsById("abc"));
+        assertNull(cache.getIfPresent("abc"));
+        assertThat(published).extracting(UrlInvalidation::getId).containsExactly("abc");
+        assertThat(published).extracting(UrlInvalidation::getKind).containsExactly(UrlInvalidation.Kind.DELETED);
+    }
+
+    @Test
+    public void purge_ClickedUrl_RegeneratedIdStartsWithoutClicks() {
+        repository.insert(url("abc", NOW.minusSeconds(1)));
+        final ClickCounts counts = new ClickCounts("abc", 10);
+        counts.add("example.com", NOW.toEpochMilli());
+        clickStore.increment(Collections.singletonList(counts));
+
+        purger.purge(NOW);
+        repository.insert(url("abc", null));
+
+        assertEquals(0, clickAnalytics.getStats("abc").getClicks());
+        assertThat(clickAnalytics.getStats("abc").getReferrers()).isEmpty();
+    }
+
+    private static Url url(String id, Instant expiresAt) {
+        final Url url = new Url(id, "https://example.com/" + id);
+        url.setExpiresAt(expiresAt);
+        return url;
+    }
+}
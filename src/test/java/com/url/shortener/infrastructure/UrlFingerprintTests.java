@@ -0,0 +1,19 @@
+package com.url.shortener.infrastructure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class UrlFingerprintTests {
+
+    @Test
+    public void of_SameUrl_SameFingerprint() {
+        assertEquals(UrlFingerprint.of("http://foo.com/a"), UrlFingerprint.of("http://foo.com/a"));
+    }
+
+    @Test
+    public void of_DifferentPaths_DifferentFingerprints() {
+        assertNotEquals(UrlFingerprint.of("http://foo.com/a"), UrlFingerprint.of("http://foo.com/A"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UrlInvalidatorTests {
+
+    private LocalInvalidationBus bus;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        bus = new LocalInvalidationBus();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void publish_Deleted_EvictedOnAllInstances() {
+        final UrlCache first = cache();
+        final UrlCache second = cache();
+        invalidator(first, Mockito.mock(LookupFilter.class));
+        invalidator(second, Mockito.mock(LookupFilter.class));
+
+        first.put(new Url("abc", "https://example.com"));
+        second.put(new Url("abc", "https://example.com"));
+        second.put(new Url("xyz", "https://example.org"));
+
+        bus.publish(UrlInvalidation.deleted("abc"));
+
+        assertNull(first.getIfPresent("abc"));
+        assertNull(second.getIfPresent("abc"));
+        assertNotNull(second.getIfPresent("xyz"));
+    }
+
+    @Test
+    public void publish_Created_AddedToLookupFilter() {
+        final LookupFilter lookupFilter = Mockito.mock(LookupFilter.class);
+        invalidator(cache(), lookupFilter);
+
+        bus.publish(UrlInvalidation.created("abc"));
+
+        Mockito.verify(lookupFilter).put("abc");
+    }
+
+    @Test
+    public void publish_All_EverythingDropped() {
+        final UrlCache cache = cache();
+        final LookupFilter lookupFilter = Mockito.mock(LookupFilter.class);
+        invalidator(cache, lookupFilter);
+        cache.put(new Url("abc", "https://example.com"));
+
+        bus.publish(new UrlInvalidation(UrlInvalidation.Kind.ALL, null, System.currentTimeMillis()));
+
+        assertNull(cache.getIfPresent("abc"));
+        Mockito.verify(lookupFilter, Mockito.timeout(5000)).rebuild();
+    }
+
+    @Test
+    public void publish_AllDuringReload_BusNotBlockedAndReloadedAgain() throws Exception {
+        final LookupFilter lookupFilter = Mockito.mock(LookupFilter.class);
+        final CountDownLatch rebuilding = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            rebuilding.countDown();
+            release.await();
+            return null;
+        }).doNothing().when(lookupFilter).rebuild();
+        invalidator(cache(), lookupFilter);
+
+        bus.publish(new UrlInvalidation(UrlInvalidation.Kind.ALL, null, System.currentTimeMillis()));
+        assertTrue(rebuilding.await(5, TimeUnit.SECONDS));
+        bus.publish(new UrlInvalidation(UrlInvalidation.Kind.ALL, null, System.currentTimeMillis()));
+        bus.publish(new UrlInvalidation(UrlInvalidation.Kind.ALL, null, System.currentTimeMillis()));
+        bus.publish(UrlInvalidation.created("abc"));
+        Mockito.verify(lookupFilter).put("abc");
+        release.countDown();
+
+        Mockito.verify(lookupFilter, Mockito.timeout(5000).times(2)).rebuild();
+    }
+
+    @Test
+    public void publish_Timestamp_LagRecorded() {
+        invalidator(cache(), Mockito.mock(LookupFilter.class));
+
+        bus.publish(new UrlInvalidation(UrlInvalidation.Kind.CHANGED, "abc", System.currentTimeMillis() - 1000));
+        bus.publish(new UrlInvalidation(UrlInvalidation.Kind.CHANGED, "xyz", 0));
+
+        final Timer lag = meterRegistry.get("shortener.invalidation.lag").timer();
+        assertEquals("unknown change time isn't recorded", 1, lag.count());
+        assertEquals(1000, lag.totalTime(TimeUnit.MILLISECONDS), 500);
+    }
+
+    private UrlCache cache() {
+        final UrlCacheProperties properties = new UrlCacheProperties();
+        properties.setMaximumSize(100);
+        properties.setExpireAfterWrite(Duration.ofMinutes(10));
+        return new UrlCache(properties, new SimpleMeterRegistry());
+    }
+
+    private UrlInvalidator invalidator(UrlCache cache, LookupFilter lookupFilter) {
+        return new UrlInvalidator(bus, cache, Mockito.mock(RedirectTable.class), lookupFilter,
+                new ShortenerMetrics(meterRegistry));
+    }
+}
@@ -0,0 +1,45 @@
+package com.url.shortener.infrastructure;
+
+import org.junit.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VirtualThreadConfigTests {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(VirtualThreadConfig.class);
+
+    @Test
+    public void disabled_NoBeans() {
+        contextRunner.run(context -> {
+            assertThat(context).doesNotHaveBean(TomcatProtocolHandlerCustomizer.class);
+            assertThat(context).doesNotHaveBean(AsyncTaskExecutor.class);
+        });
+    }
+
+    @Test
+    public void enabled_TasksRunOnVirtualThreads() {
+        contextRunner.withPropertyValues("virtual-threads.enabled=true").run(context -> {
+            assertThat(context).hasSingleBean(TomcatProtocolHandlerCustomizer.class);
+
+            final AsyncTaskExecutor executor = context.getBean(AsyncTaskExecutor.class);
+            assertThat(executor.submit(() -> Thread.currentThread().isVirtual()).get()).isTrue();
+        });
+    }
+
+    @Test
+    public void closed_ExecutorsShutDown() {
+        final List<ExecutorService> executors = new ArrayList<>();
+        contextRunner.withPropertyValues("virtual-threads.enabled=true").run(context ->
+                executors.addAll(context.getBeansOfType(ExecutorService.class).values()));
+
+        assertThat(executors).hasSize(2).allMatch(ExecutorService::isShutdown);
+    }
+}
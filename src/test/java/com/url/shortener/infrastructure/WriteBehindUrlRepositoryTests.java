@@ -0,0 +1,184 @@
+package com.url.shortener.infrastructure;
+
+import com.url.shortener.Url;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+public class WriteBehindUrlRepositoryTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryUrlRepository storage;
+    private WriteBehindProperties properties;
+
+    @Before
+    public void setUp() {
+        storage = spy(new InMemoryUrlRepository());
+
+        properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(folder.getRoot().toPath().resolve("write-behind").toString());
+        properties.setJournalSize(DataSize.ofKilobytes(4));
+        properties.setForceWrites(false);
+        properties.setBatchSize(10);
+        properties.setFlushInterval(Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void insert_BeforeFlush_ServedFromPending() {
+        final WriteBehindUrlRepository repository = repository();
+
+        repository.insert(new Url("id", "https://example.com"));
+
+        assertEquals("https://example.com", repository.findById("id").get().getSourceUrl());
+        assertTrue(repository.existsById("id"));
+        assertFalse(storage.existsById("id"));
+        assertEquals(1, repository.getPending());
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void insert_PendingId_Rejected() {
+        final WriteBehindUrlRepository repository = repository();
+        repository.insert(new Url("id", "https://example.com"));
+
+        repository.insert(new Url("id", "https://example.org"));
+    }
+
+    @Test
+    public void flush_PendingUrls_StoredAndJournalDeleted() throws Exception {
+        final WriteBehindUrlRepository repository = repository();
+        IntStream.range(0, 25).forEach(i -> repository.insert(new Url("id" + i, "https://example.com/" + i)));
+
+        assertTrue(repository.flush());
+
+        assertEquals(0, repository.getPending());
+        assertEquals(25, storage.estimatedCount());
+        assertEquals(25, repository.estimatedCount());
+        assertThat(Files.list(folder.getRoot().toPath().resolve("write-behind"))).hasSize(1);
+    }
+
+    @Test
+    public void recover_Crash_PendingUrlsReplayed() {
+        final WriteBehindUrlRepository crashed = repository();
+        IntStream.range(0, 100).forEach(i -> crashed.insert(new Url("id" + i, "https://example.com/" + i)));
+        crashed.insert(new Url("deleted", "https://example.com/deleted"));
+        crashed.deleteById("deleted");
+
+        final WriteBehindUrlRepository repository = repository();
+
+        assertEquals(100, repository.getPending());
+        assertEquals("https://example.com/99", repository.findById("id99").get().getSourceUrl());
+        assertFalse(repository.existsById("deleted"));
+
+        assertTrue(repository.flush());
+        assertEquals(100, storage.estimatedCount());
+        assertEquals(0, repository().getPending());
+    }
+
+    @Test
+    public void recover_FlushedBeforeCrash_StoredOnce() {
+        final WriteBehindUrlRepository crashed = repository();
+        crashed.insert(new Url("id", "https://example.com"));
+        // the flush stored urls but died before deleting the journal
+        storage.insert(new Url("id", "https://example.com"));
+
+        final WriteBehindUrlRepository repository = repository();
+
+        assertTrue(repository.flush());
+        assertEquals(1, storage.estimatedCount());
+        assertEquals(0, repository.getPending());
+    }
+
+    @Test
+    public void flush_JournalRotatedMeanwhile_NewUrlsStillJournaled() {
+        final WriteBehindUrlRepository repository = repository();
+        repository.insert(new Url("id", "https://example.com"));
+        // a journal file filled and sealed while the batch is being stored
+        doAnswer(invocation -> {
+            IntStream.range(0, 100).forEach(i -> repository.insert(new Url("new" + i, "https://example.com/" + i)));
+            return invocation.callRealMethod();
+        }).when(storage).insert(anyIterable());
+
+        assertTrue(repository.flush());
+
+        assertEquals(100, repository.getPending());
+        assertEquals(100, repository().getPending());
+    }
+
+    @Test
+    public void insert_LargerThanJournal_Journaled() {
+        final WriteBehindUrlRepository repository = repository();
+        final String sourceUrl = "https://example.com/" + StringUtils.repeat('a', 8 * 1024);
+
+        repository.insert(new Url("id", sourceUrl));
+
+        assertEquals(sourceUrl, repository().findById("id").get().getSourceUrl());
+    }
+
+    @Test
+    public void flush_StorageFailure_UrlsKeptPending() {
+        final WriteBehindUrlRepository repository = repository();
+        repository.insert(new Url("id", "https://example.com"));
+        doThrow(new DataAccessResourceFailureException("down")).when(storage).insert(anyIterable());
+
+        assertFalse(repository.flush());
+        assertEquals(1, repository.getPending());
+        assertEquals(1, repository().getPending());
+
+        doCallRealMethod().when(storage).insert(anyIterable());
+        assertTrue(repository.flush());
+        assertEquals(0, repository.getPending());
+        assertTrue(storage.existsById("id"));
+    }
+
+    @Test
+    public void flush_IdTakenByAnotherUrl_UrlLost() {
+        final WriteBehindUrlRepository repository = repository();
+        repository.insert(new Url("id", "https://example.com"));
+        repository.insert(new Url("other", "https://example.com/other"));
+        storage.insert(new Url("id", "https://example.org"));
+
+        assertTrue(repository.flush());
+
+        assertEquals("https://example.org", storage.findById("id").get().getSourceUrl());
+        assertTrue(storage.existsById("other"));
+    }
+
+    @Test
+    public void deleteById_Pending_NotStoredByFlush() {
+        final WriteBehindUrlRepository repository = repository();
+        repository.insert(new Url("id", "https://example.com"));
+
+        repository.deleteById("id");
+        repository.flush();
+
+        assertFalse(repository.existsById("id"));
+        assertFalse(storage.existsById("id"));
+    }
+
+    private WriteBehindUrlRepository repository() {
+        return new WriteBehindUrlRepository(storage, properties, new SimpleMeterRegistry());
+    }
+}